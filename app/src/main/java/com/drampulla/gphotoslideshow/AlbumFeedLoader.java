@@ -0,0 +1,165 @@
+package com.drampulla.gphotoslideshow;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the photos of many albums at the same time instead of one after the other.  The
+ * number of feeds requested at once is limited, and the results always come back in the
+ * same order as the albums were given no matter which feed finishes first.
+ */
+public class AlbumFeedLoader {
+
+    /**
+     * Default logger.
+     */
+    private static final Logger LOGGER = new Logger(AlbumFeedLoader.class);
+
+    private final PhotoSource photoSource;
+    /**
+     * The most album feeds requested at the same time.
+     */
+    private final int concurrency;
+    /**
+     * How long a single album feed may take, counted from when it is requested.  A feed that
+     * takes longer is given up on without affecting the others.
+     */
+    private final long timeoutMillis;
+
+    /**
+     *
+     * @param photoSource
+     *          Where the albums come from.
+     * @param concurrency
+     *          The most album feeds requested at the same time.
+     * @param timeoutMillis
+     *          How long a single album feed may take.
+     */
+    public AlbumFeedLoader(PhotoSource photoSource, int concurrency, long timeoutMillis) {
+        this.photoSource = photoSource;
+        this.concurrency = Math.max(1, concurrency);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Load the photos of all of the albums.
+     *
+     * @param albums
+     *          The albums to load.
+     * @param previous
+     *          The catalog as it is now, so the source can load just what changed.
+     * @param callback
+     *          Told about each album as soon as it has loaded, may be null.
+     * @return
+     *          The loaded albums in the same order as albums.  An album that failed
+     *          or timed out is null.
+     */
+    public CatalogAlbum[] load(List<SourceAlbum> albums, final PhotoCatalog previous, AlbumLoadedCallback callback) {
+        long start = System.currentTimeMillis();
+        CatalogAlbum[] rc = new CatalogAlbum[albums.size()];
+        if (albums.isEmpty()) {
+            return rc;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, albums.size()));
+        CompletionService<CatalogAlbum> completionService = new ExecutorCompletionService<>(executor);
+        Map<Future<CatalogAlbum>, Integer> indexes = new HashMap<>();
+        // when each feed that is being requested started, the ones still waiting for a thread
+        // aren't in here so they don't use up their time in the queue
+        final Map<Integer, Long> startNanos = new ConcurrentHashMap<>();
+        for (int i = 0; i < albums.size(); i++) {
+            final SourceAlbum sourceAlbum = albums.get(i);
+            final int index = i;
+            indexes.put(completionService.submit(new Callable<CatalogAlbum>() {
+                @Override
+                public CatalogAlbum call() throws Exception {
+                    long feedStart = System.nanoTime();
+                    startNanos.put(index, feedStart);
+                    CatalogAlbum album = photoSource.loadAlbum(sourceAlbum, previous.findAlbum(sourceAlbum.getId()));
+                    SlideTimings.record(SlideTimings.ALBUM_LOAD, feedStart);
+                    if (Logger.isLoggable(Logger.VERBOSE)) {
+                        LOGGER.v(String.format("Loaded album %s (%d photos) in %dms.", album.getTitle(),
+                                album.getPhotoCount(), (System.nanoTime() - feedStart) / 1000000));
+                    }
+                    return album;
+                }
+            }), i);
+        }
+
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        int failed = 0;
+        int remaining = albums.size();
+        try {
+            while (remaining > 0) {
+                // give up on the feeds that have taken too long, the others keep going
+                long now = System.nanoTime();
+                long wait = timeoutNanos;
+                for (Map.Entry<Future<CatalogAlbum>, Integer> entry : indexes.entrySet()) {
+                    Long feedStart = startNanos.get(entry.getValue());
+                    if (feedStart == null || entry.getKey().isDone()) {
+                        continue;
+                    }
+                    long left = feedStart + timeoutNanos - now;
+                    if (left <= 0) {
+                        entry.getKey().cancel(true);
+                        LOGGER.w("Timed out loading album " + albums.get(entry.getValue()).getTitle());
+                    } else {
+                        wait = Math.min(wait, left);
+                    }
+                }
+
+                Future<CatalogAlbum> done = completionService.poll(wait, TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    continue;
+                }
+                remaining--;
+                int index = indexes.get(done);
+                if (done.isCancelled()) {
+                    failed++;
+                    continue;
+                }
+                try {
+                    rc[index] = done.get();
+                    if (callback != null) {
+                        callback.albumLoaded(index, rc[index]);
+                    }
+                } catch (ExecutionException e) {
+                    failed++;
+                    LOGGER.w("Failed to load an album feed", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed += remaining;
+        } finally {
+            executor.shutdownNow();
+        }
+
+        LOGGER.d(String.format("Loaded %d album feeds (%d failed) with %d at a time in %dms.",
+                albums.size() - failed, failed, concurrency, System.currentTimeMillis() - start));
+        return rc;
+    }
+
+    /**
+     * Class to help with callback as each album finishes loading.
+     */
+    public static interface AlbumLoadedCallback {
+        /**
+         * @param index
+         *          The position of the album in the list that was passed to load().
+         * @param album
+         *          The loaded album.
+         */
+        void albumLoaded(int index, CatalogAlbum album);
+    }
+}
@@ -0,0 +1,69 @@
+package com.drampulla.gphotoslideshow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Decides which albums are part of the slideshow based on the include and exclude regular
+ * expressions from the preferences.  The expressions are compiled once when the filter is
+ * created, so a new filter should be created whenever the preferences change.
+ */
+public class AlbumFilter {
+
+    private final Pattern includePattern;
+    private final Pattern excludePattern;
+
+    /**
+     *
+     * @param includeRegex
+     *          Albums whose title matches this are included, empty or null means all albums.
+     * @param excludeRegex
+     *          Albums whose title matches this are excluded, empty or null means none.
+     * @throws java.util.regex.PatternSyntaxException
+     *          If either expression is not valid.
+     */
+    public AlbumFilter(String includeRegex, String excludeRegex) {
+        // I want to make sure empty string is the same as include everything
+        this.includePattern = Pattern.compile(includeRegex == null || includeRegex.equals("") ? ".*" : includeRegex);
+        this.excludePattern = Pattern.compile(excludeRegex == null ? "" : excludeRegex);
+    }
+
+    /**
+     *
+     * @param title
+     *          The title of an album.
+     * @return
+     *          true if the album should be part of the slideshow.
+     */
+    public boolean matches(String title) {
+        return includePattern.matcher(title).matches() && !excludePattern.matcher(title).matches();
+    }
+
+    /**
+     *
+     * @param catalog
+     *          All of the albums.
+     * @return
+     *          The albums that match, in catalog order.
+     * @throws EmptySlideshowException
+     *          If no album with any photos in it matches.
+     */
+    public List<CatalogAlbum> apply(PhotoCatalog catalog) {
+        List<CatalogAlbum> rc = new ArrayList<>();
+        int photoCount = 0;
+        for (CatalogAlbum album : catalog.getAlbums()) {
+            if (matches(album.getTitle())) {
+                rc.add(album);
+                photoCount += album.getPhotoCount();
+            }
+        }
+
+        if (photoCount == 0) {
+            throw new EmptySlideshowException(String.format(
+                    "None of the %d albums with a title matching \"%s\" and not matching \"%s\" have any photos.",
+                    rc.size(), includePattern.pattern(), excludePattern.pattern()));
+        }
+        return rc;
+    }
+}
@@ -0,0 +1,151 @@
+package com.drampulla.gphotoslideshow;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the global index of a photo in the slideshow (0 being the first photo of the first
+ * album) to an album and an offset within that album.  The start of every album is kept as a
+ * prefix sum of the album sizes so that any index can be found with a binary search instead
+ * of walking the slideshow from the start.
+ */
+public class AlbumPositionIndex {
+
+    /**
+     * The albums, in slideshow order.
+     */
+    private final List<CatalogAlbum> albums;
+    /**
+     * starts[i] is the global index of the first photo in album i, starts[albums.size()] is the
+     * total number of photos.
+     */
+    private final int[] starts;
+    /**
+     * Lookup of the position of an album in the list by its id.
+     */
+    private final Map<String, Integer> albumIndexById;
+
+    /**
+     *
+     * @param albums
+     *          The albums, in slideshow order.
+     */
+    public AlbumPositionIndex(List<CatalogAlbum> albums) {
+        this.albums = albums;
+        this.starts = new int[albums.size() + 1];
+        this.albumIndexById = new HashMap<>(albums.size() * 2);
+        for (int i = 0; i < albums.size(); i++) {
+            starts[i + 1] = starts[i] + albums.get(i).getPhotoCount();
+            albumIndexById.put(albums.get(i).getId(), i);
+        }
+    }
+
+    /**
+     * @return the total number of photos in all of the albums.
+     */
+    public int size() {
+        return starts[albums.size()];
+    }
+
+    public int getAlbumCount() {
+        return albums.size();
+    }
+
+    public CatalogAlbum getAlbum(int index) {
+        return albums.get(index);
+    }
+
+    /**
+     *
+     * @param albumIndex
+     *          The position of the album in the list.
+     * @return
+     *          The global index of the first photo in the album.
+     */
+    public int startOf(int albumIndex) {
+        return starts[albumIndex];
+    }
+
+    /**
+     *
+     * @param globalIndex
+     *          A value from 0 to size() - 1.
+     * @return
+     *          The position of the album that holds that photo.
+     */
+    public int albumIndexOf(int globalIndex) {
+        if (globalIndex < 0 || globalIndex >= size()) {
+            throw new IndexOutOfBoundsException("Index " + globalIndex + " is not in a slideshow of " + size() + " photos.");
+        }
+        // find the last album that starts at or before the index, empty albums are skipped over
+        // naturally because the album after them starts at the same place
+        int lo = 0;
+        int hi = albums.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (starts[mid] <= globalIndex) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     *
+     * @param globalIndex
+     *          A value from 0 to size() - 1.
+     * @return
+     *          The photo at that point in the slideshow.
+     */
+    public CatalogPhoto photoAt(int globalIndex) {
+        int albumIndex = albumIndexOf(globalIndex);
+        return albums.get(albumIndex).getPhoto(globalIndex - starts[albumIndex]);
+    }
+
+    /**
+     *
+     * @param globalIndex
+     *          A value from 0 to size() - 1.
+     * @return
+     *          A position that can be saved and later turned back into an index with
+     *          {@link #indexOf(SlideshowPosition)}, even if albums have changed in between.
+     */
+    public SlideshowPosition positionOf(int globalIndex) {
+        int albumIndex = albumIndexOf(globalIndex);
+        int offset = globalIndex - starts[albumIndex];
+        CatalogAlbum album = albums.get(albumIndex);
+        return new SlideshowPosition(album.getId(), album.getPhotoId(offset), offset);
+    }
+
+    /**
+     *
+     * @param position
+     *          A previously saved position.
+     * @return
+     *          The global index of the same photo, the closest photo in the same album if the
+     *          photo is gone, or -1 if the album itself is gone.
+     */
+    public int indexOf(SlideshowPosition position) {
+        Integer albumIndex = albumIndexById.get(position.getAlbumId());
+        if (albumIndex == null) {
+            return -1;
+        }
+        CatalogAlbum album = albums.get(albumIndex);
+        if (album.getPhotoCount() == 0) {
+            return starts[albumIndex] < size() ? starts[albumIndex] : -1;
+        }
+
+        int offset = Math.max(0, Math.min(position.getOffset(), album.getPhotoCount() - 1));
+        if (!album.getPhotoId(offset).equals(position.getPhotoId())) {
+            // photos were added or removed within the album, so look for it
+            int found = album.indexOfPhoto(position.getPhotoId());
+            if (found >= 0) {
+                offset = found;
+            }
+        }
+        return starts[albumIndex] + offset;
+    }
+}
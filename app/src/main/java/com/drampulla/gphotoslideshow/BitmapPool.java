@@ -0,0 +1,172 @@
+package com.drampulla.gphotoslideshow;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps bitmaps that are no longer on the screen so that their memory can be reused when the
+ * next image is decoded (via BitmapFactory.Options.inBitmap) instead of allocating a new
+ * full screen bitmap for every slide and leaving the old one for the garbage collector.
+ *
+ * Bitmaps are grouped into size classes by how much memory they hold, and a bitmap is only
+ * handed out for an image that needs at least half of its memory so that small images don't
+ * tie up big bitmaps.
+ */
+public class BitmapPool {
+
+    /**
+     * Default logger.
+     */
+    private static final Logger LOGGER = new Logger(BitmapPool.class);
+
+    /**
+     * Width of a size class in bytes.
+     */
+    private static final int SIZE_CLASS_BYTES = 256 * 1024;
+
+    /**
+     * Size class to the bitmaps in that class.
+     */
+    private final TreeMap<Integer, ArrayDeque<Bitmap>> pool = new TreeMap<>();
+
+    /**
+     * The most bytes of bitmaps the pool will hold on to.
+     */
+    private final long maxBytes;
+    private long totalBytes;
+
+    /**
+     * Statistics for how often a bitmap could be reused.
+     */
+    private long reused;
+    private long allocated;
+
+    /**
+     *
+     * @param maxBytes
+     *          The most bytes of bitmaps the pool will hold on to, anything more is recycled.
+     */
+    public BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return true if this device can decode into a bitmap of a different size (KitKat and up).
+     */
+    public static boolean isReuseSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+    }
+
+    /**
+     * Get a bitmap that an image of the given size can be decoded into.
+     *
+     * @param width
+     *          Width of the decoded image.
+     * @param height
+     *          Height of the decoded image.
+     * @param config
+     *          Pixel format of the decoded image.
+     * @return
+     *          A bitmap with enough memory, or null if there isn't one (the caller then lets
+     *          BitmapFactory allocate a new one).
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        if (!isReuseSupported()) {
+            return null;
+        }
+
+        long needed = (long) width * height * bytesPerPixel(config);
+        Integer sizeClass = pool.ceilingKey(sizeClass(needed));
+        while (sizeClass != null && sizeClass <= sizeClass(needed * 2)) {
+            ArrayDeque<Bitmap> bitmaps = pool.get(sizeClass);
+            for (Bitmap bitmap : bitmaps) {
+                if (sizeOf(bitmap) >= needed && bitmap.getConfig() == config) {
+                    bitmaps.remove(bitmap);
+                    if (bitmaps.isEmpty()) {
+                        pool.remove(sizeClass);
+                    }
+                    totalBytes -= sizeOf(bitmap);
+                    reused++;
+                    return bitmap;
+                }
+            }
+            sizeClass = pool.higherKey(sizeClass);
+        }
+
+        allocated++;
+        return null;
+    }
+
+    /**
+     * Give a bitmap back to the pool once it is no longer displayed or needed.
+     *
+     * @param bitmap
+     *          The bitmap, it must not be used by the caller after this.
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        if (!isReuseSupported() || !bitmap.isMutable()
+                || totalBytes + sizeOf(bitmap) > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+
+        int sizeClass = sizeClass(sizeOf(bitmap));
+        ArrayDeque<Bitmap> bitmaps = pool.get(sizeClass);
+        if (bitmaps == null) {
+            bitmaps = new ArrayDeque<>();
+            pool.put(sizeClass, bitmaps);
+        }
+        bitmaps.add(bitmap);
+        totalBytes += sizeOf(bitmap);
+    }
+
+    /**
+     * Let go of every bitmap in the pool, for example when the system is low on memory.
+     */
+    public synchronized void clear() {
+        for (Map.Entry<Integer, ArrayDeque<Bitmap>> entry : pool.entrySet()) {
+            for (Bitmap bitmap : entry.getValue()) {
+                bitmap.recycle();
+            }
+        }
+        pool.clear();
+        totalBytes = 0;
+        LOGGER.d("Bitmap pool cleared");
+    }
+
+    public synchronized long getReused() {
+        return reused;
+    }
+
+    public synchronized long getAllocated() {
+        return allocated;
+    }
+
+    /**
+     * @return the memory held by a bitmap (which may be more than its current size needs
+     *          if it has been reused).
+     */
+    public static int sizeOf(Bitmap bitmap) {
+        return isReuseSupported() ? bitmap.getAllocationByteCount() : bitmap.getByteCount();
+    }
+
+    private static int sizeClass(long bytes) {
+        return (int) ((bytes + SIZE_CLASS_BYTES - 1) / SIZE_CLASS_BYTES);
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.RGB_565) {
+            return 2;
+        } else if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        }
+        return 4;
+    }
+}
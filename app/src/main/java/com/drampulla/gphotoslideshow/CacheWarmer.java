@@ -0,0 +1,384 @@
+package com.drampulla.gphotoslideshow;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.BatteryManager;
+import android.os.PowerManager;
+import android.preference.PreferenceManager;
+import android.support.v4.net.ConnectivityManagerCompat;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Downloads the photos that will be shown over the next day ahead of time, during the
+ * off-peak hours from the preferences, so they don't have to be downloaded while they are on
+ * the screen (and everyone else in the house is using the connection).  The slideshow order
+ * is fixed, so which photos those are is known from the current position and the display
+ * interval.
+ *
+ * Off-peak hours are usually when the screen is off and the device is asleep, so the checks
+ * are started by an inexact repeating RTC_WAKEUP alarm and hold a partial wake lock while
+ * they run.  Downloads only happen while the device is plugged in and on a network that isn't
+ * metered.
+ * Every check also works out how many of the next day's photos are already in the disk cache,
+ * which is logged and shown on the performance overlay.
+ */
+public class CacheWarmer {
+
+    /**
+     * Default logger.
+     */
+    private static final Logger LOGGER = new Logger(CacheWarmer.class);
+
+    /**
+     * How often to check whether it is time to download, and how many photos are ready.
+     */
+    private static final long CHECK_INTERVAL_MILLIS = AlarmManager.INTERVAL_FIFTEEN_MINUTES;
+
+    /**
+     * The broadcast the alarm sends.
+     */
+    private static final String ACTION_CHECK = "com.drampulla.gphotoslideshow.WARM_CACHE";
+
+    /**
+     * The wake lock is let go after this long even if a run is still going, so a stuck
+     * download can't keep the device awake for good.
+     */
+    private static final long MAX_WAKE_LOCK_MILLIS = TimeUnit.HOURS.toMillis(2);
+
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+
+    /**
+     * Stop once a run has downloaded this much of the disk cache, otherwise the photos warmed
+     * last would push out the ones that are needed first.
+     */
+    private static final double MAX_CACHE_FRACTION = 0.75;
+
+    /**
+     * Give up on a run after this many downloads in a row fail, the network is probably down.
+     */
+    private static final int MAX_CONSECUTIVE_FAILURES = 5;
+
+    /**
+     * During a run the power and network are checked again after this many downloads or this
+     * long, whichever comes first, rather than before every photo (each check asks the system
+     * for the battery and network state).
+     */
+    private static final int RECHECK_EVERY_DOWNLOADS = 20;
+    private static final long RECHECK_EVERY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Does the checks and the downloads, one at a time.
+     */
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final Context context;
+    private final SlideshowIterator slideshowIterator;
+    private final ImageLoader imageLoader;
+    private final SharedPreferences sharedPreferences;
+
+    private final PendingIntent alarmIntent;
+    private final PowerManager.WakeLock wakeLock;
+    private volatile boolean stopped;
+    /**
+     * true while a check is queued or running, so alarms during a long run don't pile up.
+     */
+    private final AtomicBoolean checking = new AtomicBoolean();
+    /**
+     * Multiplies the display interval, see {@link #setWorkState(int)}.
+     */
+    private volatile int intervalFactor = 1;
+
+    /**
+     * The result of the last check: how many photos will be shown in the next day and how
+     * many of them are cached.
+     */
+    private int upcomingCount;
+    private int cachedCount;
+
+    /**
+     * Keeping this as a member variable because the SharedPreferences only keep this listener
+     * as a weak reference.
+     */
+    private final SharedPreferences.OnSharedPreferenceChangeListener preferenceChangeListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+            if (PreferenceConstants.WARM_CACHE_START.equals(key) || PreferenceConstants.WARM_CACHE_END.equals(key)) {
+                LOGGER.d("Preference changed, so check the off-peak hours");
+                checkNow();
+            }
+        }
+    };
+
+    /**
+     *
+     * @param context
+     *          Used for the preferences and to check the power and the network.
+     * @param slideshowIterator
+     *          The slideshow, to find out which photos come next.
+     * @param imageLoader
+     *          Downloads the photos into its disk cache.
+     */
+    public CacheWarmer(Context context, SlideshowIterator slideshowIterator, ImageLoader imageLoader) {
+        this.context = context.getApplicationContext();
+        this.slideshowIterator = slideshowIterator;
+        this.imageLoader = imageLoader;
+        this.sharedPreferences = PreferenceManager.getDefaultSharedPreferences(this.context);
+        this.alarmIntent = PendingIntent.getBroadcast(this.context, 0,
+                new Intent(ACTION_CHECK).setPackage(this.context.getPackageName()), PendingIntent.FLAG_UPDATE_CURRENT);
+        PowerManager powerManager = (PowerManager) this.context.getSystemService(Context.POWER_SERVICE);
+        this.wakeLock = powerManager == null ? null : powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "CacheWarmer");
+        if (wakeLock != null) {
+            wakeLock.setReferenceCounted(false);
+        }
+    }
+
+    /**
+     * The alarm went off, the device stays awake until the check is done.
+     */
+    private final BroadcastReceiver alarmReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            checkNow();
+        }
+    };
+
+    /**
+     * Start checking.
+     */
+    public void start() {
+        sharedPreferences.registerOnSharedPreferenceChangeListener(preferenceChangeListener);
+        context.registerReceiver(alarmReceiver, new IntentFilter(ACTION_CHECK));
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager != null) {
+            // leave the first minute to putting up the first slides
+            alarmManager.setInexactRepeating(AlarmManager.RTC_WAKEUP,
+                    System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1), CHECK_INTERVAL_MILLIS, alarmIntent);
+        }
+    }
+
+    /**
+     * Stop for good, a download in progress is finished but nothing more is started.
+     */
+    public void shutdown() {
+        stopped = true;
+        sharedPreferences.unregisterOnSharedPreferenceChangeListener(preferenceChangeListener);
+        context.unregisterReceiver(alarmReceiver);
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager != null) {
+            alarmManager.cancel(alarmIntent);
+        }
+    }
+
+    /**
+     * Follow the work state of the slideshow, in {@link SlideshowScheduler#REDUCED} the slides
+     * change less often so fewer of them are shown in a day.
+     *
+     * @param state
+     *          One of the {@link SlideshowScheduler} states.
+     */
+    public void setWorkState(int state) {
+        intervalFactor = state == SlideshowScheduler.REDUCED ? ChangeSlideScheduledJob.REDUCED_INTERVAL_FACTOR : 1;
+    }
+
+    /**
+     * Run a check in the background, holding a wake lock until it is done.  Nothing happens if
+     * a check is already queued or running.
+     */
+    private void checkNow() {
+        if (stopped || !checking.compareAndSet(false, true)) {
+            return;
+        }
+        if (wakeLock != null) {
+            wakeLock.acquire(MAX_WAKE_LOCK_MILLIS);
+        }
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    check();
+                } catch (RuntimeException e) {
+                    LOGGER.e("Unable to warm the image cache", e);
+                } finally {
+                    checking.set(false);
+                    if (wakeLock != null && wakeLock.isHeld()) {
+                        wakeLock.release();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Work out what will be shown over the next day, and download it if this is a good time.
+     */
+    private void check() {
+        List<CatalogPhoto> upcoming = getUpcomingPhotos();
+        int cached = 0;
+        for (CatalogPhoto photo : upcoming) {
+            if (imageLoader.isCached(photo)) {
+                cached++;
+            }
+        }
+        if (cached < upcoming.size() && canDownload()) {
+            cached += warm(upcoming);
+        }
+        synchronized (this) {
+            upcomingCount = upcoming.size();
+            cachedCount = cached;
+        }
+        if (Logger.isLoggable(Logger.INFO)) {
+            StringBuilder out = new StringBuilder("Image cache has the ");
+            describe(out);
+            LOGGER.i(out.toString());
+        }
+    }
+
+    /**
+     * @return the photos that will be shown over the next day, in the order they will be
+     *          shown.
+     */
+    private List<CatalogPhoto> getUpcomingPhotos() {
+        int size = slideshowIterator.size();
+        if (size == 0) {
+            return new ArrayList<>();
+        }
+        long interval = Long.parseLong(sharedPreferences.getString(PreferenceConstants.DISPLAY_INTERVAL_KEY, "30"))
+                * intervalFactor;
+        QuietHours quietHours = parseHours(PreferenceConstants.QUIET_HOURS_START, PreferenceConstants.QUIET_HOURS_END);
+        int count = slidesPerDay(interval, quietHours == null ? 0 : quietHours.getMinutes(), size);
+        List<CatalogPhoto> rc = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            rc.add(slideshowIterator.peek(i));
+        }
+        return rc;
+    }
+
+    /**
+     * @param intervalSeconds
+     *          How long each slide is shown.
+     * @param quietMinutes
+     *          How many minutes of the day the slideshow is stopped.
+     * @param slideshowSize
+     *          How many photos are in the slideshow.
+     * @return
+     *          How many slides are shown in a day, never more than the whole slideshow.
+     */
+    static int slidesPerDay(long intervalSeconds, int quietMinutes, int slideshowSize) {
+        long showingSeconds = SECONDS_PER_DAY - quietMinutes * 60L;
+        return (int) Math.min(showingSeconds / Math.max(1, intervalSeconds), slideshowSize);
+    }
+
+    /**
+     * Download the photos that aren't cached yet, soonest first, until they are all there, the
+     * off-peak hours are over or the power or network changes.  The caller has just checked
+     * {@link #canDownload()}.
+     *
+     * @return how many photos were downloaded.
+     */
+    private int warm(List<CatalogPhoto> upcoming) {
+        long start = System.currentTimeMillis();
+        long budget = (long) (imageLoader.getDiskCache().getMaxBytes() * MAX_CACHE_FRACTION);
+        long bytes = 0;
+        int downloaded = 0;
+        int failures = 0;
+        int sinceCheck = 0;
+        long lastCheck = start;
+        for (CatalogPhoto photo : upcoming) {
+            if (stopped || bytes >= budget) {
+                break;
+            }
+            long now = System.currentTimeMillis();
+            if (++sinceCheck > RECHECK_EVERY_DOWNLOADS || now - lastCheck >= RECHECK_EVERY_MILLIS) {
+                if (!canDownload()) {
+                    break;
+                }
+                sinceCheck = 1;
+                lastCheck = now;
+            }
+            try {
+                int n = imageLoader.download(photo);
+                if (n > 0) {
+                    bytes += n;
+                    downloaded++;
+                }
+                failures = 0;
+            } catch (InterruptedIOException e) {
+                break;
+            } catch (IOException e) {
+                LOGGER.w("Unable to warm " + photo.getUrl(), e);
+                if (++failures >= MAX_CONSECUTIVE_FAILURES) {
+                    break;
+                }
+            }
+        }
+        if (downloaded > 0 && Logger.isLoggable(Logger.INFO)) {
+            LOGGER.i(String.format("Warmed %d images (%d bytes) in %ds.", downloaded, bytes,
+                    (System.currentTimeMillis() - start) / 1000));
+        }
+        return downloaded;
+    }
+
+    /**
+     * @return true if it is within the off-peak hours and the device is plugged in and on a
+     *          network that isn't metered.
+     */
+    private boolean canDownload() {
+        QuietHours offPeak = parseHours(PreferenceConstants.WARM_CACHE_START, PreferenceConstants.WARM_CACHE_END);
+        if (offPeak == null || !offPeak.isQuiet(System.currentTimeMillis(), TimeZone.getDefault())) {
+            return false;
+        }
+        Intent battery = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery == null || battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) == 0) {
+            return false;
+        }
+        ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager == null) {
+            return false;
+        }
+        NetworkInfo network = connectivityManager.getActiveNetworkInfo();
+        return network != null && network.isConnected()
+                && !ConnectivityManagerCompat.isActiveNetworkMetered(connectivityManager);
+    }
+
+    /**
+     * @return the hours from the preferences, null if there aren't any (or they can't be
+     *          understood).
+     */
+    private QuietHours parseHours(String startKey, String endKey) {
+        try {
+            return QuietHours.parse(sharedPreferences.getString(startKey, ""), sharedPreferences.getString(endKey, ""));
+        } catch (IllegalArgumentException e) {
+            LOGGER.w("Ignoring the hours in " + startKey, e);
+            return null;
+        }
+    }
+
+    /**
+     * Write how much of the next day is cached, e.g. for the on screen overlay.
+     *
+     * @param out
+     *          Where to append it.
+     */
+    public synchronized void describe(StringBuilder out) {
+        out.append("next day cached ")
+                .append(cachedCount).append('/')
+                .append(upcomingCount).append(' ')
+                .append(upcomingCount == 0 ? 0 : 100L * cachedCount / upcomingCount).append('%');
+    }
+}
@@ -0,0 +1,149 @@
+package com.drampulla.gphotoslideshow;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An album in the {@link PhotoCatalog} along with all of the photos inside of it.
+ */
+public class CatalogAlbum {
+
+    /**
+     * The unique id of the album.
+     */
+    private final String id;
+    /**
+     * The title of the album (this is what the include/exclude regex is applied to).
+     */
+    private final String title;
+    /**
+     * When the album was last updated on the server.  This is used to decide whether
+     * the photos need to be fetched again during a sync.
+     */
+    private final long updated;
+    /**
+     * The photos in the album, in the order the server returned them.  These are kept in a
+     * {@link PhotoTable} rather than as CatalogPhotos to keep large catalogs small.
+     */
+    private final PhotoTable photos;
+
+    public CatalogAlbum(String id, String title, long updated, List<CatalogPhoto> photos) {
+        this(id, title, updated, PhotoTable.of(photos));
+    }
+
+    public CatalogAlbum(String id, String title, long updated, PhotoTable photos) {
+        this.id = id;
+        this.title = title;
+        this.updated = updated;
+        this.photos = photos;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public long getUpdated() {
+        return updated;
+    }
+
+    /**
+     * @return
+     *          The photos, each one is created as it is asked for.  Use the methods that take
+     *          an index when only a single detail of each photo is needed.
+     */
+    public List<CatalogPhoto> getPhotos() {
+        return new AbstractList<CatalogPhoto>() {
+            @Override
+            public CatalogPhoto get(int index) {
+                return getPhoto(index);
+            }
+
+            @Override
+            public int size() {
+                return photos.size();
+            }
+        };
+    }
+
+    public PhotoTable getPhotoTable() {
+        return photos;
+    }
+
+    public int getPhotoCount() {
+        return photos.size();
+    }
+
+    public CatalogPhoto getPhoto(int index) {
+        return photos.getPhoto(id, index);
+    }
+
+    public String getPhotoId(int index) {
+        return photos.getId(index);
+    }
+
+    public long getPhotoTimestamp(int index) {
+        return photos.getTimestamp(index);
+    }
+
+    /**
+     * @param photoId
+     *          The id of a photo.
+     * @return
+     *          Where the photo is in the album, or -1 if it isn't.
+     */
+    public int indexOfPhoto(String photoId) {
+        return photos.indexOfId(photoId);
+    }
+
+    /**
+     * Apply just the photos that changed since this copy of the album was loaded (e.g. from a
+     * feed requested with updated-min).  Changed photos replace the old copy in place, new
+     * ones go on the end and photos that aren't in currentIds any more are dropped (a list of
+     * changes can't say which photos were deleted, so the ids come from a separate list of
+     * every photo in the album).
+     *
+     * @param title
+     *          The current title of the album.
+     * @param updated
+     *          When the album was last updated on the server.
+     * @param changed
+     *          The photos added or changed since this copy was loaded.
+     * @param currentIds
+     *          The ids of every photo the album has on the server now.
+     * @return
+     *          The updated album, or null if the result doesn't match currentIds (e.g. the
+     *          album changed again in between) and the whole album has to be loaded again.
+     */
+    public CatalogAlbum withChanges(String title, long updated, List<CatalogPhoto> changed, Set<String> currentIds) {
+        Map<String, CatalogPhoto> byId = new HashMap<>();
+        for (CatalogPhoto photo : changed) {
+            byId.put(photo.getId(), photo);
+        }
+        List<CatalogPhoto> merged = new ArrayList<>(photos.size() + changed.size());
+        for (CatalogPhoto photo : getPhotos()) {
+            CatalogPhoto replacement = byId.remove(photo.getId());
+            if (replacement != null) {
+                merged.add(replacement);
+            } else if (currentIds.contains(photo.getId())) {
+                merged.add(photo);
+            }
+        }
+        for (CatalogPhoto photo : changed) {
+            if (byId.containsKey(photo.getId())) {
+                merged.add(photo);
+            }
+        }
+        if (merged.size() != currentIds.size()) {
+            return null;
+        }
+        return new CatalogAlbum(id, title, updated, merged);
+    }
+}
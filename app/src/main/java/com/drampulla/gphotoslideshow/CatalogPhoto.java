@@ -0,0 +1,73 @@
+package com.drampulla.gphotoslideshow;
+
+/**
+ * The details of a single photo that the slideshow needs in order to display it.  This is
+ * deliberately much smaller than the gdata PhotoEntry so that thousands of them can be kept
+ * around and persisted in the {@link PhotoCatalog}.
+ */
+public class CatalogPhoto {
+
+    /**
+     * The id of the album this photo belongs to.
+     */
+    private final String albumId;
+    /**
+     * The unique id of the photo.
+     */
+    private final String id;
+    /**
+     * The URL of the image itself.
+     */
+    private final String url;
+    /**
+     * The title (usually the filename) of the photo.
+     */
+    private final String title;
+    /**
+     * When the photo was taken in milliseconds since the epoch.
+     */
+    private final long timestamp;
+    /**
+     * Dimensions of the original photo in pixels.
+     */
+    private final int width;
+    private final int height;
+
+    public CatalogPhoto(String albumId, String id, String url, String title, long timestamp, int width, int height) {
+        this.albumId = albumId;
+        this.id = id;
+        this.url = url;
+        this.title = title;
+        this.timestamp = timestamp;
+        this.width = width;
+        this.height = height;
+    }
+
+    public String getAlbumId() {
+        return albumId;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,242 @@
+package com.drampulla.gphotoslideshow;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps the local {@link PhotoCatalog} up to date with the albums in the {@link PhotoSource}.  Only
+ * the albums whose "updated" timestamp changed since the last sync are downloaded again
+ * (several at a time by the {@link AlbumFeedLoader}), everything else is copied over from
+ * the existing catalog.  If the source can tell the album list itself hasn't changed since
+ * the catalog's version nothing else is fetched at all.
+ */
+public class CatalogSynchronizer {
+
+    /**
+     * Default logger.
+     */
+    private static final Logger LOGGER = new Logger(CatalogSynchronizer.class);
+
+    /**
+     * Syncs are done one at a time in the background.
+     */
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * When streaming, how often a partial catalog is handed out after the first one that has
+     * something to show.
+     */
+    private static final long STREAMING_UPDATE_INTERVAL_MILLIS = 2000;
+
+    private final PhotoSource photoSource;
+    private final AlbumFeedLoader albumFeedLoader;
+    private final PhotoCatalogStore catalogStore;
+
+    /**
+     *
+     * @param photoSource
+     *          Where the list of albums comes from.
+     * @param albumFeedLoader
+     *          Loads the photos of the albums that changed.
+     * @param catalogStore
+     *          Where the catalog is saved once it has been synchronized.
+     */
+    public CatalogSynchronizer(PhotoSource photoSource, AlbumFeedLoader albumFeedLoader, PhotoCatalogStore catalogStore) {
+        this.photoSource = photoSource;
+        this.albumFeedLoader = albumFeedLoader;
+        this.catalogStore = catalogStore;
+    }
+
+    /**
+     * Bring the catalog up to date with the server and save it.
+     *
+     * @param current
+     *          The catalog as it is today (possibly empty).
+     * @return
+     *          The new catalog, or current if nothing changed.
+     */
+    public PhotoCatalog synchronize(PhotoCatalog current) {
+        return synchronize(current, null, null);
+    }
+
+    /**
+     * Bring the catalog up to date with the server and save it.
+     *
+     * @param current
+     *          The catalog as it is today (possibly empty).
+     * @param streamingFilter
+     *          The albums the slideshow will show, partial catalogs are only handed out once
+     *          one of these with photos in it is ready.  Required with streamingCallback.
+     * @param streamingCallback
+     *          If not null, this is handed partial catalogs (every album that is ready so far,
+     *          in the final order) while the albums are still loading, so the slideshow can
+     *          start before the sync finishes.  It is not called with the final catalog.
+     * @return
+     *          The new catalog, or current if nothing changed.
+     */
+    public PhotoCatalog synchronize(PhotoCatalog current, final AlbumFilter streamingFilter,
+                                    final SyncCallback streamingCallback) {
+        long start = System.currentTimeMillis();
+        long startBytes = photoSource.getTransferredBytes();
+        boolean changed = false;
+        int fetched = 0;
+        boolean allLoaded = true;
+
+        SourceAlbumList sourceAlbumList = photoSource.getSourceAlbums(current.getVersion());
+        if (sourceAlbumList.isUnchanged()) {
+            LOGGER.i("Album list hasn't changed, transferred %d feed bytes in %dms.",
+                    photoSource.getTransferredBytes() - startBytes, System.currentTimeMillis() - start);
+            return current;
+        }
+        List<SourceAlbum> sourceAlbums = sourceAlbumList.getAlbums();
+        final CatalogAlbum[] synced = new CatalogAlbum[sourceAlbums.size()];
+        List<SourceAlbum> toLoad = new ArrayList<>();
+        final List<Integer> toLoadIndexes = new ArrayList<>();
+        for (int i = 0; i < sourceAlbums.size(); i++) {
+            SourceAlbum sourceAlbum = sourceAlbums.get(i);
+            CatalogAlbum existing = current.findAlbum(sourceAlbum.getId());
+            if (existing != null && existing.getUpdated() == sourceAlbum.getUpdated()) {
+                synced[i] = existing;
+            } else {
+                toLoad.add(sourceAlbum);
+                toLoadIndexes.add(i);
+            }
+        }
+
+        AlbumFeedLoader.AlbumLoadedCallback albumLoadedCallback = null;
+        if (streamingCallback != null) {
+            boolean hasPhotosToShow = false;
+            for (CatalogAlbum album : synced) {
+                hasPhotosToShow |= isShown(album, streamingFilter);
+            }
+            final boolean existingPhotosToShow = hasPhotosToShow;
+            albumLoadedCallback = new AlbumFeedLoader.AlbumLoadedCallback() {
+                private boolean publishable = existingPhotosToShow;
+                private long lastUpdate;
+
+                @Override
+                public void albumLoaded(int index, CatalogAlbum album) {
+                    synced[toLoadIndexes.get(index)] = album;
+                    // a catalog the slideshow can't show anything from is no use, so the
+                    // clock only starts once there is one
+                    if (!publishable) {
+                        if (!isShown(album, streamingFilter)) {
+                            return;
+                        }
+                        publishable = true;
+                    }
+                    // the first one goes out right away, after that don't rebuild too often
+                    long now = System.currentTimeMillis();
+                    if (lastUpdate == 0 || now - lastUpdate >= STREAMING_UPDATE_INTERVAL_MILLIS) {
+                        lastUpdate = now;
+                        streamingCallback.catalogUpdated(toCatalog(synced, ""), false);
+                    }
+                }
+            };
+        }
+
+        CatalogAlbum[] loaded = albumFeedLoader.load(toLoad, current, albumLoadedCallback);
+        for (int i = 0; i < loaded.length; i++) {
+            int index = toLoadIndexes.get(i);
+            if (loaded[i] != null) {
+                synced[index] = loaded[i];
+                fetched++;
+                changed = true;
+            } else {
+                // couldn't load it this time, so keep the old copy (if there is one) until the next sync
+                synced[index] = current.findAlbum(toLoad.get(i).getId());
+                allLoaded = false;
+            }
+        }
+
+        // the version is only kept if everything loaded, otherwise the next sync would think
+        // the albums that failed are up to date
+        PhotoCatalog rc = toCatalog(synced, allLoaded ? sourceAlbumList.getVersion() : "");
+        changed |= rc.getAlbumCount() != current.getAlbumCount() || !rc.getVersion().equals(current.getVersion());
+        long transferred = photoSource.getTransferredBytes() - startBytes;
+
+        if (!changed) {
+            LOGGER.i("Catalog is up to date, checked %d albums and transferred %d feed bytes in %dms.",
+                    rc.getAlbumCount(), transferred, System.currentTimeMillis() - start);
+            return current;
+        }
+
+        try {
+            catalogStore.save(rc);
+        } catch (IOException e) {
+            LOGGER.w("Unable to save the photo catalog", e);
+        }
+        if (Logger.isLoggable(Logger.INFO)) {
+            LOGGER.i(String.format("Synchronized catalog, fetched %d of %d albums and transferred %d feed bytes in %dms.",
+                    fetched, rc.getAlbumCount(), transferred, System.currentTimeMillis() - start));
+        }
+        return rc;
+    }
+
+    /**
+     * @return true if the album is there, has photos and passes the filter.
+     */
+    private static boolean isShown(CatalogAlbum album, AlbumFilter albumFilter) {
+        return album != null && album.getPhotoCount() > 0 && albumFilter.matches(album.getTitle());
+    }
+
+    /**
+     * @return a catalog of the albums that are not null, in order.
+     */
+    private static PhotoCatalog toCatalog(CatalogAlbum[] albums, String version) {
+        List<CatalogAlbum> rc = new ArrayList<>(albums.length);
+        for (CatalogAlbum album : albums) {
+            if (album != null) {
+                rc.add(album);
+            }
+        }
+        return new PhotoCatalog(rc, version);
+    }
+
+    /**
+     * Synchronize the catalog without blocking the caller.
+     *
+     * @param current
+     *          The catalog as it is today.
+     * @param streamingFilter
+     *          Not null to have the callback called with partial catalogs while the albums
+     *          are loading, as soon as one of the albums it matches is ready (see
+     *          {@link #synchronize(PhotoCatalog, AlbumFilter, SyncCallback)}).
+     * @param callback
+     *          Called (in the background) only if the catalog actually changed.  When streaming
+     *          it is always called once at the end with complete set, so the caller knows that
+     *          nothing else is coming.
+     */
+    public void synchronizeInBackground(final PhotoCatalog current, final AlbumFilter streamingFilter, final SyncCallback callback) {
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    boolean streaming = streamingFilter != null;
+                    PhotoCatalog updated = synchronize(current, streamingFilter, streaming ? callback : null);
+                    if (streaming || updated != current) {
+                        callback.catalogUpdated(updated, true);
+                    }
+                } catch (Throwable t) {
+                    LOGGER.e("Background catalog sync failed", t);
+                }
+            }
+        });
+    }
+
+    /**
+     * Class to help with callback after a background sync changes the catalog.
+     */
+    public static interface SyncCallback {
+        /**
+         * @param catalog
+         *          The new catalog.
+         * @param complete
+         *          false if this is a partial catalog and more albums are still loading.
+         */
+        void catalogUpdated(PhotoCatalog catalog, boolean complete);
+    }
+}
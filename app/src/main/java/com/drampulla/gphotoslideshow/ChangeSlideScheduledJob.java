@@ -2,21 +2,28 @@ package com.drampulla.gphotoslideshow;
 
 import android.app.Activity;
 import android.app.AlertDialog;
+import android.content.ComponentCallbacks2;
 import android.content.SharedPreferences;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.drawable.BitmapDrawable;
 import android.os.Handler;
 import android.preference.PreferenceManager;
+import android.util.DisplayMetrics;
+import android.view.View;
+import android.view.animation.Animation;
 import android.widget.ImageSwitcher;
 import android.widget.TextView;
 
-import com.google.gdata.data.photos.PhotoEntry;
-import com.google.gdata.util.ServiceException;
-
+import java.io.File;
 import java.io.IOException;
-import java.net.URL;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -39,19 +46,95 @@ public class ChangeSlideScheduledJob {
      * Scheduling executor.
      */
     private static final ScheduledExecutorService EXECUTOR = Executors.newScheduledThreadPool(1);
+    /**
+     * Every move through the slideshow happens on this thread, one at a time.
+     */
+    private static final ExecutorService NAVIGATION_EXECUTOR = Executors.newSingleThreadExecutor();
+    /**
+     * Name of the directory (in the app's cache directory) that downloaded images are kept in.
+     */
+    private static final String IMAGE_CACHE_DIRECTORY = "images";
+    /**
+     * Downloads the images.  There is only one so the bandwidth limit covers every download
+     * and the connections and host stats outlive the job.
+     */
+    private static final ImageHttpClient HTTP_CLIENT = new ImageHttpClient();
+    /**
+     * How many slides to skip over looking for one that is cached when an image can't be
+     * downloaded (usually because the network is down).
+     */
+    private static final int MAX_OFFLINE_SKIP = 100;
+    /**
+     * The ImageSwitcher has two views, the slide going out and the slide coming in.  Any
+     * slide older than that is no longer on the screen.
+     */
+    private static final int SLIDES_ON_SCREEN = 2;
+    /**
+     * How many slides that went off the screen are kept decoded for going back.
+     */
+    private static final int SLIDE_HISTORY_SIZE = 10;
+    /**
+     * In {@link SlideshowScheduler#REDUCED} mode slides stay up this many times longer, and
+     * only the next slide is prefetched.
+     */
+    static final int REDUCED_INTERVAL_FACTOR = 3;
 
     private SlideshowIterator slideshowIterator;
     private Activity mainActivity;
     private Handler replaceImageHandler;
     private ImageSwitcher imageSwitcher;
     private ScheduledFuture<?> future;
+    private ImageLoader imageLoader;
+    private SlidePrefetcher slidePrefetcher;
+    private BitmapPool bitmapPool;
+    private SlideMemoryCache slideMemoryCache;
+    private CacheWarmer cacheWarmer;
+    private final NavigationQueue navigationQueue;
+    /**
+     * One of the {@link SlideshowScheduler} states, nothing is scheduled while suspended.
+     */
+    private int workState = SlideshowScheduler.RUNNING;
+    /**
+     * The photo ids and bitmaps currently in the ImageSwitcher, oldest first, so the first
+     * one is the slide that is hidden behind the one showing.  Only changed on the UI thread,
+     * locked on onScreenPhotoIds.
+     */
+    private final ArrayDeque<String> onScreenPhotoIds = new ArrayDeque<>();
+    private final ArrayDeque<Bitmap> onScreenBitmaps = new ArrayDeque<>();
 
     private SharedPreferences.OnSharedPreferenceChangeListener preferenceChangeListener;
 
+    /**
+     * For timing the transition of the slide that was just put up (UI thread only).
+     */
+    private long transitionStartNanos;
+    private long slideStartNanos;
+    private boolean slideBackward;
+    private Animation timedAnimation;
+    private final Animation.AnimationListener transitionListener = new Animation.AnimationListener() {
+        @Override
+        public void onAnimationStart(Animation animation) {
+            transitionStarted();
+        }
+
+        @Override
+        public void onAnimationEnd(Animation animation) {
+        }
+
+        @Override
+        public void onAnimationRepeat(Animation animation) {
+        }
+    };
+
+    /**
+     * Reused for the text of the performance overlay.
+     */
+    private final StringBuilder perfOverlayText = new StringBuilder();
+
     /**
      *
      * @param slideshowIterator
-     *          The slideshow iterator that can get the next PhotoEntry
+     *          The slideshow iterator that can get the next photo
      * @param mainActivity
      *          The mainActivity that has the imageSwitcher we are putting the photo into
      * @param replaceImageHandler
@@ -62,7 +145,51 @@ public class ChangeSlideScheduledJob {
         this.mainActivity = mainActivity;
         this.replaceImageHandler = replaceImageHandler;
 
-        changeScheduledTime();
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mainActivity.getApplicationContext());
+        DisplayMetrics displayMetrics = mainActivity.getResources().getDisplayMetrics();
+        long screenBytes = (long) displayMetrics.widthPixels * displayMetrics.heightPixels * 4;
+        // enough spare bitmaps to decode the whole prefetch window without allocating
+        this.bitmapPool = new BitmapPool(screenBytes * 4);
+        this.slideMemoryCache = new SlideMemoryCache(Runtime.getRuntime().maxMemory() / 8, SLIDE_HISTORY_SIZE, bitmapPool);
+        this.imageLoader = new ImageLoader(new ImageDiskCache(new File(mainActivity.getCacheDir(), IMAGE_CACHE_DIRECTORY),
+                getImageCacheBytes(prefs)), bitmapPool, HTTP_CLIENT, displayMetrics.widthPixels, displayMetrics.heightPixels);
+        HTTP_CLIENT.setBandwidthLimit(getBandwidthLimit(prefs));
+        this.slidePrefetcher = new SlidePrefetcher(imageLoader, slideMemoryCache, bitmapPool,
+                Integer.parseInt(prefs.getString(PreferenceConstants.PREFETCH_AHEAD, "2")),
+                Integer.parseInt(prefs.getString(PreferenceConstants.PREFETCH_BEHIND, "1")));
+
+        this.cacheWarmer = new CacheWarmer(mainActivity, slideshowIterator, imageLoader);
+        cacheWarmer.start();
+
+        this.navigationQueue = new NavigationQueue(NAVIGATION_EXECUTOR, new NavigationQueue.Navigator() {
+            @Override
+            public void navigate(int seekIndex, int delta, boolean manual) {
+                try {
+                    ChangeSlideScheduledJob.this.navigate(seekIndex, delta, manual);
+                } catch (final Throwable t) {
+                    LOGGER.e("Something bad happened while getting next slide", t);
+                    ChangeSlideScheduledJob.this.replaceImageHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            new AlertDialog.Builder(ChangeSlideScheduledJob.this.mainActivity)
+                                    .setTitle("NextSlide error")
+                                    .setMessage(t.getMessage())
+                                    .setCancelable(true)
+                                    .create().show();
+                        }
+                    });
+                }
+            }
+
+            @Override
+            public void superseded() {
+                slidePrefetcher.cancelTake();
+            }
+        });
+
+        // put the first slide up right away rather than waiting a whole interval
+        navigationQueue.advance();
+        changeScheduledTime(-1);
 
         // Keeping this as a member variable because the SharedPreferences only keep this listener
         // as a weak reference.
@@ -71,116 +198,481 @@ public class ChangeSlideScheduledJob {
             public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String s) {
                 if (PreferenceConstants.DISPLAY_INTERVAL_KEY.equals(s)) {
                     LOGGER.d("Preference changed, so update the timer");
-                    changeScheduledTime();
+                    changeScheduledTime(-1);
+                } else if (PreferenceConstants.PREFETCH_AHEAD.equals(s) || PreferenceConstants.PREFETCH_BEHIND.equals(s)) {
+                    updatePrefetchDepth(sharedPreferences);
+                } else if (PreferenceConstants.IMAGE_CACHE_SIZE.equals(s)) {
+                    imageLoader.getDiskCache().setMaxBytes(getImageCacheBytes(sharedPreferences));
+                } else if (PreferenceConstants.IMAGE_BANDWIDTH_LIMIT.equals(s)) {
+                    HTTP_CLIENT.setBandwidthLimit(getBandwidthLimit(sharedPreferences));
                 }
             }
         };
 
         // handle if the preference changes
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mainActivity.getApplicationContext());
         prefs.registerOnSharedPreferenceChangeListener(preferenceChangeListener);
     }
 
+    /**
+     * @return the size of the image cache from the preferences in bytes.
+     */
+    private static long getImageCacheBytes(SharedPreferences prefs) {
+        return Long.parseLong(prefs.getString(PreferenceConstants.IMAGE_CACHE_SIZE, "256")) * 1024 * 1024;
+    }
+
+    /**
+     * @return the image bandwidth limit from the preferences (in kilobits per second there)
+     *          in bytes per second, 0 for no limit.
+     */
+    private static long getBandwidthLimit(SharedPreferences prefs) {
+        return Long.parseLong(prefs.getString(PreferenceConstants.IMAGE_BANDWIDTH_LIMIT, "0")) * 1000 / 8;
+    }
+
+    /**
+     * Set how much work the slideshow does, as decided by the {@link SlideshowScheduler}.
+     * While suspended the timer is stopped and nothing is prefetched, when it comes back the
+     * slide on the screen gets a whole interval.
+     *
+     * @param state
+     *          One of the {@link SlideshowScheduler} states.
+     */
+    public void setWorkState(int state) {
+        synchronized (this) {
+            if (state == workState) {
+                return;
+            }
+            workState = state;
+        }
+        cacheWarmer.setWorkState(state);
+        updatePrefetchDepth(PreferenceManager.getDefaultSharedPreferences(mainActivity.getApplicationContext()));
+        if (state == SlideshowScheduler.SUSPENDED) {
+            stopTimer();
+            slidePrefetcher.prefetch(Collections.<CatalogPhoto>emptyList());
+        } else {
+            changeScheduledTime(-1);
+        }
+    }
+
+    public synchronized int getWorkState() {
+        return workState;
+    }
+
+    /**
+     * Stop for good, e.g. because the slideshow was replaced or the activity is going away.
+     */
+    public void shutdown() {
+        setWorkState(SlideshowScheduler.SUSPENDED);
+        cacheWarmer.shutdown();
+        PreferenceManager.getDefaultSharedPreferences(mainActivity.getApplicationContext())
+                .unregisterOnSharedPreferenceChangeListener(preferenceChangeListener);
+    }
+
+    /**
+     * Prefetch as far as the preferences say, or only the next slide when the work is reduced.
+     */
+    private void updatePrefetchDepth(SharedPreferences prefs) {
+        int ahead = Integer.parseInt(prefs.getString(PreferenceConstants.PREFETCH_AHEAD, "2"));
+        int behind = Integer.parseInt(prefs.getString(PreferenceConstants.PREFETCH_BEHIND, "1"));
+        if (getWorkState() != SlideshowScheduler.RUNNING) {
+            ahead = Math.min(ahead, 1);
+            behind = 0;
+        }
+        slidePrefetcher.setDepth(ahead, behind);
+    }
+
+    /**
+     * Let go of cached bitmaps when the system is running low on memory.
+     *
+     * @param level
+     *          The level passed to onTrimMemory.
+     */
+    public void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            slideMemoryCache.evictAll();
+            bitmapPool.clear();
+        }
+    }
+
     /**
      * The preference changed, so cancel the timer and create a new scheduled job with the new
      * preference time.
+     *
+     * @param initialDelaySeconds
+     *          How long until the next slide, or -1 to wait a full interval.
      */
-    private void changeScheduledTime() {
+    private synchronized void changeScheduledTime(long initialDelaySeconds) {
 
-        if (future != null) {
-            future.cancel(false);
+        stopTimer();
+        if (workState == SlideshowScheduler.SUSPENDED) {
+            return;
         }
 
         String displayInterval = PreferenceManager.getDefaultSharedPreferences(mainActivity.getApplicationContext()).getString(PreferenceConstants.DISPLAY_INTERVAL_KEY, "30");
+        long interval = Long.parseLong(displayInterval) * (workState == SlideshowScheduler.REDUCED ? REDUCED_INTERVAL_FACTOR : 1);
         future = EXECUTOR.scheduleAtFixedRate(new Runnable() {
                                                           @Override
                                                           public void run() {
-                                                              try {
-                                                                  nextSlide();
-                                                              } catch (Throwable t) {
-                                                                  LOGGER.e("Something bad happened while getting next slide", t);
-                                                                  AlertDialog.Builder builder = new AlertDialog.Builder(mainActivity);
-                                                                  builder.setTitle("NextSlide error")
-                                                                          .setMessage(t.getMessage())
-                                                                          .setCancelable(true)
-                                                                          .create().show();
-                                                              }
+                                                              navigationQueue.advance();
                                                           }
                                                       },
-                                            Long.parseLong(displayInterval),
-                                            Long.parseLong(displayInterval),
+                                            initialDelaySeconds < 0 ? interval : initialDelaySeconds,
+                                            interval,
                                             TimeUnit.SECONDS);
     }
 
+    private synchronized void stopTimer() {
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+        }
+    }
+
     /**
-     * Advance the display to the next photo from Google.
+     * Advance the display to the next photo from Google.  This returns right away, the slide
+     * is loaded on the navigation thread.
      */
     public void nextSlide() {
-        PhotoEntry photoEntry = slideshowIterator.next();
-        displaySlide(photoEntry);
+        navigationQueue.move(1);
     }
 
     /**
-     * Go backward on the display to the previous photo from Google.
+     * Go backward on the display to the previous photo from Google.  This returns right away,
+     * the slide is loaded on the navigation thread.
      */
     public void previousSlide() {
-        PhotoEntry photoEntry = slideshowIterator.previous();
-        displaySlide(photoEntry);
+        navigationQueue.move(-1);
     }
 
     /**
-     * Put a photo entry onto the ImageSwitcher.
+     * Jump to a photo.  This returns right away, the slide is loaded on the navigation thread.
      *
-     * @param photoEntry
+     * @param sequenceIndex
+     *          The position of the photo in the slideshow order.
+     */
+    public void seek(int sequenceIndex) {
+        navigationQueue.seek(sequenceIndex);
+    }
+
+    /**
+     * Move through the slideshow and show where it ends up (navigation thread only).
+     *
+     * @param seekIndex
+     *          Where to jump to first, or {@link NavigationQueue#NO_SEEK}.
+     * @param delta
+     *          How many slides to move.
+     * @param manual
+     *          true if the user asked for the move, then the timer starts over so the slide
+     *          gets a whole interval on the screen.
+     */
+    private void navigate(int seekIndex, int delta, boolean manual) {
+        long start = System.nanoTime();
+        if (seekIndex != NavigationQueue.NO_SEEK) {
+            slideshowIterator.seek(seekIndex);
+        }
+        CatalogPhoto photo = slideshowIterator.skip(delta);
+        SlideTimings.record(SlideTimings.ADVANCE, start);
+        if (manual) {
+            changeScheduledTime(-1);
+        }
+        try {
+            if (showHiddenSlide(photo, start, delta < 0)) {
+                return;
+            }
+            if (!displaySlide(photo, start, delta < 0) && delta > 0) {
+                // most likely the network is down, so keep going with the photos we already have
+                for (int i = 0; i < MAX_OFFLINE_SKIP && !imageLoader.isCached(photo); i++) {
+                    photo = slideshowIterator.next();
+                }
+                if (imageLoader.isCached(photo)) {
+                    displaySlide(photo, start, false);
+                }
+            }
+        } catch (CancellationException e) {
+            // the user moved on before the slide finished loading
+            LOGGER.d("Stopped loading %s", photo.getTitle());
+        }
+    }
+
+    /**
+     * @return the prefetcher so its depth and hit rate can be checked.
+     */
+    public SlidePrefetcher getSlidePrefetcher() {
+        return slidePrefetcher;
+    }
+
+    /**
+     * Start loading the slide about to be displayed and the ones on either side of it.  This
+     * also stops loading anything outside of that window, e.g. the slides that were skipped
+     * over by a quick run of swipes.
+     *
+     * @param current
+     *          The photo about to be displayed.
+     * @param loadCurrent
+     *          false if the current photo is already loaded.
+     */
+    private void prefetchAroundCurrentSlide(CatalogPhoto current, boolean loadCurrent) {
+        List<CatalogPhoto> window = new ArrayList<>();
+        if (loadCurrent) {
+            window.add(current);
+        }
+        if (getWorkState() == SlideshowScheduler.SUSPENDED) {
+            // e.g. a swipe during the quiet hours, don't load anything else
+            slidePrefetcher.prefetch(window);
+            return;
+        }
+        // the next slide is the most important, then alternate between ahead and behind
+        for (int i = 1; i <= Math.max(slidePrefetcher.getAheadCount(), slidePrefetcher.getBehindCount()); i++) {
+            if (i <= slidePrefetcher.getAheadCount()) {
+                addUnlessOnScreen(window, slideshowIterator.peek(i));
+            }
+            if (i <= slidePrefetcher.getBehindCount()) {
+                addUnlessOnScreen(window, slideshowIterator.peek(-i));
+            }
+        }
+        slidePrefetcher.prefetch(window);
+    }
+
+    /**
+     * Slides still in the ImageSwitcher (usually the previous one, hidden behind the one
+     * showing) are brought back from there, so loading them again would be wasted.
+     */
+    private void addUnlessOnScreen(List<CatalogPhoto> window, CatalogPhoto photo) {
+        synchronized (onScreenPhotoIds) {
+            if (onScreenPhotoIds.contains(photo.getId())) {
+                return;
+            }
+        }
+        window.add(photo);
+    }
+
+    /**
+     * Put a photo onto the ImageSwitcher.
+     *
+     * @param photo
      *      The photo to display
+     * @param start
+     *      The {@link System#nanoTime()} when the slide was asked for.
+     * @param backward
+     *      true if the user went back to the slide.
+     * @return
+     *      false if the image couldn't be loaded.
+     * @throws CancellationException
+     *      If the user moved on while the image was loading.
      */
-    private void displaySlide(final PhotoEntry photoEntry) {
-        String url = photoEntry.getMediaContents().get(0).getUrl();
+    private boolean displaySlide(final CatalogPhoto photo, final long start, final boolean backward) {
+        String url = photo.getUrl();
         try {
-            final Bitmap bmp = BitmapFactory.decodeStream(new URL(url).openStream());
+            prefetchAroundCurrentSlide(photo, true);
+            final Bitmap bmp = slidePrefetcher.take(photo);
+            if (navigationQueue.hasPendingMove()) {
+                // the user already asked for another slide, keep this one in case they come back
+                slideMemoryCache.put(photo.getId(), bmp);
+                return true;
+            }
+            if (Logger.isLoggable(Logger.DEBUG)) {
+                ImageDiskCache diskCache = imageLoader.getDiskCache();
+                LOGGER.d(String.format("Prefetch hit rate %.2f (%d hits, %d misses), image cache %d hits, %d misses, %d bytes saved, bitmaps %d reused, %d allocated",
+                        slidePrefetcher.getHitRate(), slidePrefetcher.getHits(), slidePrefetcher.getMisses(),
+                        diskCache.getHits(), diskCache.getMisses(), diskCache.getBytesSaved(),
+                        bitmapPool.getReused(), bitmapPool.getAllocated()));
+            }
 
+            final long posted = System.nanoTime();
             replaceImageHandler.post(new Runnable() {
                 @Override
                 public void run() {
                     try {
+                        SlideTimings.record(SlideTimings.UI_POST, posted);
                         final BitmapDrawable drawable = new BitmapDrawable(mainActivity.getResources(), bmp);
                         imageSwitcher = (ImageSwitcher) mainActivity.findViewById(R.id.imageSwitcher);
+                        timeTransition(start, backward);
                         imageSwitcher.setImageDrawable(drawable);
-
-                        final TextView textViewPhotoInfo = (TextView) mainActivity.findViewById(R.id.image_display_details_text);
-                        if (PreferenceManager.getDefaultSharedPreferences(mainActivity.getApplicationContext()).getBoolean(PreferenceConstants.SHOW_PHOTO_DESCRIPTION, false)) {
-                            textViewPhotoInfo.setText(getPhotoDescription(photoEntry));
-                        } else {
-                            textViewPhotoInfo.setText("");
+                        if (timedAnimation == null) {
+                            // no animation, so the slide is already there
+                            transitionStarted();
                         }
+                        StartupMetrics.markSlideDisplayed();
+                        slideShown(photo, bmp);
+                        updateOverlays(photo);
                     } catch (Exception e) {
-                        e.printStackTrace();
+                        LOGGER.e("Unable to display " + photo.getTitle(), e);
                     }
 
                 }
             });
         } catch (IOException e) {
             LOGGER.e("Unable to retrieve image " + url, e);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Going back one slide, or forward again after that, doesn't need to load anything, that
+     * slide is still in the ImageSwitcher behind the one showing, so just bring it to the
+     * front.  (Slides on screen are left out of the prefetch window, so this is the only way
+     * they come back without loading them again.)
+     *
+     * @param photo
+     *          The photo being moved to.
+     * @param start
+     *          The {@link System#nanoTime()} when the slide was asked for.
+     * @param backward
+     *          true if the user went back to the slide.
+     * @return
+     *          false if the photo isn't the hidden slide, it has to be loaded.
+     */
+    private boolean showHiddenSlide(final CatalogPhoto photo, final long start, final boolean backward) {
+        if (!isHiddenSlide(photo)) {
+            return false;
+        }
+        prefetchAroundCurrentSlide(photo, false);
+        final long posted = System.nanoTime();
+        replaceImageHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!isHiddenSlide(photo)) {
+                    // a slide that was still on its way to the screen pushed it off
+                    NAVIGATION_EXECUTOR.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                displaySlide(photo, start, backward);
+                            } catch (CancellationException e) {
+                                LOGGER.d("Stopped loading %s", photo.getTitle());
+                            }
+                        }
+                    });
+                    return;
+                }
+                try {
+                    SlideTimings.record(SlideTimings.UI_POST, posted);
+                    imageSwitcher = (ImageSwitcher) mainActivity.findViewById(R.id.imageSwitcher);
+                    timeTransition(start, backward);
+                    imageSwitcher.showNext();
+                    if (timedAnimation == null) {
+                        transitionStarted();
+                    }
+                    synchronized (onScreenPhotoIds) {
+                        onScreenPhotoIds.add(onScreenPhotoIds.remove());
+                        onScreenBitmaps.add(onScreenBitmaps.remove());
+                    }
+                    updateOverlays(photo);
+                } catch (Exception e) {
+                    LOGGER.e("Unable to bring back " + photo.getTitle(), e);
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * @return true if the photo is in the ImageSwitcher, behind the slide that is showing.
+     */
+    private boolean isHiddenSlide(CatalogPhoto photo) {
+        synchronized (onScreenPhotoIds) {
+            return onScreenPhotoIds.size() == SLIDES_ON_SCREEN && photo.getId().equals(onScreenPhotoIds.peekFirst());
+        }
+    }
+
+    /**
+     * Show the details of the photo now on the screen, and the timings (UI thread only).
+     */
+    private void updateOverlays(CatalogPhoto photo) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mainActivity.getApplicationContext());
+        final TextView textViewPhotoInfo = (TextView) mainActivity.findViewById(R.id.image_display_details_text);
+        if (prefs.getBoolean(PreferenceConstants.SHOW_PHOTO_DESCRIPTION, false)) {
+            textViewPhotoInfo.setText(getPhotoDescription(photo));
+        } else {
+            textViewPhotoInfo.setText("");
+        }
+        updatePerfOverlay(prefs.getBoolean(PreferenceConstants.SHOW_PERF_OVERLAY, false));
+    }
+
+    /**
+     * Get ready to time the transition of the slide about to be set (UI thread only).
+     *
+     * @param start
+     *          The {@link System#nanoTime()} when the slide was asked for.
+     * @param backward
+     *          true if the user went back to the slide.
+     */
+    private void timeTransition(long start, boolean backward) {
+        slideStartNanos = start;
+        slideBackward = backward;
+        transitionStartNanos = System.nanoTime();
+        Animation inAnimation = imageSwitcher.getInAnimation();
+        if (inAnimation != timedAnimation) {
+            // the animation changes when the preference does
+            timedAnimation = inAnimation;
+            if (inAnimation != null) {
+                inAnimation.setAnimationListener(transitionListener);
+            }
+        }
+    }
+
+    /**
+     * The slide has started to come onto the screen.
+     */
+    private void transitionStarted() {
+        if (transitionStartNanos == 0) {
+            return;
+        }
+        SlideTimings.record(SlideTimings.TRANSITION, transitionStartNanos);
+        SlideTimings.record(SlideTimings.TOTAL, slideStartNanos);
+        if (slideBackward) {
+            SlideTimings.record(SlideTimings.BACK, slideStartNanos);
+        }
+        transitionStartNanos = 0;
+    }
+
+    /**
+     * Show (or hide) the slide timings on top of the slideshow.
+     */
+    private void updatePerfOverlay(boolean show) {
+        TextView overlay = (TextView) mainActivity.findViewById(R.id.perf_overlay_text);
+        if (show) {
+            SlideTimings.describe(perfOverlayText);
+            HTTP_CLIENT.describe(perfOverlayText);
+            cacheWarmer.describe(perfOverlayText);
+            overlay.setText(perfOverlayText);
+            overlay.setVisibility(View.VISIBLE);
+        } else if (overlay.getVisibility() != View.GONE) {
+            overlay.setVisibility(View.GONE);
+        }
+    }
+
+    /**
+     * Keep track of which bitmaps are on the screen.  Once a slide has gone off the screen
+     * its bitmap goes to the memory cache (and from there eventually back to the pool).
+     *
+     * @param photo
+     *          The photo that was just put on the screen.
+     * @param bitmap
+     *          Its image.
+     */
+    private void slideShown(CatalogPhoto photo, Bitmap bitmap) {
+        synchronized (onScreenPhotoIds) {
+            onScreenPhotoIds.add(photo.getId());
+            onScreenBitmaps.add(bitmap);
+            while (onScreenPhotoIds.size() > SLIDES_ON_SCREEN) {
+                slideMemoryCache.put(onScreenPhotoIds.remove(), onScreenBitmaps.remove());
+            }
         }
     }
 
     /**
      * Turn the photo's details into a description to show on top of the image.
-     * @param photoEntry
+     * @param photo
      *          The photo being displayed
      * @return
      *          The date/time the photo was taken and the title of the file.
      */
-    private String getPhotoDescription(PhotoEntry photoEntry) {
+    private String getPhotoDescription(CatalogPhoto photo) {
 
-        String dateTime = null;
-        try {
-            dateTime = DATE_TIME_FORMATTER.format(photoEntry.getTimestamp());
-        } catch (ServiceException e) {
-            LOGGER.w("Problem getting photo timestamp", e);
-        }
+        String dateTime = DATE_TIME_FORMATTER.format(new Date(photo.getTimestamp()));
 
         return dateTime + "\n"
-                + photoEntry.getTitle().getPlainText();
+                + photo.getTitle();
     }
 }
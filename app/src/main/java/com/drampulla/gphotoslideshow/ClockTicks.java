@@ -0,0 +1,94 @@
+package com.drampulla.gphotoslideshow;
+
+import java.util.TimeZone;
+
+/**
+ * Works out when the text of a clock shown with a SimpleDateFormat pattern can change, so the
+ * clock only has to wake up then instead of every second.  A pattern showing "HH:mm" only
+ * changes on the minute, "yyyy-MM-dd" only at midnight.
+ */
+public class ClockTicks {
+
+    public static final long SECOND = 1000;
+    public static final long MINUTE = 60 * SECOND;
+    public static final long HOUR = 60 * MINUTE;
+    public static final long DAY = 24 * HOUR;
+
+    /**
+     * Never tick faster than this, even if the pattern shows milliseconds.
+     */
+    static final long MIN_TICK = 100;
+
+    private ClockTicks() {
+    }
+
+    /**
+     * @param pattern
+     *          A SimpleDateFormat pattern.
+     * @return
+     *          The smallest unit of time the pattern shows, in milliseconds.  Anything that
+     *          only changes once a day or less (dates, days of the week, time zones) counts as
+     *          a day.
+     */
+    public static long smallestUnit(String pattern) {
+        long rc = DAY;
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+                continue;
+            }
+            if (quoted) {
+                continue;
+            }
+            switch (c) {
+                case 'S':
+                    rc = Math.min(rc, MIN_TICK);
+                    break;
+                case 's':
+                    rc = Math.min(rc, SECOND);
+                    break;
+                case 'm':
+                    rc = Math.min(rc, MINUTE);
+                    break;
+                case 'H':
+                case 'h':
+                case 'K':
+                case 'k':
+                case 'a':
+                    rc = Math.min(rc, HOUR);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return rc;
+    }
+
+    /**
+     * @param now
+     *          The current time in milliseconds since the epoch.
+     * @param unit
+     *          From {@link #smallestUnit}.
+     * @param zone
+     *          The time zone the clock is shown in, so hours and days line up with the local
+     *          clock even in zones that are a half hour off.
+     * @return
+     *          The next time after now that is a whole number of units in local time.
+     */
+    public static long nextTick(long now, long unit, TimeZone zone) {
+        long offset = zone.getOffset(now);
+        long local = now + offset;
+        long next = (local / unit + 1) * unit - offset;
+        if (unit >= HOUR) {
+            // a daylight saving change in between moves local time, line up with the new offset
+            long nextOffset = zone.getOffset(next);
+            if (nextOffset != offset) {
+                long adjusted = next + offset - nextOffset;
+                next = adjusted > now ? adjusted : next;
+            }
+        }
+        return next;
+    }
+}
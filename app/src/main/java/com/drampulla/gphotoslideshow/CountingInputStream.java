@@ -0,0 +1,62 @@
+package com.drampulla.gphotoslideshow;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the bytes read through it, e.g. to find out how much of a feed came over the network.
+ */
+public class CountingInputStream extends FilterInputStream {
+
+    /**
+     * Where the bytes are added up, this can be shared by several streams.
+     */
+    private final AtomicLong counter;
+
+    /**
+     *
+     * @param in
+     *          The stream to read from.
+     * @param counter
+     *          Has the number of bytes read added to it.
+     */
+    public CountingInputStream(InputStream in, AtomicLong counter) {
+        super(in);
+        this.counter = counter;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int rc = super.read();
+        if (rc >= 0) {
+            counter.incrementAndGet();
+        }
+        return rc;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int rc = super.read(b, off, len);
+        if (rc > 0) {
+            counter.addAndGet(rc);
+        }
+        return rc;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long rc = super.skip(n);
+        if (rc > 0) {
+            counter.addAndGet(rc);
+        }
+        return rc;
+    }
+
+    @Override
+    public boolean markSupported() {
+        // re-reading would count the same bytes twice
+        return false;
+    }
+}
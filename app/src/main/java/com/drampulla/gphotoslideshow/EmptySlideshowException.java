@@ -0,0 +1,14 @@
+package com.drampulla.gphotoslideshow;
+
+/**
+ * Thrown when there are no photos to show, usually because the include/exclude album
+ * expressions don't match any albums.
+ */
+public class EmptySlideshowException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public EmptySlideshowException(String message) {
+        super(message);
+    }
+}
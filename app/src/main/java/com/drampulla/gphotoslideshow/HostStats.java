@@ -0,0 +1,91 @@
+package com.drampulla.gphotoslideshow;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How the requests to one host have been going: how long they take, how many failed and
+ * had to be retried, and how much came back.
+ */
+public class HostStats {
+
+    private final String host;
+    /**
+     * Time for each request that succeeded, from connecting until the last byte was read.
+     */
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    public HostStats(String host) {
+        this.host = host;
+    }
+
+    /**
+     * A request finished.
+     *
+     * @param micros
+     *          How long it took.
+     * @param size
+     *          How many bytes came back.
+     */
+    public void succeeded(long micros, long size) {
+        requests.incrementAndGet();
+        latency.record(micros);
+        bytes.addAndGet(size);
+    }
+
+    /**
+     * A request gave up.
+     */
+    public void failed() {
+        requests.incrementAndGet();
+        failures.incrementAndGet();
+    }
+
+    /**
+     * An attempt failed and is going to be tried again.
+     */
+    public void retried() {
+        retries.incrementAndGet();
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Write a one line summary, e.g. "lh3.googleusercontent.com 120/480/900ms n=52 err=1 retry=3 4096KB".
+     */
+    public void describe(StringBuilder out) {
+        out.append(host).append(' ')
+                .append(latency.getPercentile(50) / 1000).append('/')
+                .append(latency.getPercentile(95) / 1000).append('/')
+                .append(latency.getPercentile(99) / 1000).append("ms n=")
+                .append(getRequests()).append(" err=")
+                .append(getFailures()).append(" retry=")
+                .append(getRetries()).append(' ')
+                .append(getBytes() / 1024).append("KB");
+    }
+}
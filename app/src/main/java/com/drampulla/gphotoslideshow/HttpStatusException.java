@@ -0,0 +1,30 @@
+package com.drampulla.gphotoslideshow;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Thrown when the server answers a request with something other than 2xx.
+ */
+public class HttpStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    public HttpStatusException(int status, URL url) {
+        super("HTTP " + status + " from " + url.getHost());
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return true if the server is busy or broken and trying again later might work.
+     */
+    public boolean isRetryable() {
+        return status / 100 == 5 || status == 429 || status == 408;
+    }
+}
@@ -0,0 +1,275 @@
+package com.drampulla.gphotoslideshow;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Least recently used cache of downloaded image bytes on the device's storage.  Every entry is
+ * stored in a file named after the SHA-1 of its key, with a small header holding the length
+ * and a checksum so a damaged file is detected and thrown away instead of being displayed.
+ * Files are written to a temporary name and renamed into place, so a crash can never leave a
+ * half written entry behind.
+ */
+public class ImageDiskCache {
+
+    /**
+     * Marker at the start of every cache file.
+     */
+    private static final int MAGIC = 0x47504943;
+    /**
+     * Size of the header in front of the image bytes (magic, length, crc).
+     */
+    private static final int HEADER_SIZE = 4 + 4 + 8;
+    /**
+     * Suffix of files that are still being written.
+     */
+    private static final String TMP_SUFFIX = ".tmp";
+
+    /**
+     * Where the cache files live.
+     */
+    private final File directory;
+
+    /**
+     * File name to file size, in least recently used order.
+     */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The most bytes the cache is allowed to use.
+     */
+    private long maxBytes;
+    /**
+     * The bytes the cache is currently using.
+     */
+    private long totalBytes;
+
+    /**
+     * Statistics for how well the cache is doing.
+     */
+    private long hits;
+    private long misses;
+    private long bytesSaved;
+
+    /**
+     *
+     * @param directory
+     *          Where the cache files live, created if it doesn't exist.
+     * @param maxBytes
+     *          The most bytes the cache is allowed to use.
+     */
+    public ImageDiskCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalStateException("Unable to create cache directory " + directory);
+        }
+
+        File[] files = directory.listFiles();
+        if (files == null) {
+            files = new File[0];
+        }
+        // oldest first so the LRU order survives a restart
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (file.getName().endsWith(TMP_SUFFIX)) {
+                // left over from a write that never finished
+                file.delete();
+            } else {
+                entries.put(file.getName(), file.length());
+                totalBytes += file.length();
+            }
+        }
+        trimToSize();
+    }
+
+    /**
+     * Change the size of the cache, removing old entries if it is now too big.
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trimToSize();
+    }
+
+    /**
+     *
+     * @param key
+     *          Identifies the image (usually the URL it was downloaded from).
+     * @return
+     *          true if the image is in the cache.
+     */
+    public synchronized boolean contains(String key) {
+        return entries.containsKey(fileName(key));
+    }
+
+    /**
+     *
+     * @param key
+     *          Identifies the image (usually the URL it was downloaded from).
+     * @return
+     *          The image bytes or null if they aren't cached (or the cached copy was damaged).
+     */
+    public byte[] get(String key) {
+        String name = fileName(key);
+        synchronized (this) {
+            if (entries.get(name) == null) {
+                misses++;
+                return null;
+            }
+        }
+
+        File file = new File(directory, name);
+        byte[] rc = null;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            int length = in.readInt() == MAGIC ? in.readInt() : -1;
+            long crc = in.readLong();
+            if (length >= 0 && length == file.length() - HEADER_SIZE) {
+                byte[] data = new byte[length];
+                in.readFully(data);
+                if (checksum(data) == crc) {
+                    rc = data;
+                }
+            }
+        } catch (IOException e) {
+            // handled below the same as a damaged file
+        }
+
+        synchronized (this) {
+            if (rc == null) {
+                misses++;
+                removeEntry(name);
+                return null;
+            }
+            hits++;
+            bytesSaved += rc.length;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return rc;
+    }
+
+    /**
+     * Add an image to the cache, pushing out the least recently used images if needed.
+     *
+     * @param key
+     *          Identifies the image (usually the URL it was downloaded from).
+     * @param data
+     *          The image bytes.
+     * @throws IOException
+     *          If the image can't be written.
+     */
+    public void put(String key, byte[] data) throws IOException {
+        String name = fileName(key);
+        File file = new File(directory, name);
+        File tmp = new File(directory, name + "." + Thread.currentThread().getId() + TMP_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp))) {
+            out.writeInt(MAGIC);
+            out.writeInt(data.length);
+            out.writeLong(checksum(data));
+            out.write(data);
+        }
+
+        synchronized (this) {
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                throw new IOException("Unable to add " + file + " to the cache");
+            }
+            Long previous = entries.put(name, file.length());
+            totalBytes += file.length() - (previous == null ? 0 : previous);
+            trimToSize();
+        }
+    }
+
+    /**
+     * Throw away an entry, for example because the image couldn't be decoded.
+     *
+     * @param key
+     *          Identifies the image.
+     */
+    public synchronized void remove(String key) {
+        removeEntry(fileName(key));
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of bytes that didn't have to be downloaded because they were cached.
+     */
+    public synchronized long getBytesSaved() {
+        return bytesSaved;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Remove the least recently used entries until the cache fits in maxBytes.
+     */
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> entry = it.next();
+            new File(directory, entry.getKey()).delete();
+            totalBytes -= entry.getValue();
+            it.remove();
+        }
+    }
+
+    private void removeEntry(String name) {
+        Long size = entries.remove(name);
+        if (size != null) {
+            totalBytes -= size;
+        }
+        new File(directory, name).delete();
+    }
+
+    private static long checksum(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return crc.getValue();
+    }
+
+    /**
+     * @return the key hashed into something that is safe to use as a file name.
+     */
+    private static String fileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            throw new IllegalStateException("SHA-1/UTF-8 are always available", e);
+        }
+    }
+}
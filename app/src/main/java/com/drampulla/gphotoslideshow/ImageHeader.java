@@ -0,0 +1,276 @@
+package com.drampulla.gphotoslideshow;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Calendar;
+
+/**
+ * The size of an image and when it was taken, read from the start of the file without
+ * decoding the image.  For a JPEG the dimensions come from the SOF segment and the date from
+ * the EXIF DateTimeOriginal (or DateTime) tag, for a PNG the dimensions come from the IHDR
+ * chunk.  Only the first part of the file is ever read.
+ */
+public class ImageHeader {
+
+    /**
+     * Never read further than this looking for the headers.
+     */
+    private static final int MAX_HEADER_BYTES = 256 * 1024;
+
+    private static final int EXIF_DATE_TIME = 0x0132;
+    private static final int EXIF_ORIENTATION = 0x0112;
+    private static final int EXIF_IFD_POINTER = 0x8769;
+    private static final int EXIF_DATE_TIME_ORIGINAL = 0x9003;
+
+    private final int width;
+    private final int height;
+    /**
+     * When the photo was taken in milliseconds since the epoch, -1 if the file doesn't say.
+     */
+    private final long timestamp;
+
+    public ImageHeader(int width, int height, long timestamp) {
+        this.width = width;
+        this.height = height;
+        this.timestamp = timestamp;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @param file
+     *          The image file.
+     * @return
+     *          The header, or null if the file isn't a JPEG or PNG.
+     * @throws IOException
+     *          If the file can't be read.
+     */
+    public static ImageHeader read(File file) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), 8 * 1024)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * @param in
+     *          The start of the image.
+     * @return
+     *          The header, or null if the image isn't a JPEG or PNG.
+     * @throws IOException
+     *          If the stream can't be read.
+     */
+    public static ImageHeader read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        int first = data.readUnsignedShort();
+        try {
+            if (first == 0xFFD8) {
+                return readJpeg(data);
+            } else if (first == 0x8950) {
+                return readPng(data);
+            }
+        } catch (EOFException e) {
+            // truncated headers, treat it the same as something we don't understand
+        }
+        return null;
+    }
+
+    private static ImageHeader readPng(DataInputStream in) throws IOException {
+        // rest of the signature, then the IHDR chunk always comes first
+        in.skipBytes(6);
+        in.readInt();
+        if (in.readInt() != 0x49484452) {
+            return null;
+        }
+        return new ImageHeader(in.readInt(), in.readInt(), -1);
+    }
+
+    private static ImageHeader readJpeg(DataInputStream in) throws IOException {
+        long timestamp = -1;
+        boolean swap = false;
+        int read = 2;
+        while (read < MAX_HEADER_BYTES) {
+            int marker = in.readUnsignedByte();
+            if (marker != 0xFF) {
+                return null;
+            }
+            while (marker == 0xFF) {
+                // any number of fill bytes may come before the marker
+                marker = in.readUnsignedByte();
+                read++;
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                // end of image or start of the image data, there aren't any more headers
+                return null;
+            }
+            int length = in.readUnsignedShort() - 2;
+            read += 3 + length;
+            if (length < 0) {
+                return null;
+            }
+            if (marker == 0xE1 && timestamp < 0) {
+                byte[] segment = new byte[length];
+                in.readFully(segment);
+                long[] exif = readExif(segment);
+                if (exif != null) {
+                    timestamp = exif[0];
+                    swap = exif[1] >= 5;
+                }
+            } else if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+                // start of frame, the EXIF segment always comes before this
+                in.readUnsignedByte();
+                int height = in.readUnsignedShort();
+                int width = in.readUnsignedShort();
+                // orientations 5-8 are rotated by 90 degrees
+                return swap ? new ImageHeader(height, width, timestamp) : new ImageHeader(width, height, timestamp);
+            } else {
+                skipFully(in, length);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the date the photo was taken (-1 if not found) and the orientation, or null if
+     *          the segment isn't EXIF.
+     */
+    private static long[] readExif(byte[] segment) {
+        if (segment.length < 14 || segment[0] != 'E' || segment[1] != 'x' || segment[2] != 'i' || segment[3] != 'f') {
+            return null;
+        }
+        Tiff tiff = new Tiff(segment, 6);
+        if (!tiff.valid) {
+            return null;
+        }
+        long[] rc = {-1, 1};
+        String dateTime = null;
+        int ifd0 = tiff.int32(4);
+        int exifIfd = -1;
+        int entries = tiff.int16(ifd0);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd0 + 2 + i * 12;
+            int tag = tiff.int16(entry);
+            if (tag == EXIF_DATE_TIME) {
+                dateTime = tiff.ascii(entry);
+            } else if (tag == EXIF_ORIENTATION) {
+                rc[1] = tiff.int16(entry + 8);
+            } else if (tag == EXIF_IFD_POINTER) {
+                exifIfd = tiff.int32(entry + 8);
+            }
+        }
+        if (exifIfd > 0) {
+            entries = tiff.int16(exifIfd);
+            for (int i = 0; i < entries; i++) {
+                int entry = exifIfd + 2 + i * 12;
+                if (tiff.int16(entry) == EXIF_DATE_TIME_ORIGINAL) {
+                    dateTime = tiff.ascii(entry);
+                }
+            }
+        }
+        rc[0] = parseExifDate(dateTime);
+        return rc;
+    }
+
+    /**
+     * @param value
+     *          An EXIF date ("yyyy:MM:dd HH:mm:ss", in the camera's local time).
+     * @return
+     *          The time in milliseconds since the epoch, or -1 if it isn't a valid date.
+     */
+    static long parseExifDate(String value) {
+        if (value == null || value.length() < 19) {
+            return -1;
+        }
+        int[] fields = new int[6];
+        for (int f = 0; f < 6; f++) {
+            int start = f == 0 ? 0 : 2 + f * 3;
+            int length = f == 0 ? 4 : 2;
+            for (int i = start; i < start + length; i++) {
+                char c = value.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                fields[f] = fields[f] * 10 + c - '0';
+            }
+        }
+        if (fields[0] == 0 || fields[1] < 1 || fields[1] > 12 || fields[2] < 1) {
+            // cameras write all zeros when the clock was never set
+            return -1;
+        }
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(fields[0], fields[1] - 1, fields[2], fields[3], fields[4], fields[5]);
+        return calendar.getTimeInMillis();
+    }
+
+    private static void skipFully(DataInputStream in, int length) throws IOException {
+        while (length > 0) {
+            int skipped = in.skipBytes(length);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            length -= skipped;
+        }
+    }
+
+    /**
+     * Reads values out of the TIFF structure that holds the EXIF tags.  Anything that points
+     * outside of the segment reads as 0 rather than failing.
+     */
+    private static class Tiff {
+        private final byte[] data;
+        private final int base;
+        private final boolean littleEndian;
+        private final boolean valid;
+
+        Tiff(byte[] data, int base) {
+            this.data = data;
+            this.base = base;
+            this.littleEndian = data[base] == 'I' && data[base + 1] == 'I';
+            this.valid = littleEndian || (data[base] == 'M' && data[base + 1] == 'M');
+        }
+
+        int byteAt(int offset) {
+            int i = base + offset;
+            return offset < 0 || i >= data.length ? 0 : data[i] & 0xFF;
+        }
+
+        int int16(int offset) {
+            return littleEndian ? byteAt(offset) | byteAt(offset + 1) << 8 : byteAt(offset) << 8 | byteAt(offset + 1);
+        }
+
+        int int32(int offset) {
+            return littleEndian ? int16(offset) | int16(offset + 2) << 16 : int16(offset) << 16 | int16(offset + 2);
+        }
+
+        /**
+         * @return the ASCII value of the IFD entry at the offset.
+         */
+        String ascii(int entry) {
+            int count = int32(entry + 4);
+            if (count <= 0 || count > 64) {
+                return null;
+            }
+            int offset = count <= 4 ? entry + 8 : int32(entry + 8);
+            StringBuilder rc = new StringBuilder(count);
+            for (int i = 0; i < count - 1; i++) {
+                rc.append((char) byteAt(offset + i));
+            }
+            return rc.toString();
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.drampulla.gphotoslideshow;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Downloads images.  Every request has connect and read timeouts so a stalled connection
+ * can't hold up the slideshow, failures that might go away (timeouts, dropped connections,
+ * 5xx and 429 responses) are tried again after a randomized, growing wait, and all downloads
+ * together are kept under a bandwidth limit so prefetching doesn't use up the whole
+ * connection of the house.
+ *
+ * Connections are kept alive and reused by {@link HttpURLConnection}'s own pool (the platform
+ * default) as long as each response is read to the end and closed, which is always done here
+ * (even for errors).  At most {@link #MAX_CONNECTIONS} requests are open at once.
+ *
+ * The latency and errors of each host are kept in a {@link HostStats}.
+ */
+public class ImageHttpClient {
+
+    /**
+     * Default logger.
+     */
+    private static final Logger LOGGER = new Logger(ImageHttpClient.class);
+
+    /**
+     * How long to wait for a connection and then for each read.
+     */
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+    private static final int READ_TIMEOUT_MILLIS = 20000;
+
+    /**
+     * How many requests can be open at once, the rest wait their turn.
+     */
+    private static final int MAX_CONNECTIONS = 4;
+
+    /**
+     * How many times a request is tried before giving up.
+     */
+    private static final int MAX_ATTEMPTS = 4;
+    /**
+     * The wait before the first retry, doubling each time up to the max.
+     */
+    private static final long BASE_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 8000;
+
+    /**
+     * Log a summary for a host every this many requests.
+     */
+    private static final int LOG_STATS_EVERY = 100;
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final TokenBucket bandwidth = new TokenBucket(0);
+    private final ConcurrentMap<String, HostStats> hostStats = new ConcurrentHashMap<>();
+    private final Random random = new Random();
+    /**
+     * The connection each thread is downloading on, so {@link #abort(Thread)} can close it.
+     */
+    private final ConcurrentMap<Thread, HttpURLConnection> activeConnections = new ConcurrentHashMap<>();
+    private final Semaphore connections = new Semaphore(MAX_CONNECTIONS, true);
+
+    /**
+     * Change the bandwidth limit, this applies to downloads that are already going too.
+     *
+     * @param bytesPerSecond
+     *          The most bytes per second for all downloads together, 0 for no limit.
+     */
+    public void setBandwidthLimit(long bytesPerSecond) {
+        if (bandwidth.getRate() != bytesPerSecond) {
+            LOGGER.d("Image bandwidth limit %d bytes/s", bytesPerSecond);
+            bandwidth.setRate(bytesPerSecond);
+        }
+    }
+
+    /**
+     * Download the raw bytes at a URL, retrying if it fails in a way that might go away.
+     *
+     * @param url
+     *          What to download.
+     * @return
+     *          The bytes of the response.
+     * @throws IOException
+     *          If it couldn't be downloaded after all the attempts, or the server said it
+     *          isn't there (4xx).
+     * @throws InterruptedIOException
+     *          If the thread was interrupted (e.g. the prefetch was cancelled), this is
+     *          never retried.
+     */
+    public byte[] get(String url) throws IOException {
+        URL target = new URL(url);
+        HostStats stats = getHostStats(target.getHost());
+        for (int attempt = 0; ; attempt++) {
+            long start = System.nanoTime();
+            try {
+                byte[] rc = attempt(target);
+                stats.succeeded((System.nanoTime() - start) / 1000, rc.length);
+                if (stats.getRequests() % LOG_STATS_EVERY == 0) {
+                    logStats(stats);
+                }
+                return rc;
+            } catch (InterruptedIOException e) {
+                if (Thread.currentThread().isInterrupted() || attempt + 1 >= MAX_ATTEMPTS) {
+                    stats.failed();
+                    throw e;
+                }
+                // otherwise it was a timeout, which is worth another try
+                retryAfter(stats, attempt, e);
+            } catch (IOException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    // the connection was closed under us by abort()
+                    stats.failed();
+                    throw new InterruptedIOException("Download cancelled");
+                }
+                if (e instanceof HttpStatusException && !((HttpStatusException) e).isRetryable()
+                        || attempt + 1 >= MAX_ATTEMPTS) {
+                    stats.failed();
+                    logStats(stats);
+                    throw e;
+                }
+                retryAfter(stats, attempt, e);
+            }
+        }
+    }
+
+    /**
+     * Stop the download a thread is doing.  A thread blocked reading a socket doesn't notice
+     * being interrupted, so this closes its connection, which makes the read fail.  The thread
+     * should be interrupted first so {@link #get(String)} knows not to try again.
+     *
+     * @param thread
+     *          The thread doing the download, nothing happens if it isn't downloading.
+     */
+    public void abort(Thread thread) {
+        HttpURLConnection connection = activeConnections.get(thread);
+        if (connection != null) {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Wait before trying a request again.
+     */
+    private void retryAfter(HostStats stats, int attempt, IOException e) throws InterruptedIOException {
+        stats.retried();
+        long wait = backoffMillis(attempt, random);
+        if (Logger.isLoggable(Logger.DEBUG)) {
+            LOGGER.d(String.format("Attempt %d to %s failed (%s), trying again in %dms.", attempt + 1,
+                    stats.getHost(), e.getMessage(), wait));
+        }
+        try {
+            Thread.sleep(wait);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            stats.failed();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+
+    /**
+     * "Equal jitter" backoff: half of the exponential wait is fixed and the other half is
+     * random, so retries always back off but clients that failed together don't all come
+     * back at the same moment.
+     *
+     * @param attempt
+     *          The attempt that just failed, starting at 0.
+     * @return
+     *          How long to wait before the next attempt.
+     */
+    static long backoffMillis(int attempt, Random random) {
+        long cap = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attempt, 20));
+        long half = cap / 2;
+        return half + (long) (random.nextDouble() * (cap - half));
+    }
+
+    /**
+     * Make one request.
+     */
+    private byte[] attempt(URL url) throws IOException {
+        try {
+            connections.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a connection");
+        }
+        try {
+            return request(url);
+        } finally {
+            connections.release();
+        }
+    }
+
+    private byte[] request(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        boolean reusable = false;
+        activeConnections.put(Thread.currentThread(), connection);
+        try {
+            int status = connection.getResponseCode();
+            if (status / 100 != 2) {
+                // read what there is of the error so the connection can go back to the pool
+                InputStream error = connection.getErrorStream();
+                if (error != null) {
+                    try {
+                        readFully(error, 0);
+                    } finally {
+                        error.close();
+                    }
+                }
+                reusable = true;
+                throw new HttpStatusException(status, url);
+            }
+            byte[] rc;
+            try (InputStream in = connection.getInputStream()) {
+                rc = readFully(in, connection.getContentLength());
+            }
+            reusable = true;
+            return rc;
+        } finally {
+            activeConnections.remove(Thread.currentThread());
+            if (!reusable) {
+                // something went wrong part way through, don't hand this connection to anyone else
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Read everything from the stream, staying under the bandwidth limit.
+     */
+    private byte[] readFully(InputStream in, int sizeHint) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(sizeHint > 0 ? sizeHint : 256 * 1024);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            if (Thread.currentThread().isInterrupted()) {
+                // e.g. Future.cancel(true), the rest of the image isn't wanted
+                throw new InterruptedIOException("Download cancelled");
+            }
+            out.write(buffer, 0, n);
+            bandwidth.acquire(n);
+        }
+        return out.toByteArray();
+    }
+
+    private HostStats getHostStats(String host) {
+        HostStats rc = hostStats.get(host);
+        if (rc == null) {
+            HostStats created = new HostStats(host);
+            rc = hostStats.putIfAbsent(host, created);
+            if (rc == null) {
+                rc = created;
+            }
+        }
+        return rc;
+    }
+
+    private static void logStats(HostStats stats) {
+        if (Logger.isLoggable(Logger.INFO)) {
+            StringBuilder out = new StringBuilder("Image host ");
+            stats.describe(out);
+            LOGGER.i(out.toString());
+        }
+    }
+
+    /**
+     * Write one line for each host, busiest first, e.g. for the on screen overlay.
+     *
+     * @param out
+     *          Where to append them.
+     */
+    public void describe(StringBuilder out) {
+        List<HostStats> all = new ArrayList<>(hostStats.values());
+        Collections.sort(all, new Comparator<HostStats>() {
+            @Override
+            public int compare(HostStats a, HostStats b) {
+                long diff = b.getRequests() - a.getRequests();
+                return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+            }
+        });
+        for (HostStats stats : all) {
+            stats.describe(out);
+            out.append('\n');
+        }
+    }
+}
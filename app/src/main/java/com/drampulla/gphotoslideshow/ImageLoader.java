@@ -0,0 +1,233 @@
+package com.drampulla.gphotoslideshow;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+/**
+ * Downloads a photo and decodes it into a Bitmap that is ready to be put on the screen.
+ * Downloaded bytes are kept in an {@link ImageDiskCache} so each photo only has to be
+ * downloaded once, and so the slideshow keeps going when the network is down.
+ *
+ * Images are requested from the server at the size of the screen and decoded straight
+ * down to the size of the screen, so the memory used by a slide depends on the screen
+ * rather than on the camera that took the photo.
+ *
+ * Photos from a {@link LocalDirectoryPhotoSource} (file: URLs) are read straight from the
+ * file and never copied into the cache.
+ */
+public class ImageLoader {
+
+    /**
+     * Default logger.
+     */
+    private static final Logger LOGGER = new Logger(ImageLoader.class);
+
+    private final ImageDiskCache diskCache;
+    private final BitmapPool bitmapPool;
+    private final ImageHttpClient httpClient;
+
+    /**
+     * The size of the screen the images are displayed on.
+     */
+    private final int maxWidth;
+    private final int maxHeight;
+
+    /**
+     *
+     * @param diskCache
+     *          Where downloaded images are kept.
+     * @param bitmapPool
+     *          Bitmaps that can be decoded into instead of allocating new ones.
+     * @param httpClient
+     *          Downloads the images that aren't cached.
+     * @param maxWidth
+     *          Width of the screen in pixels.
+     * @param maxHeight
+     *          Height of the screen in pixels.
+     */
+    public ImageLoader(ImageDiskCache diskCache, BitmapPool bitmapPool, ImageHttpClient httpClient, int maxWidth, int maxHeight) {
+        this.diskCache = diskCache;
+        this.bitmapPool = bitmapPool;
+        this.httpClient = httpClient;
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+    }
+
+    /**
+     * Stop the download a thread is doing for {@link #load(CatalogPhoto)}, see
+     * {@link ImageHttpClient#abort(Thread)}.
+     */
+    public void abort(Thread thread) {
+        httpClient.abort(thread);
+    }
+
+    public ImageDiskCache getDiskCache() {
+        return diskCache;
+    }
+
+    /**
+     *
+     * @param photo
+     *          The photo to check.
+     * @return
+     *          true if the photo can be loaded without the network.
+     */
+    public boolean isCached(CatalogPhoto photo) {
+        return isLocal(photo.getUrl()) || diskCache.contains(sizedUrl(photo));
+    }
+
+    /**
+     * Make sure a photo is in the disk cache without decoding it, e.g. to get it ready long
+     * before it is shown.
+     *
+     * @param photo
+     *          The photo to download.
+     * @return
+     *          How many bytes were downloaded, 0 if it was already cached (or is a local file).
+     * @throws IOException
+     *          If the image can't be downloaded.
+     */
+    public int download(CatalogPhoto photo) throws IOException {
+        String url = sizedUrl(photo);
+        if (isLocal(url) || diskCache.contains(url)) {
+            return 0;
+        }
+        byte[] data = httpClient.get(url);
+        diskCache.put(url, data);
+        return data.length;
+    }
+
+    /**
+     *
+     * @param photo
+     *          The photo to load.
+     * @return
+     *          The decoded image.
+     * @throws IOException
+     *          If the image can't be downloaded or decoded.
+     */
+    public Bitmap load(CatalogPhoto photo) throws IOException {
+        long start = System.currentTimeMillis();
+        String url = sizedUrl(photo);
+        boolean local = isLocal(url);
+        long stageStart = System.nanoTime();
+        byte[] data = local ? null : diskCache.get(url);
+        boolean cached = data != null;
+        if (cached) {
+            SlideTimings.record(SlideTimings.CACHE_READ, stageStart);
+        }
+        if (!cached) {
+            stageStart = System.nanoTime();
+            if (local) {
+                data = readFile(new File(URI.create(url)));
+            } else {
+                data = httpClient.get(url);
+                diskCache.put(url, data);
+            }
+            SlideTimings.record(SlideTimings.DOWNLOAD, stageStart);
+        }
+
+        stageStart = System.nanoTime();
+        Bitmap rc = decode(data);
+        SlideTimings.record(SlideTimings.DECODE, stageStart);
+        if (rc == null && !local) {
+            // don't keep something around that we can't display
+            diskCache.remove(url);
+        }
+        if (rc == null) {
+            throw new IOException("Unable to decode image " + photo.getUrl());
+        }
+        if (Logger.isLoggable(Logger.VERBOSE)) {
+            LOGGER.v(String.format("Loaded %s (%s, %dx%d) in %dms.", photo.getTitle(), local ? "local" : cached ? "cached" : "downloaded",
+                    rc.getWidth(), rc.getHeight(), System.currentTimeMillis() - start));
+        }
+        return rc;
+    }
+
+    /**
+     * Decode an image so that it just fits on the screen.  The size of the image is read
+     * first so that it can be subsampled while decoding (which is where the memory is saved)
+     * and then scaled the rest of the way to the size of the screen.  If the pool has a bitmap
+     * big enough the image is decoded into it.
+     *
+     * @param data
+     *          The encoded image.
+     * @return
+     *          The decoded image, or null if it couldn't be decoded.
+     */
+    private Bitmap decode(byte[] data) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        int width = options.outWidth;
+        int height = options.outHeight;
+        double scale = ImageSizing.fitScale(width, height, maxWidth, maxHeight);
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = ImageSizing.calculateInSampleSize(width, height, maxWidth, maxHeight);
+        if (scale < 1) {
+            // scale what is left after subsampling the rest of the way down to the screen size
+            options.inScaled = true;
+            options.inDensity = width;
+            options.inTargetDensity = (int) Math.round(width * scale * options.inSampleSize);
+        }
+
+        options.inMutable = true;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        // leave a pixel of slack because decoders round the subsampled size differently
+        options.inBitmap = bitmapPool.get((int) Math.ceil(width * scale) + 1, (int) Math.ceil(height * scale) + 1, options.inPreferredConfig);
+        try {
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        } catch (IllegalArgumentException e) {
+            // the pooled bitmap couldn't be used after all, so give it back and decode normally
+            LOGGER.d("Unable to reuse bitmap: %s", e.getMessage());
+            bitmapPool.put(options.inBitmap);
+            options.inBitmap = null;
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
+    }
+
+    /**
+     * @return the URL of the photo at the size of the screen, this is also the key the
+     *          photo is stored under in the disk cache.
+     */
+    private String sizedUrl(CatalogPhoto photo) {
+        return ImageSizing.sizedUrl(photo.getUrl(), Math.max(maxWidth, maxHeight));
+    }
+
+    /**
+     * @return true if the URL is a file on the device.
+     */
+    private static boolean isLocal(String url) {
+        return url.startsWith("file:");
+    }
+
+    /**
+     * Read the raw bytes of an image file.
+     */
+    private static byte[] readFile(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return readFully(in, (int) Math.max(16 * 1024, file.length()));
+        }
+    }
+
+    private static byte[] readFully(InputStream in, int sizeHint) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(sizeHint);
+        byte[] buffer = new byte[16 * 1024];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,91 @@
+package com.drampulla.gphotoslideshow;
+
+import java.util.regex.Pattern;
+
+/**
+ * Helpers for working out how big an image needs to be for the screen it is displayed on,
+ * both when asking the server for the image and when decoding it.
+ */
+public class ImageSizing {
+
+    /**
+     * Google Photos image URLs can contain a sizing path segment (e.g. "s1600" or "w800-h600")
+     * just before the file name.  This matches the ones we know about.
+     */
+    private static final Pattern SIZE_SEGMENT = Pattern.compile("(s\\d+(-c)?|w\\d+-h\\d+(-[a-z]+)?|d)");
+    /**
+     * The hosts that serve Google Photos images and understand the sizing segment.
+     */
+    private static final Pattern RESIZABLE_HOST = Pattern.compile("https?://[^/]*(googleusercontent\\.com|ggpht\\.com)/.*");
+
+    private ImageSizing() {
+    }
+
+    /**
+     * Ask the server for a version of the image whose longest edge is no bigger than maxSize,
+     * the same as the Picasa "imgmax" feed parameter does.
+     *
+     * @param url
+     *          The media URL of the image.
+     * @param maxSize
+     *          The longest edge (in pixels) that is needed.
+     * @return
+     *          The URL of the resized image, or the original URL if it isn't a URL that the
+     *          server knows how to resize.
+     */
+    public static String sizedUrl(String url, int maxSize) {
+        if (maxSize <= 0 || !RESIZABLE_HOST.matcher(url).matches()) {
+            return url;
+        }
+
+        int query = url.indexOf('?');
+        String path = query < 0 ? url : url.substring(0, query);
+        String suffix = query < 0 ? "" : url.substring(query);
+
+        int fileStart = path.lastIndexOf('/');
+        String sizeSegment = "s" + maxSize;
+        int segmentStart = path.lastIndexOf('/', fileStart - 1);
+        if (segmentStart > path.indexOf("//") + 1
+                && SIZE_SEGMENT.matcher(path.substring(segmentStart + 1, fileStart)).matches()) {
+            return path.substring(0, segmentStart + 1) + sizeSegment + path.substring(fileStart) + suffix;
+        }
+        return path.substring(0, fileStart + 1) + sizeSegment + path.substring(fileStart) + suffix;
+    }
+
+    /**
+     * Work out the largest power of two that the image can be subsampled by while still
+     * being at least as big as the space it has to fill.
+     *
+     * @param width
+     *          Width of the image as it is stored.
+     * @param height
+     *          Height of the image as it is stored.
+     * @param maxWidth
+     *          Width of the space the image is displayed in.
+     * @param maxHeight
+     *          Height of the space the image is displayed in.
+     * @return
+     *          The value for BitmapFactory.Options.inSampleSize
+     */
+    public static int calculateInSampleSize(int width, int height, int maxWidth, int maxHeight) {
+        double scale = fitScale(width, height, maxWidth, maxHeight);
+        int rc = 1;
+        while (scale * rc * 2 <= 1) {
+            rc *= 2;
+        }
+        return rc;
+    }
+
+    /**
+     *
+     * @return
+     *          How much the image has to be scaled by to fit entirely inside the space it
+     *          is displayed in (never more than 1, images are not scaled up).
+     */
+    public static double fitScale(int width, int height, int maxWidth, int maxHeight) {
+        if (width <= 0 || height <= 0 || maxWidth <= 0 || maxHeight <= 0) {
+            return 1;
+        }
+        return Math.min(1, Math.min((double) maxWidth / width, (double) maxHeight / height));
+    }
+}
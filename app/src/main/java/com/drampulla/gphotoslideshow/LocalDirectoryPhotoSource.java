@@ -0,0 +1,350 @@
+package com.drampulla.gphotoslideshow;
+
+import android.Manifest;
+import android.app.Activity;
+import android.content.pm.PackageManager;
+import android.os.FileObserver;
+import android.support.v4.app.ActivityCompat;
+import android.support.v4.content.ContextCompat;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Photos from a directory on the device (or a USB stick, or a mounted network share).  Every
+ * directory under the root that has images in it is an album, named after the directory.
+ *
+ * Listing the albums only looks at the names, times and sizes of the files, so the
+ * {@link CatalogSynchronizer} only reads the images of the directories that changed since
+ * the last sync.  The size and date
+ * of each image are read from its header ({@link ImageHeader}) without decoding it.  Changes
+ * to the directories are picked up with a FileObserver while watching.
+ */
+public class LocalDirectoryPhotoSource implements PhotoSource {
+
+    /**
+     * Default logger.
+     */
+    private static final Logger LOGGER = new Logger(LocalDirectoryPhotoSource.class);
+
+    /**
+     * Files with these extensions are shown.
+     */
+    private static final String[] EXTENSIONS = {".jpg", ".jpeg", ".png", ".gif", ".webp", ".bmp"};
+
+    /**
+     * Album id of the images directly in the root directory.
+     */
+    private static final String ROOT_ALBUM_ID = ".";
+
+    /**
+     * Changes usually come in bursts (copying a folder of photos), so wait this long after the
+     * last one before telling the listener.
+     */
+    private static final long CHANGE_DELAY_SECONDS = 5;
+
+    /**
+     * Identifies the answer to our permission request in {@link #onRequestPermissionsResult}.
+     */
+    private static final int PERMISSION_REQUEST_CODE = 1;
+
+    private static final int WATCH_EVENTS = FileObserver.CREATE | FileObserver.DELETE | FileObserver.MOVED_FROM
+            | FileObserver.MOVED_TO | FileObserver.CLOSE_WRITE | FileObserver.DELETE_SELF | FileObserver.MOVE_SELF;
+
+    /**
+     * Scheduling executor.
+     */
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor();
+
+    private final File rootDirectory;
+
+    /**
+     * The directories with images in them as of the last time the albums were listed.
+     */
+    private List<File> albumDirectories = new ArrayList<>();
+
+    /**
+     * FileObservers stop when they are garbage collected, so they have to be kept here.
+     */
+    private final List<FileObserver> observers = new ArrayList<>();
+    private ChangeListener listener;
+    private ScheduledFuture<?> pendingChange;
+    /**
+     * Waiting for the user to answer the permission prompt.
+     */
+    private InitializedCallback pendingInitializedCallback;
+
+    /**
+     *
+     * @param rootDirectory
+     *          The directory the albums are in.
+     */
+    public LocalDirectoryPhotoSource(File rootDirectory) {
+        this.rootDirectory = rootDirectory;
+    }
+
+    @Override
+    public void initialize(Activity mainActivity, final InitializedCallback initializedCallback) {
+        if (ContextCompat.checkSelfPermission(mainActivity, Manifest.permission.READ_EXTERNAL_STORAGE)
+                == PackageManager.PERMISSION_GRANTED) {
+            initialized(initializedCallback);
+            return;
+        }
+        synchronized (this) {
+            pendingInitializedCallback = initializedCallback;
+        }
+        // carries on in onRequestPermissionsResult once the user answers
+        ActivityCompat.requestPermissions(mainActivity,
+                new String[]{Manifest.permission.READ_EXTERNAL_STORAGE},
+                PERMISSION_REQUEST_CODE);
+    }
+
+    @Override
+    public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults) {
+        if (requestCode != PERMISSION_REQUEST_CODE) {
+            return;
+        }
+        InitializedCallback initializedCallback;
+        synchronized (this) {
+            initializedCallback = pendingInitializedCallback;
+            pendingInitializedCallback = null;
+        }
+        if (initializedCallback == null) {
+            return;
+        }
+        if (grantResults.length == 0 || grantResults[0] != PackageManager.PERMISSION_GRANTED) {
+            // carry on anyway, listing the albums reports the directory can't be read
+            LOGGER.w("Permission to read " + rootDirectory + " was denied");
+        }
+        initialized(initializedCallback);
+    }
+
+    /**
+     * Call the callback outside of the main UI thread.
+     */
+    private void initialized(final InitializedCallback initializedCallback) {
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                initializedCallback.callback();
+            }
+        });
+    }
+
+    @Override
+    public SourceAlbumList getSourceAlbums(String knownVersion) {
+        long start = System.currentTimeMillis();
+        if (!rootDirectory.isDirectory()) {
+            throw new RuntimeException("Photo directory " + rootDirectory + " doesn't exist");
+        }
+
+        List<File> directories = new ArrayList<>();
+        List<Long> fingerprints = new ArrayList<>();
+        Deque<File> toVisit = new ArrayDeque<>();
+        toVisit.push(rootDirectory);
+        while (!toVisit.isEmpty()) {
+            File directory = toVisit.pop();
+            File[] children = directory.listFiles();
+            if (children == null) {
+                continue;
+            }
+            boolean hasImages = false;
+            long fingerprint = 0;
+            for (File child : children) {
+                if (child.getName().startsWith(".")) {
+                    continue;
+                }
+                if (child.isDirectory()) {
+                    toVisit.push(child);
+                } else if (isImage(child)) {
+                    hasImages = true;
+                    fingerprint += fingerprint(child);
+                }
+            }
+            if (hasImages) {
+                directories.add(directory);
+                fingerprints.add(fingerprint);
+            }
+        }
+
+        List<SourceAlbum> rc = new ArrayList<>(directories.size());
+        for (int i = 0; i < directories.size(); i++) {
+            // the directory's own time doesn't change when a file in it is rewritten in place,
+            // so the album's updated time is a fingerprint of its files instead (the
+            // synchronizer only compares it with the last one)
+            File directory = directories.get(i);
+            rc.add(new SourceAlbum(albumId(directory), directory.getName(), fingerprints.get(i)));
+        }
+        // keep the albums in a stable order, the file system doesn't promise one
+        Collections.sort(rc, new Comparator<SourceAlbum>() {
+            @Override
+            public int compare(SourceAlbum a, SourceAlbum b) {
+                return a.getId().compareTo(b.getId());
+            }
+        });
+
+        synchronized (this) {
+            albumDirectories = directories;
+            if (listener != null) {
+                watch();
+            }
+        }
+        LOGGER.d(String.format("Found %d albums under %s in %dms.", rc.size(), rootDirectory, System.currentTimeMillis() - start));
+        // listing the directories is cheap, so there is no version to skip it with
+        return new SourceAlbumList(rc, "");
+    }
+
+    @Override
+    public CatalogAlbum loadAlbum(SourceAlbum album, CatalogAlbum previous) {
+        long start = System.currentTimeMillis();
+        File directory = ROOT_ALBUM_ID.equals(album.getId()) ? rootDirectory : new File(rootDirectory, album.getId());
+        File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return !file.getName().startsWith(".") && isImage(file);
+            }
+        });
+        if (files == null) {
+            throw new RuntimeException("Unable to list " + directory);
+        }
+        Arrays.sort(files);
+
+        List<CatalogPhoto> photos = new ArrayList<>(files.length);
+        for (File file : files) {
+            int width = 0;
+            int height = 0;
+            long timestamp = -1;
+            try {
+                ImageHeader header = ImageHeader.read(file);
+                if (header != null) {
+                    width = header.getWidth();
+                    height = header.getHeight();
+                    timestamp = header.getTimestamp();
+                }
+            } catch (IOException e) {
+                LOGGER.w("Unable to read the header of " + file, e);
+            }
+            if (timestamp <= 0) {
+                timestamp = file.lastModified();
+            }
+            photos.add(new CatalogPhoto(album.getId(), album.getId() + "/" + file.getName(),
+                    file.toURI().toString(), file.getName(), timestamp, width, height));
+        }
+        if (Logger.isLoggable(Logger.VERBOSE)) {
+            LOGGER.v(String.format("Read %d image headers in %s in %dms.", photos.size(), directory, System.currentTimeMillis() - start));
+        }
+        return new CatalogAlbum(album.getId(), album.getTitle(), album.getUpdated(), photos);
+    }
+
+    @Override
+    public synchronized void startWatching(ChangeListener listener) {
+        this.listener = listener;
+        watch();
+    }
+
+    @Override
+    public synchronized void stopWatching() {
+        listener = null;
+        for (FileObserver observer : observers) {
+            observer.stopWatching();
+        }
+        observers.clear();
+    }
+
+    @Override
+    public long getTransferredBytes() {
+        return 0;
+    }
+
+    /**
+     * Watch the root and every album directory (FileObserver doesn't watch subdirectories).
+     */
+    private synchronized void watch() {
+        for (FileObserver observer : observers) {
+            observer.stopWatching();
+        }
+        observers.clear();
+
+        List<File> directories = new ArrayList<>(albumDirectories);
+        if (!directories.contains(rootDirectory)) {
+            directories.add(rootDirectory);
+        }
+        for (File directory : directories) {
+            FileObserver observer = new FileObserver(directory.getPath(), WATCH_EVENTS) {
+                @Override
+                public void onEvent(int event, String path) {
+                    changed();
+                }
+            };
+            observer.startWatching();
+            observers.add(observer);
+        }
+    }
+
+    /**
+     * Something changed, let the listener know once things settle down.
+     */
+    private synchronized void changed() {
+        if (pendingChange != null) {
+            pendingChange.cancel(false);
+        }
+        pendingChange = EXECUTOR.schedule(new Runnable() {
+            @Override
+            public void run() {
+                ChangeListener toNotify;
+                synchronized (LocalDirectoryPhotoSource.this) {
+                    toNotify = listener;
+                }
+                if (toNotify != null) {
+                    LOGGER.d("Photos changed under %s", rootDirectory);
+                    toNotify.sourceChanged();
+                }
+            }
+        }, CHANGE_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return the id of the album for a directory, its path relative to the root.
+     */
+    private String albumId(File directory) {
+        String root = rootDirectory.getPath();
+        String path = directory.getPath();
+        return path.length() > root.length() ? path.substring(root.length() + 1) : ROOT_ALBUM_ID;
+    }
+
+    /**
+     * @return a hash of the name, time and size of an image, added up over the images of a
+     *         directory so the order they are listed in doesn't matter.
+     */
+    private static long fingerprint(File file) {
+        long rc = file.getName().hashCode();
+        rc = rc * 31 + file.lastModified();
+        rc = rc * 31 + file.length();
+        // spread the bits so that sums of similar files don't cancel out
+        rc *= 0x9E3779B97F4A7C15L;
+        return rc ^ (rc >>> 29);
+    }
+
+    private static boolean isImage(File file) {
+        String name = file.getName().toLowerCase(Locale.US);
+        for (String extension : EXTENSIONS) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
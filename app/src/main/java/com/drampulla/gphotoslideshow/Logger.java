@@ -2,33 +2,264 @@ package com.drampulla.gphotoslideshow;
 
 import android.util.Log;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Creating a simplified logger that actually logs the class name with the message
  * like most normal loggers do.
+ *
+ * Messages below the level set with {@link #setLevel} are dropped before anything is built,
+ * so on the slide path use the overloads that take a format and arguments, e.g.
+ * <code>LOGGER.d("Next index=%d", listIndex)</code>; the message is only formatted when it
+ * will be logged.  With more arguments than the overloads take, check {@link #isLoggable}
+ * first.
+ *
+ * The last {@link #RECENT_SIZE} messages that were logged are kept in memory and are written
+ * to the file set with {@link #setRecentDumpFile} whenever an error is logged, so there is
+ * some context around the error after logcat has moved on.
  */
 
 public class Logger {
+
+    public static final int VERBOSE = Log.VERBOSE;
+    public static final int DEBUG = Log.DEBUG;
+    public static final int INFO = Log.INFO;
+    public static final int WARN = Log.WARN;
+    public static final int ERROR = Log.ERROR;
+    public static final int ASSERT = Log.ASSERT;
+
+    /**
+     * How many of the most recent messages are kept.
+     */
+    private static final int RECENT_SIZE = 256;
+
+    /**
+     * Don't write the recent messages more often than this, an error tends to repeat.
+     */
+    private static final long DUMP_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final String LEVEL_LETTERS = "??VDIWEA";
+
+    /**
+     * Messages below this level aren't logged.
+     */
+    private static volatile int level = INFO;
+
+    /**
+     * The recent messages, a ring of preallocated slots so keeping them doesn't allocate.
+     */
+    private static final long[] recentTimes = new long[RECENT_SIZE];
+    private static final int[] recentLevels = new int[RECENT_SIZE];
+    private static final String[] recentTags = new String[RECENT_SIZE];
+    private static final String[] recentMessages = new String[RECENT_SIZE];
+    private static final Throwable[] recentThrowables = new Throwable[RECENT_SIZE];
+    private static long recentCount;
+
+    private static File recentDumpFile;
+    private static long lastDumpTime;
+
+    /**
+     * Writing the recent messages executor.
+     */
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+
     private String tag;
 
     public Logger(Class<?> cls) {
         tag = cls.getCanonicalName();
     }
 
-    public void d(String msg) { Log.d(tag, msg); }
-    public void d(String msg, Throwable t) { Log.d(tag, msg, t); }
+    /**
+     * @param newLevel
+     *          The lowest level that is logged, one of the level constants.
+     */
+    public static void setLevel(int newLevel) {
+        level = newLevel;
+    }
+
+    public static int getLevel() {
+        return level;
+    }
+
+    /**
+     * @param newLevel
+     *          A level's name (verbose, debug, info, warn, error) or number.
+     */
+    public static void setLevel(String newLevel) {
+        switch (newLevel.toLowerCase(Locale.US)) {
+            case "verbose":
+                setLevel(VERBOSE);
+                break;
+            case "debug":
+                setLevel(DEBUG);
+                break;
+            case "info":
+                setLevel(INFO);
+                break;
+            case "warn":
+                setLevel(WARN);
+                break;
+            case "error":
+                setLevel(ERROR);
+                break;
+            default:
+                try {
+                    setLevel(Integer.parseInt(newLevel));
+                } catch (NumberFormatException e) {
+                    throw new RuntimeException("Unknown log level " + newLevel, e);
+                }
+        }
+    }
+
+    /**
+     * @return true if messages at the level are logged.
+     */
+    public static boolean isLoggable(int messageLevel) {
+        return messageLevel >= level;
+    }
+
+    /**
+     * @param file
+     *          Where to write the recent messages when an error is logged, null to not write them.
+     */
+    public static synchronized void setRecentDumpFile(File file) {
+        recentDumpFile = file;
+    }
+
+    public void d(String msg) { if (isLoggable(DEBUG)) log(DEBUG, msg, null); }
+    public void d(String msg, Throwable t) { if (isLoggable(DEBUG)) log(DEBUG, msg, t); }
+    public void d(String format, Object arg) { if (isLoggable(DEBUG)) log(DEBUG, format(format, arg), null); }
+    public void d(String format, Object arg1, Object arg2) { if (isLoggable(DEBUG)) log(DEBUG, format(format, arg1, arg2), null); }
+    public void d(String format, Object arg1, Object arg2, Object arg3) { if (isLoggable(DEBUG)) log(DEBUG, format(format, arg1, arg2, arg3), null); }
+    public void d(String format, long arg) { if (isLoggable(DEBUG)) log(DEBUG, format(format, arg), null); }
+    public void d(String format, long arg1, long arg2) { if (isLoggable(DEBUG)) log(DEBUG, format(format, arg1, arg2), null); }
+
+    public void e(String msg) { if (isLoggable(ERROR)) log(ERROR, msg, null); }
+    public void e(String msg, Throwable t) { if (isLoggable(ERROR)) log(ERROR, msg, t); }
 
-    public void e(String msg) { Log.e(tag, msg); }
-    public void e(String msg, Throwable t) { Log.e(tag, msg, t); }
+    public void i(String msg) { if (isLoggable(INFO)) log(INFO, msg, null); }
+    public void i(String msg, Throwable t) { if (isLoggable(INFO)) log(INFO, msg, t); }
+    public void i(String format, Object arg) { if (isLoggable(INFO)) log(INFO, format(format, arg), null); }
+    public void i(String format, Object arg1, Object arg2) { if (isLoggable(INFO)) log(INFO, format(format, arg1, arg2), null); }
+    public void i(String format, Object arg1, Object arg2, Object arg3) { if (isLoggable(INFO)) log(INFO, format(format, arg1, arg2, arg3), null); }
+    public void i(String format, long arg) { if (isLoggable(INFO)) log(INFO, format(format, arg), null); }
+    public void i(String format, long arg1, long arg2) { if (isLoggable(INFO)) log(INFO, format(format, arg1, arg2), null); }
 
-    public void i(String msg) { Log.i(tag, msg); }
-    public void i(String msg, Throwable t) { Log.i(tag, msg, t); }
+    public void v(String msg) { if (isLoggable(VERBOSE)) log(VERBOSE, msg, null); }
+    public void v(String msg, Throwable t) { if (isLoggable(VERBOSE)) log(VERBOSE, msg, t); }
+    public void v(String format, Object arg) { if (isLoggable(VERBOSE)) log(VERBOSE, format(format, arg), null); }
+    public void v(String format, Object arg1, Object arg2) { if (isLoggable(VERBOSE)) log(VERBOSE, format(format, arg1, arg2), null); }
+    public void v(String format, Object arg1, Object arg2, Object arg3) { if (isLoggable(VERBOSE)) log(VERBOSE, format(format, arg1, arg2, arg3), null); }
+    public void v(String format, long arg) { if (isLoggable(VERBOSE)) log(VERBOSE, format(format, arg), null); }
+    public void v(String format, long arg1, long arg2) { if (isLoggable(VERBOSE)) log(VERBOSE, format(format, arg1, arg2), null); }
 
-    public void v(String msg) { Log.v(tag, msg); }
-    public void v(String msg, Throwable t) { Log.v(tag, msg, t); }
+    public void w(String msg) { if (isLoggable(WARN)) log(WARN, msg, null); }
+    public void w(String msg, Throwable t) { if (isLoggable(WARN)) log(WARN, msg, t); }
+    public void w(String format, Object arg) { if (isLoggable(WARN)) log(WARN, format(format, arg), null); }
+    public void w(String format, Object arg1, Object arg2) { if (isLoggable(WARN)) log(WARN, format(format, arg1, arg2), null); }
 
-    public void w(String msg) { Log.w(tag, msg); }
-    public void w(String msg, Throwable t) { Log.w(tag, msg, t); }
+    public void wtf(String msg) { log(ASSERT, msg, null); }
+    public void wtf(String msg, Throwable t) { log(ASSERT, msg, t); }
+
+    private static String format(String format, Object... args) {
+        return String.format(Locale.US, format, args);
+    }
 
-    public void wtf(String msg) { Log.wtf(tag, msg); }
-    public void wtf(String msg, Throwable t) { Log.wtf(tag, msg, t); }
+    private void log(int messageLevel, String msg, Throwable t) {
+        switch (messageLevel) {
+            case VERBOSE:
+                Log.v(tag, msg, t);
+                break;
+            case DEBUG:
+                Log.d(tag, msg, t);
+                break;
+            case INFO:
+                Log.i(tag, msg, t);
+                break;
+            case WARN:
+                Log.w(tag, msg, t);
+                break;
+            case ERROR:
+                Log.e(tag, msg, t);
+                break;
+            default:
+                Log.wtf(tag, msg, t);
+        }
+        remember(messageLevel, tag, msg, t);
+        if (messageLevel >= ERROR) {
+            dumpRecent();
+        }
+    }
+
+    private static synchronized void remember(int messageLevel, String tag, String msg, Throwable t) {
+        int slot = (int) (recentCount % RECENT_SIZE);
+        recentTimes[slot] = System.currentTimeMillis();
+        recentLevels[slot] = messageLevel;
+        recentTags[slot] = tag;
+        recentMessages[slot] = msg;
+        recentThrowables[slot] = t;
+        recentCount++;
+    }
+
+    /**
+     * Write the recent messages to the dump file in the background, unless they were written
+     * very recently.
+     */
+    private static synchronized void dumpRecent() {
+        final File file = recentDumpFile;
+        long now = System.currentTimeMillis();
+        if (file == null || now - lastDumpTime < DUMP_INTERVAL_MILLIS) {
+            return;
+        }
+        lastDumpTime = now;
+        final StringBuilder recent = new StringBuilder();
+        writeRecent(recent);
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try (Writer out = new FileWriter(file)) {
+                    out.append(recent);
+                } catch (IOException e) {
+                    Log.w(Logger.class.getCanonicalName(), "Unable to write the recent log to " + file, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Write the recent messages, oldest first, one per line (plus the stack trace of any
+     * exception).
+     *
+     * @param out
+     *          Where to write them.
+     */
+    public static synchronized void writeRecent(StringBuilder out) {
+        SimpleDateFormat timeFormat = new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US);
+        Date date = new Date();
+        long first = Math.max(0, recentCount - RECENT_SIZE);
+        for (long i = first; i < recentCount; i++) {
+            int slot = (int) (i % RECENT_SIZE);
+            date.setTime(recentTimes[slot]);
+            out.append(timeFormat.format(date)).append(' ')
+                    .append(LEVEL_LETTERS.charAt(recentLevels[slot])).append(' ')
+                    .append(recentTags[slot]).append(": ")
+                    .append(recentMessages[slot]).append('\n');
+            if (recentThrowables[slot] != null) {
+                StringWriter trace = new StringWriter();
+                recentThrowables[slot].printStackTrace(new PrintWriter(trace));
+                out.append(trace.getBuffer());
+            }
+        }
+    }
 }
@@ -1,8 +1,9 @@
 package com.drampulla.gphotoslideshow;
 
+import android.app.AlertDialog;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.os.AsyncTask;
+import android.os.Environment;
 import android.os.Handler;
 import android.preference.PreferenceManager;
 import android.support.v4.view.GestureDetectorCompat;
@@ -15,15 +16,16 @@ import android.view.MenuItem;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.WindowManager;
 import android.view.animation.AnimationUtils;
 import android.widget.FrameLayout;
 import android.widget.ImageSwitcher;
 import android.widget.ImageView;
 import android.widget.ViewSwitcher;
 
-import com.google.gdata.util.ServiceException;
-
+import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The main entry point for the application to start the slideshow.
@@ -36,24 +38,72 @@ public class MainActivity extends AppCompatActivity {
     private static final Logger LOGGER = new Logger(MainActivity.class);
 
     /**
-     * Class that manages all Google Photos.
+     * Values of the photo source preference.
+     */
+    public static final String PHOTO_SOURCE_GOOGLE_PHOTOS = "googlePhotos";
+    public static final String PHOTO_SOURCE_LOCAL_DIRECTORY = "localDirectory";
+
+    /**
+     * Where the photos come from (Google Photos or a directory on the device).
+     */
+    private static PhotoSource photoSource;
+
+    /**
+     * Name of the file (in the app's private files directory) that holds the photo catalog.
+     */
+    private static final String CATALOG_FILE_NAME = "photo_catalog.bin";
+
+    /**
+     * Name of the file that holds the photo catalog of a local directory.
+     */
+    private static final String LOCAL_CATALOG_FILE_NAME = "photo_catalog_local.bin";
+
+    /**
+     * Name of the file the slide timings are appended to, and how often.
+     */
+    private static final String SLIDE_TIMINGS_FILE_NAME = "slide_timings.csv";
+    private static final long SLIDE_TIMINGS_DUMP_MINUTES = 5;
+
+    /**
+     * Name of the file the recent log messages are written to when an error is logged.
+     */
+    private static final String RECENT_LOG_FILE_NAME = "recent_log.txt";
+
+    /**
+     * Log level when it hasn't been set in the preferences.
+     */
+    private static final String LOG_LEVEL_DEFAULT = "info";
+
+    /**
+     * Minutes between catalog refreshes when it hasn't been set in the preferences, 0 is never.
      */
-    private final static PicasaManager picasaManager = new PicasaManager();
+    private static final String CATALOG_REFRESH_MINUTES_DEFAULT = "60";
 
     /**
      * Iterator to walk forward and backward through my Google Photos.
      */
     private static SlideshowIterator slideshowIterator;
 
+    /**
+     * Keeps the local photo catalog in sync with Google Photos.
+     */
+    private CatalogSynchronizer catalogSynchronizer;
+
     /**
      * Change slides every X seconds (based on preferences).
      */
-    private ChangeSlideScheduledJob changeSlideScheduledJob;
+    private volatile ChangeSlideScheduledJob changeSlideScheduledJob;
+
+    /**
+     * Update the time on the screen.
+     */
+    private volatile UpdateTimeTimerTask updateTimeTimerTask;
 
     /**
-     * Update the time on the screen every second.
+     * Suspends the slideshow while it can't be seen (or during the quiet hours), and slows it
+     * down on battery.
      */
-    private UpdateTimeTimerTask updateTimeTimerTask;
+    private SlideshowScheduler slideshowScheduler;
 
     /**
      * Handler for doing deferred operations (updating screen text, etc.).
@@ -70,6 +120,38 @@ public class MainActivity extends AppCompatActivity {
      */
     private SharedPreferences.OnSharedPreferenceChangeListener animationTypePreferenceChangeListener;
 
+    /**
+     * Preference listener for handling changes in the log level.
+     */
+    private SharedPreferences.OnSharedPreferenceChangeListener logLevelPreferenceChangeListener;
+
+    /**
+     * Preference listener for handling changes in how often the catalog is refreshed.
+     */
+    private SharedPreferences.OnSharedPreferenceChangeListener catalogRefreshPreferenceChangeListener;
+
+    /**
+     * When the catalog was last synchronized (or asked to be).
+     */
+    private volatile long lastCatalogRefresh;
+
+    /**
+     * Syncs the catalog every so often so new photos show up without restarting the slideshow.
+     */
+    private final Runnable catalogRefresh = new Runnable() {
+        @Override
+        public void run() {
+            if (catalogSynchronizer != null && slideshowIterator != null) {
+                LOGGER.d("Refreshing the catalog");
+                synchronizeInBackground(slideshowIterator.getCatalog());
+            } else {
+                // the first sync hasn't got anywhere yet, try again after another interval
+                lastCatalogRefresh = System.currentTimeMillis();
+            }
+            scheduleCatalogRefresh();
+        }
+    };
+
 
     /**
      *
@@ -78,6 +160,8 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        StartupMetrics.markStart();
+        initializeLogging();
         setContentView(R.layout.activity_main);
 
         // Create the "settings" toolbar
@@ -88,10 +172,33 @@ public class MainActivity extends AppCompatActivity {
         // add handler for detecting swipe left/right
         gestureDetectorCompat = new GestureDetectorCompat(this, new MainGestureListener());
 
+        wakeUpIfQuietHoursEnded(getIntent());
+
         handler = new Handler();
+        slideshowScheduler = new SlideshowScheduler(this, handler, new SlideshowScheduler.StateCallback() {
+            @Override
+            public void stateChanged(int state) {
+                applyWorkState();
+            }
+        });
+
+        SlideTimings.startDumping(new File(getDiagnosticsDirectory(), SLIDE_TIMINGS_FILE_NAME), SLIDE_TIMINGS_DUMP_MINUTES);
+
+        // Keeping this as a member variable because the SharedPreferences only keep this listener
+        // as a weak reference.
+        catalogRefreshPreferenceChangeListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+            @Override
+            public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String s) {
+                if (PreferenceConstants.CATALOG_REFRESH_MINUTES.equals(s)) {
+                    LOGGER.d("Preference changed, so reschedule the catalog refresh");
+                    scheduleCatalogRefresh();
+                }
+            }
+        };
+        PreferenceManager.getDefaultSharedPreferences(this).registerOnSharedPreferenceChangeListener(catalogRefreshPreferenceChangeListener);
 
-        // initialize the picasa web service
-        initializePicasa();
+        // initialize google photos or the local directory
+        initializePhotoSource();
     }
 
     @Override
@@ -123,6 +230,37 @@ public class MainActivity extends AppCompatActivity {
         initializeAnimations(imageSwitcher);
     }
 
+    /**
+     * @return where to write files for diagnosing problems.  The external files directory can
+     *          be read with adb without rooting the device.
+     */
+    private File getDiagnosticsDirectory() {
+        File directory = getExternalFilesDir(null);
+        return directory == null ? getFilesDir() : directory;
+    }
+
+    /**
+     * Set the log level from the preferences (and keep it up to date), and keep the recent log
+     * messages when an error is logged.
+     */
+    private void initializeLogging() {
+        SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(this);
+        Logger.setLevel(sharedPreferences.getString(PreferenceConstants.LOG_LEVEL, LOG_LEVEL_DEFAULT));
+        Logger.setRecentDumpFile(new File(getDiagnosticsDirectory(), RECENT_LOG_FILE_NAME));
+
+        // Keeping this as a member variable because the SharedPreferences only keep this listener
+        // as a weak reference.
+        logLevelPreferenceChangeListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+            @Override
+            public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String s) {
+                if (PreferenceConstants.LOG_LEVEL.equals(s)) {
+                    Logger.setLevel(sharedPreferences.getString(PreferenceConstants.LOG_LEVEL, LOG_LEVEL_DEFAULT));
+                }
+            }
+        };
+        sharedPreferences.registerOnSharedPreferenceChangeListener(logLevelPreferenceChangeListener);
+    }
+
     /**
      *
      * @param imageSwitcher
@@ -152,23 +290,300 @@ public class MainActivity extends AppCompatActivity {
     }
 
 
-    private void initializePicasa() {
-        picasaManager.initialize(MainActivity.this, new PicasaManager.InitializedCallback() {
+    /**
+     * Connect to the photo source picked in the preferences and get the slideshow going.  The
+     * source is only picked the first time, changing it takes effect when the app is restarted.
+     */
+    private void initializePhotoSource() {
+        SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(this);
+        boolean local = PHOTO_SOURCE_LOCAL_DIRECTORY.equals(sharedPreferences.getString(PreferenceConstants.PHOTO_SOURCE, PHOTO_SOURCE_GOOGLE_PHOTOS));
+        if (photoSource == null) {
+            if (local) {
+                String directory = sharedPreferences.getString(PreferenceConstants.LOCAL_PHOTO_DIRECTORY, "");
+                photoSource = new LocalDirectoryPhotoSource(directory.isEmpty()
+                        ? Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_PICTURES)
+                        : new File(directory));
+            } else {
+                photoSource = new PicasaManager();
+            }
+        }
+
+        final PhotoCatalogStore catalogStore = new PhotoCatalogStore(new File(getFilesDir(),
+                photoSource instanceof LocalDirectoryPhotoSource ? LOCAL_CATALOG_FILE_NAME : CATALOG_FILE_NAME));
+        int feedLoadConcurrency = Integer.parseInt(sharedPreferences.getString(PreferenceConstants.FEED_LOAD_CONCURRENCY, "4"));
+        catalogSynchronizer = new CatalogSynchronizer(photoSource,
+                new AlbumFeedLoader(photoSource, feedLoadConcurrency, PicasaManager.FEED_TIMEOUT_MILLIS),
+                catalogStore);
+
+        photoSource.initialize(MainActivity.this, new PhotoSource.InitializedCallback() {
             @Override
             public void callback() {
                 try {
-                    if (slideshowIterator == null) {
-                        slideshowIterator = picasaManager.createSlideshowIterator();
+                    photoSource.startWatching(new PhotoSource.ChangeListener() {
+                        @Override
+                        public void sourceChanged() {
+                            synchronizeInBackground(slideshowIterator == null ? PhotoCatalog.empty() : slideshowIterator.getCatalog());
+                        }
+                    });
+
+                    if (slideshowIterator != null) {
+                        // the activity was recreated, the slideshow is already going
+                        startSlideshow();
+                        return;
                     }
-                    changeSlideScheduledJob = new ChangeSlideScheduledJob(slideshowIterator, MainActivity.this, handler);
-                    updateTimeTimerTask = new UpdateTimeTimerTask(MainActivity.this, handler);
-                } catch (IOException | ServiceException e) {
+                    PhotoCatalog catalog = loadCatalog(catalogStore);
+                    if (!catalog.isEmpty()) {
+                        createSlideshowIterator(catalog, false);
+                        startSlideshow();
+                    }
+                    synchronizeInBackground(catalog);
+                } catch (EmptySlideshowException e) {
+                    LOGGER.w("Nothing to show", e);
+                    showError("No photos to show", e.getMessage());
+                } catch (RuntimeException e) {
                     LOGGER.e("Failed to create slideshow iterator", e);
                 }
             }
         });
     }
 
+    /**
+     * Bring the catalog up to date in the background.  If the slideshow hasn't started yet
+     * (nothing was saved) it starts with the first album it can show and the rest are
+     * filled in behind it.
+     *
+     * @param current
+     *          The catalog as it is now.
+     */
+    private void synchronizeInBackground(PhotoCatalog current) {
+        lastCatalogRefresh = System.currentTimeMillis();
+        // only stream if there is no slideshow yet, and only once there is something it would show
+        AlbumFilter streamingFilter = slideshowIterator != null ? null
+                : SlideshowIterator.createAlbumFilter(PreferenceManager.getDefaultSharedPreferences(this));
+        catalogSynchronizer.synchronizeInBackground(current, streamingFilter, new CatalogSynchronizer.SyncCallback() {
+            @Override
+            public void catalogUpdated(PhotoCatalog catalog, boolean complete) {
+                if (slideshowIterator != null) {
+                    slideshowIterator.updateCatalog(catalog);
+                    return;
+                }
+                try {
+                    createSlideshowIterator(catalog, !complete);
+                    startSlideshow();
+                } catch (EmptySlideshowException e) {
+                    if (complete) {
+                        LOGGER.w("Nothing to show", e);
+                        showError("No photos to show", e.getMessage());
+                    }
+                } catch (RuntimeException e) {
+                    LOGGER.e("Failed to create slideshow iterator", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Create the iterator for the slideshow.
+     *
+     * @param catalog
+     *          The photos to show.
+     * @param partial
+     *          true if this is only part of the catalog and the rest is still loading.
+     * @throws EmptySlideshowException
+     *          If there is nothing in the catalog to show.
+     */
+    private void createSlideshowIterator(PhotoCatalog catalog, boolean partial) {
+        // write out where the old one was before the new one reads it back
+        SlideshowIterator previous = slideshowIterator;
+        if (previous != null) {
+            previous.close();
+        }
+        slideshowIterator = new SlideshowIterator(PreferenceManager.getDefaultSharedPreferences(MainActivity.this), catalog);
+        StartupMetrics.markSlideshowReady(slideshowIterator.size(), partial);
+    }
+
+    /**
+     * Start changing slides and updating the time on the screen.
+     */
+    private void startSlideshow() {
+        ChangeSlideScheduledJob previous = changeSlideScheduledJob;
+        if (previous != null) {
+            previous.shutdown();
+        }
+        changeSlideScheduledJob = new ChangeSlideScheduledJob(slideshowIterator, MainActivity.this, handler);
+        if (updateTimeTimerTask == null) {
+            updateTimeTimerTask = new UpdateTimeTimerTask(MainActivity.this, handler);
+        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                applyWorkState();
+            }
+        });
+    }
+
+    /**
+     * Start or stop the slides and the clock to match the {@link SlideshowScheduler} (UI
+     * thread only).
+     */
+    private void applyWorkState() {
+        int state = slideshowScheduler.getState();
+        if (changeSlideScheduledJob != null) {
+            changeSlideScheduledJob.setWorkState(state);
+        }
+        if (updateTimeTimerTask != null) {
+            if (state == SlideshowScheduler.SUSPENDED) {
+                updateTimeTimerTask.stop();
+            } else {
+                updateTimeTimerTask.start();
+            }
+        }
+        // this is the only place the screen is kept on (not the layout), so it can turn itself
+        // off during the quiet hours
+        if (slideshowScheduler.isQuietHours()) {
+            // only the wake up alarm turns the screen on, not coming back to the activity
+            getWindow().clearFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON
+                    | WindowManager.LayoutParams.FLAG_TURN_SCREEN_ON);
+        } else {
+            getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
+        }
+        scheduleCatalogRefresh();
+    }
+
+    /**
+     * Set up the next catalog refresh, counting from the last sync so the screen going off and
+     * on doesn't keep putting it off.  There are no refreshes while the slideshow is suspended
+     * (UI thread only).
+     */
+    private void scheduleCatalogRefresh() {
+        handler.removeCallbacks(catalogRefresh);
+        long minutes = Long.parseLong(PreferenceManager.getDefaultSharedPreferences(this)
+                .getString(PreferenceConstants.CATALOG_REFRESH_MINUTES, CATALOG_REFRESH_MINUTES_DEFAULT));
+        if (minutes <= 0 || slideshowScheduler.getState() == SlideshowScheduler.SUSPENDED) {
+            return;
+        }
+        long next = lastCatalogRefresh + TimeUnit.MINUTES.toMillis(minutes);
+        handler.postDelayed(catalogRefresh, Math.max(0, next - System.currentTimeMillis()));
+    }
+
+    /**
+     * Pop up an error message for the user.
+     *
+     * @param title
+     *          Title of the message.
+     * @param message
+     *          The message.
+     */
+    private void showError(final String title, final String message) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                new AlertDialog.Builder(MainActivity.this)
+                        .setTitle(title)
+                        .setMessage(message)
+                        .setCancelable(true)
+                        .create().show();
+            }
+        });
+    }
+
+    /**
+     * Read the catalog that was saved the last time the slideshow ran.
+     *
+     * @param catalogStore
+     *          Where the catalog is saved.
+     * @return
+     *          The saved catalog or an empty catalog if it couldn't be read.
+     */
+    private PhotoCatalog loadCatalog(PhotoCatalogStore catalogStore) {
+        long start = System.currentTimeMillis();
+        try {
+            PhotoCatalog catalog = catalogStore.load();
+            if (Logger.isLoggable(Logger.DEBUG)) {
+                int photoCount = catalog.getPhotoCount();
+                LOGGER.d(String.format("Loaded %d albums from the catalog in %dms, %d photos in %d mapped bytes (%d per photo).",
+                        catalog.getAlbumCount(), System.currentTimeMillis() - start, photoCount,
+                        catalog.getMemoryBytes(), photoCount == 0 ? 0 : catalog.getMemoryBytes() / photoCount));
+            }
+            return catalog;
+        } catch (IOException e) {
+            LOGGER.w("Unable to read the saved catalog, starting over", e);
+            return PhotoCatalog.empty();
+        }
+    }
+
+    @Override
+    public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults) {
+        super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+        if (photoSource != null) {
+            photoSource.onRequestPermissionsResult(requestCode, permissions, grantResults);
+        }
+    }
+
+    @Override
+    protected void onNewIntent(Intent intent) {
+        super.onNewIntent(intent);
+        setIntent(intent);
+        wakeUpIfQuietHoursEnded(intent);
+    }
+
+    /**
+     * The alarm set by the {@link SlideshowScheduler} started the activity because the quiet
+     * hours are over, so turn the screen back on (the screen went off on its own when they
+     * started).
+     */
+    private void wakeUpIfQuietHoursEnded(Intent intent) {
+        if (intent != null && intent.getBooleanExtra(SlideshowScheduler.EXTRA_QUIET_HOURS_ENDED, false)) {
+            LOGGER.i("Quiet hours are over, turning the screen on");
+            getWindow().addFlags(WindowManager.LayoutParams.FLAG_TURN_SCREEN_ON
+                    | WindowManager.LayoutParams.FLAG_SHOW_WHEN_LOCKED);
+        }
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        slideshowScheduler.start();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // the screen is off or something else is in front, don't keep changing slides
+        slideshowScheduler.stop();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        handler.removeCallbacks(catalogRefresh);
+        if (changeSlideScheduledJob != null) {
+            changeSlideScheduledJob.shutdown();
+        }
+        if (updateTimeTimerTask != null) {
+            updateTimeTimerTask.stop();
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (slideshowIterator != null) {
+            slideshowIterator.flushPosition();
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (slideshowIterator != null) {
+            slideshowIterator.flushPosition();
+        }
+        if (changeSlideScheduledJob != null) {
+            changeSlideScheduledJob.trimMemory(level);
+        }
+    }
+
     /**
      *
      * @param menu
@@ -272,24 +687,17 @@ public class MainActivity extends AppCompatActivity {
 
             return false;
         }
+        // these only queue the move, the slide is loaded on the navigation thread
         private void onSwipeRight() {
-            new AsyncTask<Void, Void, Void>() {
-                @Override
-                protected Void doInBackground(Void... voids) {
-                    MainActivity.this.changeSlideScheduledJob.previousSlide();
-                    return null;
-                }
-            }.execute();
+            if (changeSlideScheduledJob != null) {
+                changeSlideScheduledJob.previousSlide();
+            }
         }
 
         private void onSwipeLeft() {
-            new AsyncTask<Void, Void, Void>() {
-                @Override
-                protected Void doInBackground(Void... voids) {
-                    MainActivity.this.changeSlideScheduledJob.nextSlide();
-                    return null;
-                }
-            }.execute();
+            if (changeSlideScheduledJob != null) {
+                changeSlideScheduledJob.nextSlide();
+            }
         }
     }
 
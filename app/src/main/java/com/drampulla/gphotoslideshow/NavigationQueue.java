@@ -0,0 +1,181 @@
+package com.drampulla.gphotoslideshow;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Every move through the slideshow (swipes, the timer, jumping to a slide) goes through here
+ * so they happen one at a time on the navigation thread.  Commands that come in while a move
+ * is in progress are combined: five quick swipes forward become a single move of +5, and
+ * the slides in between are never loaded.
+ *
+ * A swipe or a seek while a slide is loading tells the {@link Navigator} the move in progress
+ * has been superseded so it can stop loading.  The timer only advances when nothing else is
+ * going on, it never piles up behind the user.
+ */
+public class NavigationQueue {
+
+    /**
+     * No seek is pending.
+     */
+    public static final int NO_SEEK = -1;
+
+    /**
+     * Does the moving, always on the navigation thread and never more than one at a time.
+     */
+    public static interface Navigator {
+        /**
+         * @param seekIndex
+         *          The position in the slideshow order to jump to first, or {@link #NO_SEEK}.
+         * @param delta
+         *          How many slides to move from the current one (or after the seek, from the
+         *          slide before the one sought, so 1 shows the slide that was sought).  0
+         *          shows the current slide again, after the move that was loading it was
+         *          superseded by moves that cancelled each other out.
+         * @param manual
+         *          true if the user asked for the move, false if it is the timer.
+         */
+        void navigate(int seekIndex, int delta, boolean manual);
+
+        /**
+         * The user asked for another move while {@link #navigate} is still running, so
+         * whatever it is loading probably won't be shown.  Called on the thread that asked.
+         */
+        void superseded();
+    }
+
+    private final Executor executor;
+    private final Navigator navigator;
+
+    private int pendingSeek = NO_SEEK;
+    private int pendingDelta;
+    private boolean pendingManual;
+
+    /**
+     * true from when the drain is handed to the executor until there is nothing left to do.
+     */
+    private boolean scheduled;
+    /**
+     * true while the navigator is running.
+     */
+    private boolean busy;
+    /**
+     * true if the move in progress was told it was superseded, so if the moves after it
+     * cancel out the slide it was loading still has to be shown.
+     */
+    private boolean reloadCurrent;
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     *
+     * @param executor
+     *          Runs the moves, this has to run one thing at a time.
+     * @param navigator
+     *          Does the moving.
+     */
+    public NavigationQueue(Executor executor, Navigator navigator) {
+        this.executor = executor;
+        this.navigator = navigator;
+    }
+
+    /**
+     * The user asked to move forward (positive) or back (negative) some slides.
+     */
+    public synchronized void move(int delta) {
+        pendingDelta += delta;
+        pendingManual = true;
+        requested();
+    }
+
+    /**
+     * The user asked to jump to a position in the slideshow order.  This replaces any moves
+     * that haven't happened yet.
+     */
+    public synchronized void seek(int sequenceIndex) {
+        pendingSeek = sequenceIndex;
+        pendingDelta = 1;
+        pendingManual = true;
+        requested();
+    }
+
+    /**
+     * The timer wants the next slide.  This is dropped if anything else is going on.
+     *
+     * @return
+     *          true if the slideshow will advance.
+     */
+    public synchronized boolean advance() {
+        if (scheduled) {
+            return false;
+        }
+        pendingDelta = 1;
+        pendingManual = false;
+        schedule();
+        return true;
+    }
+
+    /**
+     * @return true if the user has asked for a move that hasn't started yet.
+     */
+    public synchronized boolean hasPendingMove() {
+        return pendingManual && (pendingSeek != NO_SEEK || pendingDelta != 0);
+    }
+
+    private void requested() {
+        if (busy && (pendingSeek != NO_SEEK || pendingDelta != 0)) {
+            navigator.superseded();
+            reloadCurrent = true;
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        if (!scheduled) {
+            scheduled = true;
+            executor.execute(drain);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            int seekIndex;
+            int delta;
+            boolean manual;
+            synchronized (this) {
+                busy = false;
+                if (pendingSeek == NO_SEEK && pendingDelta == 0 && !reloadCurrent) {
+                    // nothing left to do (or the moves cancelled out, a swipe forward and one back)
+                    scheduled = false;
+                    pendingManual = false;
+                    return;
+                }
+                seekIndex = pendingSeek;
+                delta = pendingDelta;
+                // a reload (delta 0) only happens when the user moved
+                manual = pendingManual || pendingDelta == 0;
+                reloadCurrent = false;
+                pendingSeek = NO_SEEK;
+                pendingDelta = 0;
+                pendingManual = false;
+                busy = true;
+            }
+            try {
+                navigator.navigate(seekIndex, delta, manual);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    busy = false;
+                    scheduled = false;
+                    if (pendingSeek != NO_SEEK || pendingDelta != 0) {
+                        schedule();
+                    }
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.drampulla.gphotoslideshow;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local copy of all of the albums and photos in the user's account.  A catalog is never
+ * modified once it has been created; a sync produces a new catalog which then replaces
+ * the old one.
+ */
+public class PhotoCatalog {
+
+    /**
+     * All of the albums in the order the server returned them.
+     */
+    private final List<CatalogAlbum> albums;
+    /**
+     * The version of the album list this catalog was synchronized with (e.g. the ETag of the
+     * Picasa user feed), empty if it isn't known.  The next sync hands this back to the
+     * {@link PhotoSource} so it can skip everything if the list hasn't changed.
+     */
+    private final String version;
+    /**
+     * Where each album is in albums by its id, built the first time an album is looked up
+     * so that a sync looking up every album isn't O(albums^2).
+     */
+    private volatile Map<String, Integer> albumIndexes;
+
+    public PhotoCatalog(List<CatalogAlbum> albums) {
+        this(albums, "");
+    }
+
+    public PhotoCatalog(List<CatalogAlbum> albums, String version) {
+        this.albums = Collections.unmodifiableList(albums);
+        this.version = version == null ? "" : version;
+    }
+
+    /**
+     * @return a catalog with no albums in it.
+     */
+    public static PhotoCatalog empty() {
+        return new PhotoCatalog(Collections.<CatalogAlbum>emptyList());
+    }
+
+    public List<CatalogAlbum> getAlbums() {
+        return albums;
+    }
+
+    public int getAlbumCount() {
+        return albums.size();
+    }
+
+    public CatalogAlbum getAlbum(int index) {
+        return albums.get(index);
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public boolean isEmpty() {
+        return albums.isEmpty();
+    }
+
+    /**
+     *
+     * @param albumId
+     *          The id of the album to look for
+     * @return
+     *          The index of the album in this catalog or -1 if it isn't here.
+     */
+    public int indexOfAlbum(String albumId) {
+        Map<String, Integer> indexes = albumIndexes;
+        if (indexes == null) {
+            // the catalog never changes, so building this twice on two threads is harmless
+            indexes = new HashMap<>(albums.size() * 2);
+            for (int i = albums.size() - 1; i >= 0; i--) {
+                // going backwards so the first album wins if an id shows up twice
+                indexes.put(albums.get(i).getId(), i);
+            }
+            albumIndexes = indexes;
+        }
+        Integer index = indexes.get(albumId);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     *
+     * @param albumId
+     *          The id of the album to look for
+     * @return
+     *          The album or null if it isn't in this catalog.
+     */
+    public CatalogAlbum findAlbum(String albumId) {
+        int index = indexOfAlbum(albumId);
+        return index < 0 ? null : albums.get(index);
+    }
+
+    /**
+     * @return the total number of photos across all albums.
+     */
+    public int getPhotoCount() {
+        int rc = 0;
+        for (CatalogAlbum album : albums) {
+            rc += album.getPhotoCount();
+        }
+        return rc;
+    }
+
+    /**
+     * @return about how much memory the photos of all albums use, on the heap or in the
+     *          mapped catalog file.
+     */
+    public long getMemoryBytes() {
+        long rc = 0;
+        for (CatalogAlbum album : albums) {
+            rc += album.getPhotoTable().getMemoryBytes();
+        }
+        return rc;
+    }
+}
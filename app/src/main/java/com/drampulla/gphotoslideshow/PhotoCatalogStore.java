@@ -0,0 +1,161 @@
+package com.drampulla.gphotoslideshow;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes the {@link PhotoCatalog} to a file on the device so that the slideshow
+ * can start without going back to the server for every album.
+ *
+ * The photos of each album are written as the arrays of its {@link PhotoTable}, so loading
+ * is a memory map of the file and each table reads its photos straight from the mapped
+ * pages rather than decoding every photo up front.
+ */
+public class PhotoCatalogStore {
+
+    /**
+     * Marker at the start of the file so we don't try to read something that isn't a catalog.
+     */
+    private static final int MAGIC = 0x47505343;
+    /**
+     * Bump this whenever the file layout changes.  Older files are simply ignored.
+     */
+    private static final int VERSION = 4;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The file the catalog is kept in.
+     */
+    private final File file;
+
+    /**
+     *
+     * @param file
+     *          The file the catalog is kept in.
+     */
+    public PhotoCatalogStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     *
+     * @return
+     *          The catalog that was last saved or an empty catalog if there isn't one.
+     * @throws IOException
+     *          If the file exists but can't be read.
+     */
+    public PhotoCatalog load() throws IOException {
+        if (!file.exists()) {
+            return PhotoCatalog.empty();
+        }
+
+        // the mapping stays valid after the channel is closed, until the tables are collected
+        try (RandomAccessFile in = new RandomAccessFile(file, "r"); FileChannel channel = in.getChannel()) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Save the catalog.  The catalog is written to a temporary file first and then renamed
+     * so that a crash part way through never leaves a half written catalog behind.
+     *
+     * @param catalog
+     *          The catalog to save.
+     * @throws IOException
+     *          If the catalog can't be written.
+     */
+    public void save(PhotoCatalog catalog) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            write(catalog, out);
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Unable to replace " + file);
+        }
+    }
+
+    /**
+     * Read a catalog from the buffer.
+     *
+     * @param in
+     *          The buffer to read from, e.g. the memory mapped file.  The photo tables keep
+     *          using it after this returns.
+     * @return
+     *          The catalog, or an empty catalog if the buffer was written by a different version.
+     * @throws IOException
+     *          If the buffer doesn't hold a whole catalog.
+     */
+    public static PhotoCatalog read(ByteBuffer in) throws IOException {
+        try {
+            if (in.remaining() < 8 || in.getInt() != MAGIC || in.getInt() != VERSION) {
+                return PhotoCatalog.empty();
+            }
+
+            String catalogVersion = readString(in);
+            int albumCount = in.getInt();
+            if (albumCount < 0) {
+                throw new IOException("Catalog has " + albumCount + " albums");
+            }
+            List<CatalogAlbum> albums = new ArrayList<>(Math.min(albumCount, 1024));
+            for (int i = 0; i < albumCount; i++) {
+                String albumId = readString(in);
+                String albumTitle = readString(in);
+                long updated = in.getLong();
+                albums.add(new CatalogAlbum(albumId, albumTitle, updated, PhotoTable.read(in)));
+            }
+            return new PhotoCatalog(albums, catalogVersion);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Catalog is cut short", e);
+        }
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("String of " + length + " bytes doesn't fit in what is left of the file");
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void writeString(String value, DataOutputStream out) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Write a catalog to the stream.
+     *
+     * @param catalog
+     *          The catalog to write.
+     * @param out
+     *          The stream to write to.
+     * @throws IOException
+     *          If the stream can't be written.
+     */
+    public static void write(PhotoCatalog catalog, DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeString(catalog.getVersion(), out);
+        out.writeInt(catalog.getAlbumCount());
+        for (CatalogAlbum album : catalog.getAlbums()) {
+            writeString(album.getId(), out);
+            writeString(album.getTitle(), out);
+            out.writeLong(album.getUpdated());
+            album.getPhotoTable().write(out);
+        }
+    }
+}
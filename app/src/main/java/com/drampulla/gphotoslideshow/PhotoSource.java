@@ -0,0 +1,92 @@
+package com.drampulla.gphotoslideshow;
+
+import android.app.Activity;
+
+/**
+ * Where the albums and photos of the slideshow come from.  The {@link CatalogSynchronizer}
+ * uses this to keep the {@link PhotoCatalog} (which is what the {@link SlideshowIterator}
+ * walks through) up to date, so the rest of the slideshow doesn't care whether the photos
+ * are in Google Photos or in a folder on the device.
+ */
+public interface PhotoSource {
+
+    /**
+     * Get ready to be used, e.g. by asking the user for permissions.
+     *
+     * @param mainActivity
+     *          The activity that can be used to prompt the user for permissions.
+     * @param initializedCallback
+     *          Called (outside of the main UI thread) once the source can be used.
+     */
+    void initialize(Activity mainActivity, InitializedCallback initializedCallback);
+
+    /**
+     * The user answered a permission prompt shown by {@link #initialize}.
+     *
+     * @param requestCode
+     *          The request code that was passed to requestPermissions.
+     * @param permissions
+     *          The permissions that were asked for.
+     * @param grantResults
+     *          Whether each permission was granted.
+     */
+    void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults);
+
+    /**
+     * @param knownVersion
+     *          The version of the album list the catalog was last synchronized with (see
+     *          {@link PhotoCatalog#getVersion()}), empty if there isn't one.
+     * @return all of the albums, in the order they should be shown, or
+     *          {@link SourceAlbumList#unchanged} if the source can tell nothing changed since
+     *          knownVersion.
+     * @throws RuntimeException
+     *          If the albums can't be listed.
+     */
+    SourceAlbumList getSourceAlbums(String knownVersion);
+
+    /**
+     * @param album
+     *          One of the albums returned by {@link #getSourceAlbums(String)}.
+     * @param previous
+     *          The copy of the album already in the catalog or null if there isn't one.  Sources
+     *          that can ask for just the photos that changed start from this.
+     * @return
+     *          The album and its photos in the form that is kept in the {@link PhotoCatalog}.
+     * @throws RuntimeException
+     *          If the photos can't be loaded.
+     */
+    CatalogAlbum loadAlbum(SourceAlbum album, CatalogAlbum previous);
+
+    /**
+     * @return how many bytes of feeds have been downloaded so far, 0 for sources that don't
+     *          use the network.
+     */
+    long getTransferredBytes();
+
+    /**
+     * Start telling the listener when the albums change, for sources that can tell.
+     *
+     * @param listener
+     *          Called (outside of the main UI thread) when something changed.
+     */
+    void startWatching(ChangeListener listener);
+
+    /**
+     * Stop telling the listener about changes.
+     */
+    void stopWatching();
+
+    /**
+     * Class to help with callback after the source gets initialized
+     */
+    public static interface InitializedCallback {
+        void callback();
+    }
+
+    /**
+     * Class to help with callback when the albums in the source change.
+     */
+    public static interface ChangeListener {
+        void sourceChanged();
+    }
+}
@@ -0,0 +1,367 @@
+package com.drampulla.gphotoslideshow;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The photos of an album stored as a handful of primitive arrays instead of an object per
+ * photo: the timestamps, the width and height packed into one int, the offsets of the
+ * photo's id, URL and title in one shared blob of UTF-8 bytes and the rows sorted by id.
+ * A photo is just its row number in the table.
+ *
+ * The arrays are laid out one after the other in a single {@link ByteBuffer} in the same
+ * layout they are saved in, so a table read from a memory mapped catalog file uses the
+ * mapped pages directly and each field is only read when it is asked for.  A table built
+ * from photos uses a buffer on the heap.  {@link CatalogPhoto}s are only created on the way
+ * out, when something asks for one.
+ *
+ * A table is never modified once it has been created.
+ */
+public class PhotoTable {
+
+    /**
+     * Bytes used by each photo not counting its strings: a long timestamp, an int of packed
+     * dimensions, three int string offsets and its int row in the id order.
+     */
+    public static final int FIXED_BYTES_PER_PHOTO = 8 + 4 + 3 * 4 + 4;
+
+    /**
+     * Roughly what the JVM adds for the table object and its buffer.
+     */
+    private static final int OBJECT_OVERHEAD_BYTES = 64;
+
+    /**
+     * The strings of each photo in the blob, in this order.
+     */
+    private static final int ID = 0;
+    private static final int URL = 1;
+    private static final int TITLE = 2;
+    private static final int STRINGS_PER_PHOTO = 3;
+
+    /**
+     * Dimensions are packed into 16 bits each, anything bigger is stored as this.
+     */
+    private static final int MAX_DIMENSION = 0xFFFF;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final PhotoTable EMPTY = new PhotoTable(0, ByteBuffer.wrap(new byte[4]));
+
+    private final int size;
+    /**
+     * The arrays, starting at 0: the timestamps, the dimensions (width in the high 16 bits
+     * and height in the low 16 bits), where each string starts in the blob (STRINGS_PER_PHOTO
+     * per photo plus one more for the end of the last string), the rows in order of their id
+     * bytes and then the blob itself.  Only absolute gets are used so the buffer can be
+     * shared between threads.
+     */
+    private final ByteBuffer data;
+    private final int dimensionsStart;
+    private final int offsetsStart;
+    private final int idOrderStart;
+    private final int stringsStart;
+
+    private PhotoTable(int size, ByteBuffer data) {
+        this.size = size;
+        this.data = data;
+        this.dimensionsStart = size * 8;
+        this.offsetsStart = dimensionsStart + size * 4;
+        this.idOrderStart = offsetsStart + (size * STRINGS_PER_PHOTO + 1) * 4;
+        this.stringsStart = idOrderStart + size * 4;
+    }
+
+    /**
+     * @param photos
+     *          The photos, in order.
+     * @return
+     *          A table of the photos (their album ids aren't kept, the table belongs to a
+     *          single album).
+     */
+    public static PhotoTable of(List<CatalogPhoto> photos) {
+        int size = photos.size();
+        if (size == 0) {
+            return EMPTY;
+        }
+        final byte[][] encoded = new byte[size * STRINGS_PER_PHOTO][];
+        int length = 0;
+        for (int i = 0; i < size; i++) {
+            CatalogPhoto photo = photos.get(i);
+            encoded[i * STRINGS_PER_PHOTO + ID] = photo.getId().getBytes(UTF_8);
+            encoded[i * STRINGS_PER_PHOTO + URL] = photo.getUrl().getBytes(UTF_8);
+            encoded[i * STRINGS_PER_PHOTO + TITLE] = photo.getTitle().getBytes(UTF_8);
+        }
+        for (byte[] bytes : encoded) {
+            length += bytes.length;
+        }
+        Integer[] idOrder = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            idOrder[i] = i;
+        }
+        Arrays.sort(idOrder, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                byte[] left = encoded[a * STRINGS_PER_PHOTO + ID];
+                byte[] right = encoded[b * STRINGS_PER_PHOTO + ID];
+                return compareBytes(left, 0, left.length, right);
+            }
+        });
+
+        ByteBuffer data = ByteBuffer.allocate((size * STRINGS_PER_PHOTO + 1) * 4 + size * (8 + 4 + 4) + length);
+        for (CatalogPhoto photo : photos) {
+            data.putLong(photo.getTimestamp());
+        }
+        for (CatalogPhoto photo : photos) {
+            data.putInt(pack(photo.getWidth(), photo.getHeight()));
+        }
+        int offset = 0;
+        for (byte[] bytes : encoded) {
+            data.putInt(offset);
+            offset += bytes.length;
+        }
+        data.putInt(offset);
+        for (Integer row : idOrder) {
+            data.putInt(row);
+        }
+        for (byte[] bytes : encoded) {
+            data.put(bytes);
+        }
+        data.clear();
+        return new PhotoTable(size, data);
+    }
+
+    private static int pack(int width, int height) {
+        return Math.max(0, Math.min(width, MAX_DIMENSION)) << 16 | Math.max(0, Math.min(height, MAX_DIMENSION));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getTimestamp(int index) {
+        checkIndex(index);
+        return data.getLong(index * 8);
+    }
+
+    public int getWidth(int index) {
+        checkIndex(index);
+        return data.getInt(dimensionsStart + index * 4) >>> 16;
+    }
+
+    public int getHeight(int index) {
+        checkIndex(index);
+        return data.getInt(dimensionsStart + index * 4) & MAX_DIMENSION;
+    }
+
+    public String getId(int index) {
+        return getString(index, ID);
+    }
+
+    public String getUrl(int index) {
+        return getString(index, URL);
+    }
+
+    public String getTitle(int index) {
+        return getString(index, TITLE);
+    }
+
+    /**
+     * @param albumId
+     *          The album the table belongs to.
+     * @param index
+     *          The row of the photo.
+     * @return
+     *          A new CatalogPhoto with the details of the photo.
+     */
+    public CatalogPhoto getPhoto(String albumId, int index) {
+        checkIndex(index);
+        int dimensions = data.getInt(dimensionsStart + index * 4);
+        return new CatalogPhoto(albumId, getId(index), getUrl(index), getTitle(index),
+                data.getLong(index * 8), dimensions >>> 16, dimensions & MAX_DIMENSION);
+    }
+
+    /**
+     * Find a photo by its id with a binary search of the rows sorted by id, without decoding
+     * any of the ids.
+     *
+     * @param photoId
+     *          The id of the photo.
+     * @return
+     *          Its row, or -1 if it isn't in the table.
+     */
+    public int indexOfId(String photoId) {
+        byte[] target = photoId.getBytes(UTF_8);
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int row = data.getInt(idOrderStart + middle * 4);
+            int start = stringOffset(row * STRINGS_PER_PHOTO + ID);
+            int cmp = compareBytes(data, stringsStart + start, stringOffset(row * STRINGS_PER_PHOTO + ID + 1) - start, target);
+            if (cmp < 0) {
+                low = middle + 1;
+            } else if (cmp > 0) {
+                high = middle - 1;
+            } else {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compare bytes as unsigned values, shorter first when one is the start of the other.
+     */
+    private static int compareBytes(byte[] left, int start, int length, byte[] right) {
+        return compareBytes(ByteBuffer.wrap(left), start, length, right);
+    }
+
+    private static int compareBytes(ByteBuffer left, int start, int length, byte[] right) {
+        int common = Math.min(length, right.length);
+        for (int j = 0; j < common; j++) {
+            int diff = (left.get(start + j) & 0xFF) - (right[j] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - right.length;
+    }
+
+    private int stringOffset(int which) {
+        return data.getInt(offsetsStart + which * 4);
+    }
+
+    private String getString(int index, int which) {
+        checkIndex(index);
+        int start = stringOffset(index * STRINGS_PER_PHOTO + which);
+        byte[] bytes = new byte[stringOffset(index * STRINGS_PER_PHOTO + which + 1) - start];
+        ByteBuffer strings = data.duplicate();
+        strings.position(stringsStart + start);
+        strings.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Photo " + index + " of " + size);
+        }
+    }
+
+    /**
+     * @return about how much memory the table holds: its objects plus its data, which is on
+     *         the heap or, for a table read from a memory mapped file, in the mapped pages
+     *         (see {@link #isMapped()}).
+     */
+    public long getMemoryBytes() {
+        return OBJECT_OVERHEAD_BYTES + data.capacity();
+    }
+
+    /**
+     * @return how many bytes of string data the table holds.
+     */
+    public int getStringBytes() {
+        return data.capacity() - stringsStart;
+    }
+
+    /**
+     * @return true if the data is in a memory mapped file rather than on the heap.
+     */
+    public boolean isMapped() {
+        return data.isDirect();
+    }
+
+    /**
+     * Write the table as count, string bytes and then the arrays and strings exactly as they
+     * are held in memory (see {@link #read(ByteBuffer)}).
+     *
+     * @param out
+     *          The stream to write to.
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(size);
+        out.writeInt(getStringBytes());
+        if (data.hasArray()) {
+            out.write(data.array(), data.arrayOffset(), data.capacity());
+            return;
+        }
+        ByteBuffer in = data.duplicate();
+        in.clear();
+        byte[] chunk = new byte[8192];
+        while (in.hasRemaining()) {
+            int length = Math.min(chunk.length, in.remaining());
+            in.get(chunk, 0, length);
+            out.write(chunk, 0, length);
+        }
+    }
+
+    /**
+     * Read a table written by {@link #write}.  Nothing is copied, the table keeps a slice of
+     * the buffer (e.g. of a memory mapped file) and reads from it as it is used.
+     *
+     * @param in
+     *          The buffer to read from, its position is moved past the table.
+     * @return
+     *          The table.
+     * @throws IOException
+     *          If the table doesn't make sense.
+     */
+    public static PhotoTable read(ByteBuffer in) throws IOException {
+        int size = in.getInt();
+        int stringBytes = in.getInt();
+        long length = (long) size * FIXED_BYTES_PER_PHOTO + 4 + stringBytes;
+        if (size < 0 || stringBytes < 0 || length > in.remaining()) {
+            throw new IOException("Photo table of " + size + " photos doesn't fit in what is left of the file");
+        }
+        if (size == 0) {
+            in.position(in.position() + (int) length);
+            return EMPTY;
+        }
+        ByteBuffer data = in.slice();
+        data.limit((int) length);
+        data = data.slice();
+        in.position(in.position() + (int) length);
+
+        // a bad offset or row would only show up later as an exception somewhere else, the
+        // check only reads the ints, nothing is copied
+        PhotoTable table = new PhotoTable(size, data);
+        int previous = 0;
+        for (int i = 0; i <= size * STRINGS_PER_PHOTO; i++) {
+            int offset = table.stringOffset(i);
+            if (offset < previous || offset > stringBytes) {
+                throw new IOException("Photo table has a bad string offset");
+            }
+            previous = offset;
+        }
+        if (table.stringOffset(0) != 0 || previous != stringBytes) {
+            throw new IOException("Photo table strings don't add up");
+        }
+        for (int i = 0; i < size; i++) {
+            int row = data.getInt(table.idOrderStart + i * 4);
+            if (row < 0 || row >= size) {
+                throw new IOException("Photo table has a bad row in its id order");
+            }
+        }
+        return table;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PhotoTable)) {
+            return false;
+        }
+        PhotoTable other = (PhotoTable) o;
+        return size == other.size && data.equals(other.data);
+    }
+
+    @Override
+    public int hashCode() {
+        return data.hashCode();
+    }
+}
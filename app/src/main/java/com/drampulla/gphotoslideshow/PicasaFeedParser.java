@@ -0,0 +1,284 @@
+package com.drampulla.gphotoslideshow;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Reads Picasa Web API feeds straight off the network with a pull parser, keeping only what
+ * the slideshow needs.  Each photo goes directly into a {@link CatalogPhoto} and each album
+ * into a {@link SourceAlbum}, nothing else is built along the way (the gdata client builds a
+ * whole tree of objects for every entry, most of which is thrown away).
+ *
+ * The parser has to have namespace processing turned on.
+ */
+public class PicasaFeedParser {
+
+    static final String ATOM_NS = "http://www.w3.org/2005/Atom";
+    static final String GPHOTO_NS = "http://schemas.google.com/photos/2007";
+    static final String MEDIA_NS = "http://search.yahoo.com/mrss/";
+
+    private PicasaFeedParser() {
+    }
+
+    /**
+     * Read the photos in (a page of) an album feed.
+     *
+     * @param parser
+     *          Parser that has been given the feed.
+     * @param albumId
+     *          The album the photos are in.
+     * @param photos
+     *          Where the photos are added, in feed order.  Entries without an id or an image
+     *          URL are skipped.
+     * @return
+     *          How many entries were in the feed, including any that were skipped.
+     * @throws XmlPullParserException
+     *          If the feed isn't well formed.
+     */
+    public static int parseAlbumFeed(XmlPullParser parser, String albumId, List<CatalogPhoto> photos)
+            throws XmlPullParserException, IOException {
+        int rc = 0;
+        for (int event = parser.getEventType(); event != XmlPullParser.END_DOCUMENT; event = parser.next()) {
+            if (isEntry(parser, event)) {
+                rc++;
+                CatalogPhoto photo = readPhoto(parser, albumId);
+                if (photo != null) {
+                    photos.add(photo);
+                }
+            }
+        }
+        return rc;
+    }
+
+    /**
+     * Read just the photo ids of (a page of) an album feed, e.g. one requested with
+     * fields=entry(gphoto:id) to find out which photos were deleted.
+     *
+     * @param parser
+     *          Parser that has been given the feed.
+     * @param ids
+     *          Where the ids are added, in feed order.
+     * @return
+     *          How many entries were in the feed.
+     * @throws XmlPullParserException
+     *          If the feed isn't well formed.
+     */
+    public static int parsePhotoIds(XmlPullParser parser, List<String> ids) throws XmlPullParserException, IOException {
+        int rc = 0;
+        for (int event = parser.getEventType(); event != XmlPullParser.END_DOCUMENT; event = parser.next()) {
+            if (isEntry(parser, event)) {
+                rc++;
+                int entryDepth = parser.getDepth();
+                while (nextInEntry(parser, entryDepth)) {
+                    if (GPHOTO_NS.equals(parser.getNamespace()) && "id".equals(parser.getName())) {
+                        String id = parser.nextText().trim();
+                        if (!id.isEmpty()) {
+                            ids.add(id);
+                        }
+                    }
+                }
+            }
+        }
+        return rc;
+    }
+
+    /**
+     * Read the albums in a user feed.
+     *
+     * @param parser
+     *          Parser that has been given the feed.
+     * @param albums
+     *          Where the albums are added, in feed order.  Entries without an id are skipped.
+     * @return
+     *          How many entries were in the feed, including any that were skipped.
+     * @throws XmlPullParserException
+     *          If the feed isn't well formed.
+     */
+    public static int parseUserFeed(XmlPullParser parser, List<SourceAlbum> albums)
+            throws XmlPullParserException, IOException {
+        int rc = 0;
+        for (int event = parser.getEventType(); event != XmlPullParser.END_DOCUMENT; event = parser.next()) {
+            if (isEntry(parser, event)) {
+                rc++;
+                SourceAlbum album = readAlbum(parser);
+                if (album != null) {
+                    albums.add(album);
+                }
+            }
+        }
+        return rc;
+    }
+
+    /**
+     * @return true if the parser is at the start of an entry of the feed.
+     */
+    private static boolean isEntry(XmlPullParser parser, int event) {
+        return event == XmlPullParser.START_TAG && parser.getDepth() == 2
+                && ATOM_NS.equals(parser.getNamespace()) && "entry".equals(parser.getName());
+    }
+
+    /**
+     * Read an album feed entry, the parser is left at the end of the entry.
+     */
+    private static CatalogPhoto readPhoto(XmlPullParser parser, String albumId) throws XmlPullParserException, IOException {
+        int entryDepth = parser.getDepth();
+        String id = null;
+        String url = null;
+        String title = "";
+        long timestamp = -1;
+        int width = 0;
+        int height = 0;
+        while (nextInEntry(parser, entryDepth)) {
+            String namespace = parser.getNamespace();
+            String name = parser.getName();
+            if (GPHOTO_NS.equals(namespace)) {
+                switch (name) {
+                    case "id":
+                        id = parser.nextText().trim();
+                        break;
+                    case "timestamp":
+                        timestamp = parseLong(parser.nextText(), -1);
+                        break;
+                    case "width":
+                        width = (int) parseLong(parser.nextText(), 0);
+                        break;
+                    case "height":
+                        height = (int) parseLong(parser.nextText(), 0);
+                        break;
+                    default:
+                        break;
+                }
+            } else if (MEDIA_NS.equals(namespace) && "content".equals(name) && url == null) {
+                // the first one is the image itself, any others are videos made from it
+                url = parser.getAttributeValue(null, "url");
+            } else if (ATOM_NS.equals(namespace) && "title".equals(name) && parser.getDepth() == entryDepth + 1) {
+                title = parser.nextText();
+            }
+        }
+        if (id == null || id.isEmpty() || url == null) {
+            return null;
+        }
+        return new CatalogPhoto(albumId, id, url, title, timestamp, width, height);
+    }
+
+    /**
+     * Read a user feed entry, the parser is left at the end of the entry.
+     */
+    private static SourceAlbum readAlbum(XmlPullParser parser) throws XmlPullParserException, IOException {
+        int entryDepth = parser.getDepth();
+        String id = null;
+        String title = "";
+        long updated = 0;
+        int photoCount = SourceAlbum.UNKNOWN_PHOTO_COUNT;
+        while (nextInEntry(parser, entryDepth)) {
+            String namespace = parser.getNamespace();
+            String name = parser.getName();
+            if (GPHOTO_NS.equals(namespace)) {
+                if ("id".equals(name)) {
+                    id = parser.nextText().trim();
+                } else if ("numphotos".equals(name)) {
+                    photoCount = (int) parseLong(parser.nextText(), SourceAlbum.UNKNOWN_PHOTO_COUNT);
+                }
+            } else if (ATOM_NS.equals(namespace) && parser.getDepth() == entryDepth + 1) {
+                if ("title".equals(name)) {
+                    title = parser.nextText();
+                } else if ("updated".equals(name)) {
+                    updated = parseTime(parser.nextText().trim());
+                }
+            }
+        }
+        if (id == null || id.isEmpty()) {
+            return null;
+        }
+        return new SourceAlbum(id, title, updated, photoCount);
+    }
+
+    /**
+     * Move to the next start tag inside the entry.
+     *
+     * @return false once the end of the entry has been reached.
+     */
+    private static boolean nextInEntry(XmlPullParser parser, int entryDepth) throws XmlPullParserException, IOException {
+        while (true) {
+            int event = parser.next();
+            if (event == XmlPullParser.START_TAG) {
+                return true;
+            }
+            if (event == XmlPullParser.END_TAG && parser.getDepth() == entryDepth) {
+                return false;
+            }
+            if (event == XmlPullParser.END_DOCUMENT) {
+                throw new XmlPullParserException("Feed ended in the middle of an entry");
+            }
+        }
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Parse an RFC 3339 time as used by Atom, e.g. "2017-03-05T19:20:31.000Z" or
+     * "2017-03-05T14:20:31-05:00".  The fraction of a second is optional.
+     *
+     * @return
+     *          Milliseconds since the epoch.
+     * @throws XmlPullParserException
+     *          If the time isn't in that format.
+     */
+    static long parseTime(String value) throws XmlPullParserException {
+        try {
+            Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"), Locale.US);
+            calendar.clear();
+            calendar.set(Integer.parseInt(value.substring(0, 4)), Integer.parseInt(value.substring(5, 7)) - 1,
+                    Integer.parseInt(value.substring(8, 10)), Integer.parseInt(value.substring(11, 13)),
+                    Integer.parseInt(value.substring(14, 16)), Integer.parseInt(value.substring(17, 19)));
+            int pos = 19;
+            int millis = 0;
+            if (pos < value.length() && value.charAt(pos) == '.') {
+                int start = ++pos;
+                while (pos < value.length() && Character.isDigit(value.charAt(pos))) {
+                    pos++;
+                }
+                // only the first three digits matter
+                String fraction = (value.substring(start, pos) + "00").substring(0, 3);
+                millis = Integer.parseInt(fraction);
+            }
+            long rc = calendar.getTimeInMillis() + millis;
+            char zone = value.charAt(pos);
+            if (zone == '+' || zone == '-') {
+                int offsetMinutes = Integer.parseInt(value.substring(pos + 1, pos + 3)) * 60
+                        + Integer.parseInt(value.substring(pos + 4, pos + 6));
+                rc -= (zone == '+' ? 1 : -1) * offsetMinutes * 60000L;
+            } else if (zone != 'Z' && zone != 'z') {
+                throw new XmlPullParserException("Unknown time zone in " + value);
+            }
+            return rc;
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            throw new XmlPullParserException("Unable to parse time " + value);
+        }
+    }
+
+    /**
+     * @param millis
+     *          Milliseconds since the epoch.
+     * @return
+     *          The time in RFC 3339 format (in UTC), e.g. for the updated-min parameter.
+     */
+    static String formatTime(long millis) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(millis);
+    }
+}
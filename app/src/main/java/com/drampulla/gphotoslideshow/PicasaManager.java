@@ -11,31 +11,35 @@ import android.os.Bundle;
 import android.preference.PreferenceManager;
 import android.support.v4.app.ActivityCompat;
 import android.util.Log;
+import android.util.Xml;
 
 import com.google.gdata.client.AuthTokenFactory;
 import com.google.gdata.client.GoogleAuthTokenFactory;
 import com.google.gdata.client.GoogleService;
+import com.google.gdata.client.Service;
 import com.google.gdata.client.photos.PicasawebService;
-import com.google.gdata.data.photos.AlbumEntry;
-import com.google.gdata.data.photos.AlbumFeed;
-import com.google.gdata.data.photos.GphotoEntry;
-import com.google.gdata.data.photos.PhotoEntry;
-import com.google.gdata.data.photos.UserFeed;
 import com.google.gdata.util.AuthenticationException;
+import com.google.gdata.util.NotModifiedException;
 import com.google.gdata.util.ServiceException;
 
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
 import java.io.IOException;
-import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class handles all interactions with Google Photos via the "Picasa Web API".  It is
  * required to be initialized in the main activities onCreate method so that it has the chance
  * to prompt the user for permissions necessary.
  */
-public class PicasaManager {
+public class PicasaManager implements PhotoSource {
 
     /**
      * Default logger.
@@ -48,6 +52,16 @@ public class PicasaManager {
     private static final String URL_PREFIX = "https://picasaweb.google.com/data/feed/api/user/";
     private static final String PICASA_OAUTH_TYPE = "oauth2:https://picasaweb.google.com/data/";
 
+    /**
+     * How long to wait for the server when requesting a feed.
+     */
+    public static final int FEED_TIMEOUT_MILLIS = 30000;
+
+    /**
+     * How many photos to request in each page of an album feed.
+     */
+    private static final int FEED_PAGE_SIZE = 500;
+
     /**
      * The google provided PicasawebService that does most of the work for me.
      */
@@ -62,6 +76,11 @@ public class PicasaManager {
      */
     private SharedPreferences sharedPreferences;
 
+    /**
+     * How many bytes of feed XML have been downloaded so far.
+     */
+    private final AtomicLong transferredBytes = new AtomicLong();
+
     /**
      * Initialize the service by finding the right username and getting appropriate
      * OAuth keys from Google.
@@ -73,6 +92,7 @@ public class PicasaManager {
      *          The method that should be called when the AccountManager authorizes
      *          this application (this happens outside of the main UI thread).
      */
+    @Override
     public void initialize(final Activity mainActivity, final InitializedCallback initializedCallback) {
 
         if (picasawebService != null) {
@@ -101,9 +121,9 @@ public class PicasaManager {
 
             // find the account associated with gmail
             Account targetAccount = null;
-            LOGGER.v("Account length:" + accounts.length);
+            LOGGER.v("Account length:%d", accounts.length);
             for (Account a : accounts) {
-                LOGGER.v("Account : " + a.name + ", " + a.type + ", " + a.describeContents());
+                LOGGER.v("Account : %s, %s, %s", a.name, a.type, a.describeContents());
                 if (a.name.endsWith("gmail.com")) {
                     targetAccount = a;
                 }
@@ -113,7 +133,7 @@ public class PicasaManager {
                 throw new RuntimeException("PicasaManager is unable to find any accounts on this system");
             }
 
-            LOGGER.d("Using account " + targetAccount.name);
+            LOGGER.d("Using account %s", targetAccount.name);
 
             this.username = targetAccount.name;
             AccountManagerCallback<Bundle> cb = new AccountManagerCallback<Bundle>() {
@@ -126,7 +146,7 @@ public class PicasaManager {
                         String authToken = accountManagerFuture.getResult().getString(AccountManager.KEY_AUTHTOKEN);
                         String accountName = accountManagerFuture.getResult().getString(AccountManager.KEY_ACCOUNT_NAME);
                         String accountType = accountManagerFuture.getResult().getString(AccountManager.KEY_ACCOUNT_TYPE);
-                        LOGGER.v("Got OAuth token for " + accountName + " -- " + accountType + " -- Token=" + authToken);
+                        LOGGER.v("Got OAuth token for %s -- %s -- Token=%s", accountName, accountType, authToken);
 
                         picasawebService = new PicasawebService("drampulla.example.com.helloworld");
                         picasawebService.setAuthTokenFactory(new GoogleAuthTokenFactory(PICASA_OAUTH_TYPE, "drampulla.example.com.helloworld", new AuthTokenFactory.TokenListener() {
@@ -135,6 +155,8 @@ public class PicasaManager {
                                 LOGGER.d("Auth token changed");
                             }
                         }));
+                        picasawebService.setConnectTimeout(FEED_TIMEOUT_MILLIS);
+                        picasawebService.setReadTimeout(FEED_TIMEOUT_MILLIS);
                         //picasawebService.setAuthSubToken(accountManagerFuture.getResult().getString(AccountManager.KEY_AUTHTOKEN));
 
                         new AsyncTask<Void, Void, Void>() {
@@ -159,85 +181,209 @@ public class PicasaManager {
         }
     }
 
+    @Override
+    public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults) {
+        // the accounts are read right away, getAuthToken prompts the user itself
+    }
+
 
     /**
+     * Request a feed.  The response is read with {@link #newParser} and the request has to be
+     * ended once that is done.
      *
-     * @return all of the albums available via picasa API
+     * @param feedUrl
+     *          The feed to request.
+     * @param etag
+     *          Sent as If-None-Match so nothing comes back if the feed hasn't changed, may be
+     *          null or empty.
+     * @return
+     *          The request, with the response ready to be read.
+     * @throws NotModifiedException
+     *          If the feed still matches etag.
      */
-    public List<AlbumEntry> getAlbums() {
-        List<AlbumEntry> rc = new ArrayList<>();
+    private Service.GDataRequest openFeed(URL feedUrl, String etag) throws IOException, ServiceException {
+        Service.GDataRequest request = picasawebService.createFeedRequest(feedUrl);
+        if (etag != null && !etag.isEmpty()) {
+            request.setEtag(etag);
+        }
+        try {
+            request.execute();
+        } catch (IOException | ServiceException | RuntimeException e) {
+            request.end();
+            throw e;
+        }
+        return request;
+    }
+
+    /**
+     * @return a pull parser over the response of the request, counting the bytes read.
+     */
+    private XmlPullParser newParser(Service.GDataRequest request) throws IOException, XmlPullParserException {
+        XmlPullParser parser = Xml.newPullParser();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+        parser.setInput(new CountingInputStream(request.getResponseStream(), transferredBytes), null);
+        return parser;
+    }
 
+    /**
+     * @return the URL of the feed of the photos in an album.
+     */
+    private String albumFeedUrl(String albumId) {
+        return URL_PREFIX + username + "/albumid/" + albumId;
+    }
+
+    /**
+     * The user feed's ETag is used as the version, so when nothing in any album has changed
+     * the server answers with an empty "304 Not Modified" instead of the whole feed.
+     */
+    @Override
+    public SourceAlbumList getSourceAlbums(String knownVersion) {
         long start = System.currentTimeMillis();
+        List<SourceAlbum> rc = new ArrayList<>();
+        String etag;
         try {
-            UserFeed uf = picasawebService.getFeed(new URL(URL_PREFIX + username), UserFeed.class);
-            for (GphotoEntry ge : uf.getEntries()) {
-                AlbumEntry ae = new AlbumEntry(ge);
-                rc.add(ae);
-
+            Service.GDataRequest request = openFeed(new URL(URL_PREFIX + username + "?kind=album"), knownVersion);
+            try {
+                PicasaFeedParser.parseUserFeed(newParser(request), rc);
+                etag = request.getResponseHeader("ETag");
+            } finally {
+                request.end();
             }
-
-            LOGGER.v(String.format("Got all of the albums from Picasa in %dms.", System.currentTimeMillis()-start));
-        } catch (IOException |ServiceException e) {
-            LOGGER.wtf("Failed to get the album details because " + e.getMessage(), e);
+        } catch (NotModifiedException e) {
+            LOGGER.d("Album list not modified, checked in %dms.", System.currentTimeMillis() - start);
+            return SourceAlbumList.unchanged(knownVersion);
+        } catch (IOException | ServiceException | XmlPullParserException e) {
+            LOGGER.e("Failed to get the album details because " + e.getMessage(), e);
             throw new RuntimeException("Failed to get the album details", e);
         }
 
-        return rc;
-
+        LOGGER.v("Got all of the albums from Picasa in %dms.", System.currentTimeMillis() - start);
+        return new SourceAlbumList(rc, etag);
     }
 
     /**
-     *
-     * @return Just the names of the albums available.  This is useful for displaying in a selection list.
+     * If the album was loaded before only the photos updated since then are requested (with
+     * updated-min) along with the ids of all the photos (to find the deleted ones), falling
+     * back to the whole album if that doesn't add up.
      */
-    public List<String> getAlbumNames() {
-        List<String> rc = new ArrayList<>();
-        for (AlbumEntry ae : getAlbums()) {
-            rc.add(ae.getName());
+    @Override
+    public CatalogAlbum loadAlbum(SourceAlbum album, CatalogAlbum previous) {
+        if (previous != null) {
+            CatalogAlbum rc = loadAlbumChanges(album, previous);
+            if (rc != null) {
+                return rc;
+            }
+        }
+        try {
+            return new CatalogAlbum(album.getId(), album.getTitle(), album.getUpdated(), loadPhotos(album.getId(), ""));
+        } catch (IOException | ServiceException | XmlPullParserException e) {
+            LOGGER.e("Failed to get photos because " + e.getMessage(), e);
+            throw new RuntimeException("Failed to get the photos", e);
         }
-        return rc;
     }
 
     /**
      *
-     * @param ae
-     *      The album to retrieve the photo details from
+     * @param album
+     *          The album to retrieve the changed photos from.
+     * @param previous
+     *          The copy of the album that is in the catalog.
      * @return
-     *      List of photo details of the photos in the specified album.
+     *          The album with the photos updated since previous applied to it, or null if that
+     *          isn't possible and the whole album has to be loaded.
      */
-    public List<PhotoEntry> getPhotoEntries(AlbumEntry ae) {
-        List<PhotoEntry> rc = new ArrayList<>();
+    private CatalogAlbum loadAlbumChanges(SourceAlbum album, CatalogAlbum previous) {
         long start = System.currentTimeMillis();
         try {
-            AlbumFeed feed = ae.getFeed();
-            for (GphotoEntry ge : feed.getEntries()) {
-                rc.add(new PhotoEntry(ge));
+            List<CatalogPhoto> changed = loadPhotos(album.getId(),
+                    "&updated-min=" + URLEncoder.encode(PicasaFeedParser.formatTime(previous.getUpdated()), "UTF-8"));
+            Set<String> ids = loadPhotoIds(album.getId());
+            CatalogAlbum rc = previous.withChanges(album.getTitle(), album.getUpdated(), changed, ids);
+            if (rc == null) {
+                LOGGER.d("Changes to %s don't add up, so loading all of it.", album.getTitle());
+            } else if (Logger.isLoggable(Logger.VERBOSE)) {
+                LOGGER.v(String.format("Applied %d changed photos to %s in %dms.", changed.size(), album.getTitle(),
+                        System.currentTimeMillis() - start));
             }
-            LOGGER.v(String.format("Got all of the photo entries from Picasa in %dms.", System.currentTimeMillis()-start));
-        } catch (IOException | ServiceException e) {
-            LOGGER.wtf("Failed to get photos because " + e.getMessage(), e);
-            throw new RuntimeException("Failed to get the photos", e);
+            return rc;
+        } catch (IOException | ServiceException | XmlPullParserException e) {
+            LOGGER.w("Failed to get the changed photos, so loading the whole album", e);
+            return null;
         }
-
-        return rc;
     }
 
     /**
+     * Read the photos of an album a page at a time, so no single response (or parse) is huge.
      *
-     * @return a SlideshowIterator to walk over the albums and photos within those albums
-     *
-     * @throws MalformedURLException
-     * @throws IOException
-     * @throws ServiceException
+     * @param albumId
+     *          The album to read.
+     * @param query
+     *          More parameters for the feed URL ("&amp;name=value"), may be empty.
+     * @return
+     *          The photos, in feed order.
      */
-    public SlideshowIterator createSlideshowIterator() throws MalformedURLException, IOException, ServiceException {
-        return new SlideshowIterator(sharedPreferences, picasawebService.getFeed(new URL(URL_PREFIX + username), UserFeed.class));
+    private List<CatalogPhoto> loadPhotos(String albumId, String query) throws IOException, ServiceException, XmlPullParserException {
+        long start = System.currentTimeMillis();
+        List<CatalogPhoto> rc = new ArrayList<>();
+        int pages = 0;
+        for (int startIndex = 1; ; startIndex += FEED_PAGE_SIZE) {
+            Service.GDataRequest request = openFeed(new URL(albumFeedUrl(albumId) + "?kind=photo&start-index=" + startIndex
+                    + "&max-results=" + FEED_PAGE_SIZE + query), null);
+            int entries;
+            try {
+                entries = PicasaFeedParser.parseAlbumFeed(newParser(request), albumId, rc);
+            } finally {
+                request.end();
+            }
+            pages++;
+            if (entries < FEED_PAGE_SIZE) {
+                break;
+            }
+        }
+        if (Logger.isLoggable(Logger.VERBOSE)) {
+            LOGGER.v(String.format("Got %d photos in %d pages from Picasa in %dms.", rc.size(), pages,
+                    System.currentTimeMillis() - start));
+        }
+        return rc;
     }
 
     /**
-     * Class to help with callback after the account manager gets initialized
+     * Read the ids of every photo in an album, which is a small fraction of the whole feed.
+     *
+     * @param albumId
+     *          The album to read.
+     * @return
+     *          The photo ids.
      */
-    public static interface InitializedCallback {
-        void callback();
+    private Set<String> loadPhotoIds(String albumId) throws IOException, ServiceException, XmlPullParserException {
+        List<String> rc = new ArrayList<>();
+        for (int startIndex = 1; ; startIndex += FEED_PAGE_SIZE) {
+            Service.GDataRequest request = openFeed(new URL(albumFeedUrl(albumId) + "?kind=photo&fields="
+                    + URLEncoder.encode("entry(gphoto:id)", "UTF-8") + "&start-index=" + startIndex
+                    + "&max-results=" + FEED_PAGE_SIZE), null);
+            int entries;
+            try {
+                entries = PicasaFeedParser.parsePhotoIds(newParser(request), rc);
+            } finally {
+                request.end();
+            }
+            if (entries < FEED_PAGE_SIZE) {
+                return new HashSet<>(rc);
+            }
+        }
+    }
+
+    @Override
+    public long getTransferredBytes() {
+        return transferredBytes.get();
+    }
+
+    @Override
+    public void startWatching(ChangeListener listener) {
+        // Picasa can't tell us when something changes, the catalog is synced when the app starts
+    }
+
+    @Override
+    public void stopWatching() {
     }
 }
@@ -0,0 +1,146 @@
+package com.drampulla.gphotoslideshow;
+
+import android.content.SharedPreferences;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers where the slideshow is without writing to storage on every slide.  Updates only
+ * change what is held in memory; the latest position is written out every
+ * {@link #FLUSH_INTERVAL_SECONDS} seconds (if it changed) and whenever {@link #flush()} is
+ * called, e.g. when the activity is paused.  At most FLUSH_INTERVAL_SECONDS worth of progress
+ * is lost if the app is killed.  Call {@link #close()} once the store isn't needed any more
+ * to stop the periodic writes.
+ */
+public class PositionStore {
+
+    /**
+     * Default logger.
+     */
+    private static final Logger LOGGER = new Logger(PositionStore.class);
+
+    /**
+     * How often a changed position is written out.
+     */
+    private static final long FLUSH_INTERVAL_SECONDS = 30;
+
+    /**
+     * Scheduling executor.
+     */
+    private static final ScheduledExecutorService EXECUTOR = Executors.newScheduledThreadPool(1);
+
+    private final SharedPreferences sharedPreferences;
+    /**
+     * The periodic flush, cancelled by {@link #close()}.
+     */
+    private final ScheduledFuture<?> flushFuture;
+
+    /**
+     * The latest position, not necessarily written out yet.
+     */
+    private int listIndex;
+    private SlideshowPosition position;
+    private boolean dirty;
+
+    /**
+     *
+     * @param sharedPreferences
+     *          Where the position is written.
+     */
+    public PositionStore(SharedPreferences sharedPreferences) {
+        this.sharedPreferences = sharedPreferences;
+        this.listIndex = sharedPreferences.getInt(PreferenceConstants.SLIDESHOW_INDEX, 0);
+        this.position = SlideshowPosition.decode(sharedPreferences.getString(PreferenceConstants.SLIDESHOW_POSITION, null));
+
+        this.flushFuture = EXECUTOR.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return the saved listIndex.
+     */
+    public synchronized int getListIndex() {
+        return listIndex;
+    }
+
+    /**
+     * @return the saved position, may be null if there isn't one.
+     */
+    public synchronized SlideshowPosition getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the seed of the shuffled order the saved position is in, or null if the
+     *         slideshow hasn't been shuffled yet.
+     */
+    public Long getShuffleSeed() {
+        if (!sharedPreferences.contains(PreferenceConstants.SHUFFLE_SEED)) {
+            return null;
+        }
+        return sharedPreferences.getLong(PreferenceConstants.SHUFFLE_SEED, 0);
+    }
+
+    /**
+     * Save the seed of a new shuffled order.  This is written right away since it only
+     * changes when shuffle is turned on.
+     *
+     * @param seed
+     *          The seed.
+     */
+    public void setShuffleSeed(long seed) {
+        sharedPreferences.edit().putLong(PreferenceConstants.SHUFFLE_SEED, seed).apply();
+    }
+
+    /**
+     * Remember a new position.  This never touches storage.
+     *
+     * @param listIndex
+     *          How many pictures into the slideshow we are.
+     * @param position
+     *          The photo being displayed.
+     */
+    public synchronized void update(int listIndex, SlideshowPosition position) {
+        this.listIndex = listIndex;
+        this.position = position;
+        this.dirty = true;
+    }
+
+    /**
+     * Write the latest position out if it has changed since the last time.
+     */
+    public void flush() {
+        int flushIndex;
+        SlideshowPosition flushPosition;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            flushIndex = listIndex;
+            flushPosition = position;
+            dirty = false;
+        }
+
+        // apply() hands the disk write to the system in the background
+        sharedPreferences.edit()
+                .putInt(PreferenceConstants.SLIDESHOW_INDEX, flushIndex)
+                .putString(PreferenceConstants.SLIDESHOW_POSITION, flushPosition == null ? null : flushPosition.encode())
+                .apply();
+        LOGGER.v("Saved index=%d", flushIndex);
+    }
+
+    /**
+     * Write the latest position out and stop the periodic writes.
+     */
+    public void close() {
+        flushFuture.cancel(false);
+        flush();
+    }
+}
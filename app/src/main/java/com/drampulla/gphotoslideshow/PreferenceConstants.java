@@ -8,6 +8,8 @@ public interface PreferenceConstants {
 
     String DISPLAY_INTERVAL_KEY = "display_interval";
     String SLIDESHOW_INDEX = "slideshow_index";
+    String SLIDESHOW_POSITION = "slideshow_position";
+    String SHUFFLE_SEED = "slideshow_shuffle_seed";
     String ANIMATION_TYPE = "animation_type";
 
     String SHOW_TIME = "showTimePreference";
@@ -15,5 +17,24 @@ public interface PreferenceConstants {
     String SHOW_PHOTO_DESCRIPTION = "showPhotoDescriptionPreference";
     String INCLUDE_REGEX = "includeAlbumRegex";
     String EXCLUDE_REGEX = "excludeAlbumRegex";
+    String PREFETCH_AHEAD = "prefetchAhead";
+    String PREFETCH_BEHIND = "prefetchBehind";
+    String IMAGE_CACHE_SIZE = "imageCacheSizeMb";
+    String FEED_LOAD_CONCURRENCY = "feedLoadConcurrency";
+    String SHUFFLE = "shufflePreference";
+    String PLAYLIST = "playlist";
+    String PLAYLIST_START_DATE = "playlistStartDate";
+    String PLAYLIST_END_DATE = "playlistEndDate";
+    String PHOTO_SOURCE = "photoSource";
+    String LOCAL_PHOTO_DIRECTORY = "localPhotoDirectory";
+    String SHOW_PERF_OVERLAY = "showPerfOverlayPreference";
+    String LOG_LEVEL = "logLevel";
+    String QUIET_HOURS_START = "quietHoursStart";
+    String QUIET_HOURS_END = "quietHoursEnd";
+    String REDUCE_ON_BATTERY = "reduceOnBatteryPreference";
+    String CATALOG_REFRESH_MINUTES = "catalogRefreshMinutes";
+    String IMAGE_BANDWIDTH_LIMIT = "imageBandwidthLimitKbps";
+    String WARM_CACHE_START = "warmCacheStart";
+    String WARM_CACHE_END = "warmCacheEnd";
 
 }
@@ -0,0 +1,135 @@
+package com.drampulla.gphotoslideshow;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * A time of day when the slideshow should stop, e.g. 22:00 to 07:00 so a photo frame isn't
+ * downloading photos to a dark room all night.  The quiet time can run past midnight.
+ *
+ * The same kind of window is used for the off-peak hours the {@link CacheWarmer} downloads in.
+ */
+public class QuietHours {
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    /**
+     * Minutes after midnight, start is inclusive and end is exclusive.
+     */
+    private final int startMinute;
+    private final int endMinute;
+
+    /**
+     *
+     * @param startMinute
+     *          When the quiet time starts, in minutes after midnight.
+     * @param endMinute
+     *          When the quiet time ends, in minutes after midnight.  If this is the same as
+     *          the start there are no quiet hours.
+     */
+    public QuietHours(int startMinute, int endMinute) {
+        this.startMinute = startMinute;
+        this.endMinute = endMinute;
+    }
+
+    /**
+     * @param start
+     *          When the quiet time starts, "HH:mm".
+     * @param end
+     *          When the quiet time ends, "HH:mm".
+     * @return
+     *          The quiet hours, or null if either time is empty.
+     * @throws IllegalArgumentException
+     *          If a time isn't in the right format.
+     */
+    public static QuietHours parse(String start, String end) {
+        if (start == null || end == null || start.trim().isEmpty() || end.trim().isEmpty()) {
+            return null;
+        }
+        return new QuietHours(parseTime(start.trim()), parseTime(end.trim()));
+    }
+
+    static int parseTime(String value) {
+        int colon = value.indexOf(':');
+        try {
+            int hours = Integer.parseInt(colon < 0 ? value : value.substring(0, colon));
+            int minutes = colon < 0 ? 0 : Integer.parseInt(value.substring(colon + 1));
+            if (hours < 0 || hours > 24 || minutes < 0 || minutes > 59 || hours * 60 + minutes > MINUTES_PER_DAY) {
+                throw new IllegalArgumentException("Time isn't between 00:00 and 24:00: " + value);
+            }
+            return (hours * 60 + minutes) % MINUTES_PER_DAY;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Time isn't in HH:mm format: " + value, e);
+        }
+    }
+
+    /**
+     * @return how many minutes of each day are quiet.
+     */
+    public int getMinutes() {
+        return (endMinute - startMinute + MINUTES_PER_DAY) % MINUTES_PER_DAY;
+    }
+
+    /**
+     * @param minuteOfDay
+     *          Minutes after midnight.
+     * @return true if the slideshow should be quiet then.
+     */
+    public boolean isQuiet(int minuteOfDay) {
+        if (startMinute <= endMinute) {
+            return minuteOfDay >= startMinute && minuteOfDay < endMinute;
+        }
+        // runs past midnight
+        return minuteOfDay >= startMinute || minuteOfDay < endMinute;
+    }
+
+    /**
+     * @param now
+     *          Milliseconds since the epoch.
+     * @param zone
+     *          The local time zone.
+     * @return true if the slideshow should be quiet at that time.
+     */
+    public boolean isQuiet(long now, TimeZone zone) {
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.setTimeInMillis(now);
+        return isQuiet(calendar.get(Calendar.HOUR_OF_DAY) * 60 + calendar.get(Calendar.MINUTE));
+    }
+
+    /**
+     * @param now
+     *          Milliseconds since the epoch.
+     * @param zone
+     *          The local time zone.
+     * @return
+     *          The next time after now that the quiet time starts or ends.
+     */
+    public long nextChange(long now, TimeZone zone) {
+        return nextTime(now, zone, isQuiet(now, zone) ? endMinute : startMinute);
+    }
+
+    /**
+     * @param now
+     *          Milliseconds since the epoch.
+     * @param zone
+     *          The local time zone.
+     * @return
+     *          The next time after now that the quiet time ends, e.g. to wake the screen up.
+     */
+    public long nextEnd(long now, TimeZone zone) {
+        return nextTime(now, zone, endMinute);
+    }
+
+    private static long nextTime(long now, TimeZone zone, int minuteOfDay) {
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.setTimeInMillis(now);
+        calendar.set(Calendar.HOUR_OF_DAY, minuteOfDay / 60);
+        calendar.set(Calendar.MINUTE, minuteOfDay % 60);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        if (calendar.getTimeInMillis() <= now) {
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        return calendar.getTimeInMillis();
+    }
+}
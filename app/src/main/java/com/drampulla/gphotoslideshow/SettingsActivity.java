@@ -98,6 +98,9 @@ public class SettingsActivity extends AppCompatPreferenceActivity {
                 break;
             case PreferenceConstants.SHOW_TIME:
             case PreferenceConstants.SHOW_PHOTO_DESCRIPTION:
+            case PreferenceConstants.SHUFFLE:
+            case PreferenceConstants.SHOW_PERF_OVERLAY:
+            case PreferenceConstants.REDUCE_ON_BATTERY:
                 prefValue = sharedPreferences.getBoolean(preference.getKey(), false);
                 break;
             case PreferenceConstants.ANIMATION_TYPE:
@@ -105,6 +108,22 @@ public class SettingsActivity extends AppCompatPreferenceActivity {
             case PreferenceConstants.INCLUDE_REGEX:
             case PreferenceConstants.EXCLUDE_REGEX:
             case PreferenceConstants.TIME_FORMAT:
+            case PreferenceConstants.PREFETCH_AHEAD:
+            case PreferenceConstants.PREFETCH_BEHIND:
+            case PreferenceConstants.IMAGE_CACHE_SIZE:
+            case PreferenceConstants.IMAGE_BANDWIDTH_LIMIT:
+            case PreferenceConstants.FEED_LOAD_CONCURRENCY:
+            case PreferenceConstants.CATALOG_REFRESH_MINUTES:
+            case PreferenceConstants.PLAYLIST:
+            case PreferenceConstants.PLAYLIST_START_DATE:
+            case PreferenceConstants.PLAYLIST_END_DATE:
+            case PreferenceConstants.PHOTO_SOURCE:
+            case PreferenceConstants.LOCAL_PHOTO_DIRECTORY:
+            case PreferenceConstants.LOG_LEVEL:
+            case PreferenceConstants.QUIET_HOURS_START:
+            case PreferenceConstants.QUIET_HOURS_END:
+            case PreferenceConstants.WARM_CACHE_START:
+            case PreferenceConstants.WARM_CACHE_END:
                 prefValue = sharedPreferences.getString(preference.getKey(), "");
                 break;
             default:
@@ -177,11 +196,30 @@ public class SettingsActivity extends AppCompatPreferenceActivity {
             // guidelines.
             bindPreferenceSummaryToValue(findPreference(PreferenceConstants.ANIMATION_TYPE));
             bindPreferenceSummaryToValue(findPreference(PreferenceConstants.DISPLAY_INTERVAL_KEY));
+            bindPreferenceSummaryToValue(findPreference(PreferenceConstants.QUIET_HOURS_START));
+            bindPreferenceSummaryToValue(findPreference(PreferenceConstants.QUIET_HOURS_END));
+            bindPreferenceSummaryToValue(findPreference(PreferenceConstants.REDUCE_ON_BATTERY));
             bindPreferenceSummaryToValue(findPreference(PreferenceConstants.SHOW_TIME));
             bindPreferenceSummaryToValue(findPreference(PreferenceConstants.TIME_FORMAT));
             bindPreferenceSummaryToValue(findPreference(PreferenceConstants.SHOW_PHOTO_DESCRIPTION));
+            bindPreferenceSummaryToValue(findPreference(PreferenceConstants.SHUFFLE));
+            bindPreferenceSummaryToValue(findPreference(PreferenceConstants.PLAYLIST));
+            bindPreferenceSummaryToValue(findPreference(PreferenceConstants.PLAYLIST_START_DATE));
+            bindPreferenceSummaryToValue(findPreference(PreferenceConstants.PLAYLIST_END_DATE));
+            bindPreferenceSummaryToValue(findPreference(PreferenceConstants.PHOTO_SOURCE));
+            bindPreferenceSummaryToValue(findPreference(PreferenceConstants.LOCAL_PHOTO_DIRECTORY));
+            bindPreferenceSummaryToValue(findPreference(PreferenceConstants.SHOW_PERF_OVERLAY));
             bindPreferenceSummaryToValue(findPreference(PreferenceConstants.INCLUDE_REGEX));
             bindPreferenceSummaryToValue(findPreference(PreferenceConstants.EXCLUDE_REGEX));
+            bindPreferenceSummaryToValue(findPreference(PreferenceConstants.PREFETCH_AHEAD));
+            bindPreferenceSummaryToValue(findPreference(PreferenceConstants.PREFETCH_BEHIND));
+            bindPreferenceSummaryToValue(findPreference(PreferenceConstants.IMAGE_CACHE_SIZE));
+            bindPreferenceSummaryToValue(findPreference(PreferenceConstants.IMAGE_BANDWIDTH_LIMIT));
+            bindPreferenceSummaryToValue(findPreference(PreferenceConstants.WARM_CACHE_START));
+            bindPreferenceSummaryToValue(findPreference(PreferenceConstants.WARM_CACHE_END));
+            bindPreferenceSummaryToValue(findPreference(PreferenceConstants.FEED_LOAD_CONCURRENCY));
+            bindPreferenceSummaryToValue(findPreference(PreferenceConstants.CATALOG_REFRESH_MINUTES));
+            bindPreferenceSummaryToValue(findPreference(PreferenceConstants.LOG_LEVEL));
         }
 
         @Override
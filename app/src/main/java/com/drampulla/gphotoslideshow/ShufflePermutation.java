@@ -0,0 +1,133 @@
+package com.drampulla.gphotoslideshow;
+
+/**
+ * A seeded shuffle of the numbers [0, size) that never has to store the shuffled order.
+ *
+ * The numbers are run through a small Feistel network over the smallest power of two
+ * (with an even number of bits) that holds size.  A Feistel network is always a bijection,
+ * so whenever the result lands outside of [0, size) it is simply run through again
+ * ("cycle walking") until it lands inside.  The domain is less than 4 times size, so on
+ * average only a few rounds are needed and both directions are O(1) in time and memory.
+ *
+ * The same size and seed always give the same order, so a shuffled slideshow can be
+ * resumed just by remembering the seed and how far into it we are.
+ */
+public class ShufflePermutation {
+
+    /**
+     * Number of Feistel rounds.  Four is plenty to make the order look random.
+     */
+    private static final int ROUNDS = 4;
+
+    private final int size;
+    private final long seed;
+
+    /**
+     * Number of bits in each half of the Feistel domain.
+     */
+    private final int halfBits;
+    private final int halfMask;
+
+    /**
+     *
+     * @param size
+     *          How many numbers to shuffle.
+     * @param seed
+     *          Picks which shuffle.
+     */
+    public ShufflePermutation(int size, long seed) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size must not be negative: " + size);
+        }
+        this.size = size;
+        this.seed = seed;
+
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, size - 1));
+        this.halfBits = Math.max(1, (bits + 1) / 2);
+        this.halfMask = (1 << halfBits) - 1;
+    }
+
+    /**
+     * @return how many numbers are being shuffled.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the seed for this shuffle.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @param index
+     *          A position in the shuffled order, 0 to size - 1.
+     * @return
+     *          The number at that position.
+     */
+    public int apply(int index) {
+        checkIndex(index);
+        int value = index;
+        do {
+            value = encrypt(value);
+        } while (value >= size);
+        return value;
+    }
+
+    /**
+     * @param value
+     *          A number from 0 to size - 1.
+     * @return
+     *          The position of that number in the shuffled order, so that
+     *          apply(inverse(value)) == value.
+     */
+    public int inverse(int value) {
+        checkIndex(value);
+        int index = value;
+        do {
+            index = decrypt(index);
+        } while (index >= size);
+        return index;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " is not in [0, " + size + ")");
+        }
+    }
+
+    private int encrypt(int value) {
+        int left = value >>> halfBits;
+        int right = value & halfMask;
+        for (int round = 0; round < ROUNDS; round++) {
+            int next = left ^ roundFunction(round, right);
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+
+    private int decrypt(int value) {
+        int left = value >>> halfBits;
+        int right = value & halfMask;
+        for (int round = ROUNDS - 1; round >= 0; round--) {
+            int previous = right ^ roundFunction(round, left);
+            right = left;
+            left = previous;
+        }
+        return (left << halfBits) | right;
+    }
+
+    /**
+     * Mix the seed, the round and one half of the value (the SplitMix64 finalizer).
+     */
+    private int roundFunction(int round, int half) {
+        long z = seed + (round + 1) * 0x9E3779B97F4A7C15L + half;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (int) z & halfMask;
+    }
+}
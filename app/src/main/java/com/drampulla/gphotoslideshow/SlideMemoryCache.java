@@ -0,0 +1,114 @@
+package com.drampulla.gphotoslideshow;
+
+import android.graphics.Bitmap;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the decoded images of the slides that were shown most recently, so going back to one
+ * of them doesn't have to decode it again.  This is the slideshow's history: it holds the last
+ * few slides that went off the screen, limited both by how many and by how much memory they
+ * use.  When a slide falls out of the history its bitmap is handed to the {@link BitmapPool}
+ * to be reused; going back further than that reads the image from the disk cache again.
+ *
+ * A bitmap is only ever in one place at a time: it is in this cache, on the screen, or in the
+ * pool.  Taking a slide out of the cache to display it does not give the bitmap to the pool.
+ */
+public class SlideMemoryCache {
+
+    private final BitmapPool bitmapPool;
+    private final long maxBytes;
+    private final int maxSlides;
+
+    /**
+     * Oldest first.
+     */
+    private final LinkedHashMap<String, Bitmap> slides = new LinkedHashMap<>();
+    private long totalBytes;
+
+    /**
+     *
+     * @param maxBytes
+     *          The most memory the cached slides may use.
+     * @param maxSlides
+     *          The most slides to keep.
+     * @param bitmapPool
+     *          Where slides go when they fall out of the cache.
+     */
+    public SlideMemoryCache(long maxBytes, int maxSlides, BitmapPool bitmapPool) {
+        this.maxBytes = maxBytes;
+        this.maxSlides = maxSlides;
+        this.bitmapPool = bitmapPool;
+    }
+
+    /**
+     * Add a slide that has just gone off the screen.  The oldest slides fall out if this goes
+     * over either limit.
+     *
+     * @param photoId
+     *          The id of the photo.
+     * @param bitmap
+     *          The decoded image.
+     */
+    public synchronized void put(String photoId, Bitmap bitmap) {
+        Bitmap old = slides.remove(photoId);
+        if (old != null) {
+            totalBytes -= BitmapPool.sizeOf(old);
+            if (old != bitmap) {
+                bitmapPool.put(old);
+            }
+        }
+        slides.put(photoId, bitmap);
+        totalBytes += BitmapPool.sizeOf(bitmap);
+        trim(maxBytes, maxSlides);
+    }
+
+    /**
+     * Take a slide out of the cache so it can be displayed again.
+     *
+     * @param photoId
+     *          The id of the photo.
+     * @return
+     *          The decoded image or null if it isn't cached.
+     */
+    public synchronized Bitmap take(String photoId) {
+        Bitmap rc = slides.remove(photoId);
+        if (rc != null) {
+            totalBytes -= BitmapPool.sizeOf(rc);
+        }
+        return rc;
+    }
+
+    /**
+     * @return true if the slide is in the cache.
+     */
+    public synchronized boolean contains(String photoId) {
+        return slides.containsKey(photoId);
+    }
+
+    /**
+     * @return how many slides are in the cache.
+     */
+    public synchronized int size() {
+        return slides.size();
+    }
+
+    /**
+     * Push every slide out of the cache (and into the pool).
+     */
+    public synchronized void evictAll() {
+        trim(0, 0);
+    }
+
+    private void trim(long bytes, int count) {
+        Iterator<Map.Entry<String, Bitmap>> it = slides.entrySet().iterator();
+        while (it.hasNext() && (totalBytes > bytes || slides.size() > count)) {
+            Bitmap oldest = it.next().getValue();
+            it.remove();
+            totalBytes -= BitmapPool.sizeOf(oldest);
+            bitmapPool.put(oldest);
+        }
+    }
+}
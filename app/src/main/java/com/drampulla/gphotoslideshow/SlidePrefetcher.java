@@ -0,0 +1,279 @@
+package com.drampulla.gphotoslideshow;
+
+import android.graphics.Bitmap;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Downloads and decodes the photos around the current slide ahead of time so that when the
+ * timer fires the next image is (hopefully) already sitting in memory.  Slides that were
+ * shown recently are taken from the {@link SlideMemoryCache} rather than decoded again, and
+ * prefetched slides that are no longer needed give their bitmaps to the {@link BitmapPool}.
+ */
+public class SlidePrefetcher {
+
+    /**
+     * Default logger.
+     */
+    private static final Logger LOGGER = new Logger(SlidePrefetcher.class);
+
+    /**
+     * Number of photos that are downloaded at the same time.
+     */
+    private static final int PREFETCH_THREADS = 2;
+
+    /**
+     * Background threads doing the downloads.
+     */
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(PREFETCH_THREADS);
+
+    private final ImageLoader imageLoader;
+    private final SlideMemoryCache slideMemoryCache;
+    private final BitmapPool bitmapPool;
+
+    /**
+     * The photos being (or already) prefetched, keyed by photo id.
+     */
+    private final Map<String, Future<Bitmap>> prefetched = new LinkedHashMap<>();
+
+    /**
+     * How many slides after and before the current one to keep ready.
+     */
+    private int aheadCount;
+    private int behindCount;
+
+    /**
+     * The prefetch {@link #take} is waiting for, so it can be cancelled.
+     */
+    private Future<Bitmap> waitingFor;
+
+    /**
+     * Counters for how often the slide was ready when it was needed.
+     */
+    private long hits;
+    private long misses;
+
+    /**
+     *
+     * @param imageLoader
+     *          Does the actual downloading and decoding.
+     * @param slideMemoryCache
+     *          The slides that were displayed recently.
+     * @param bitmapPool
+     *          Where unused bitmaps go.
+     * @param aheadCount
+     *          How many of the upcoming slides to keep ready.
+     * @param behindCount
+     *          How many of the previous slides to keep ready.
+     */
+    public SlidePrefetcher(ImageLoader imageLoader, SlideMemoryCache slideMemoryCache, BitmapPool bitmapPool,
+                           int aheadCount, int behindCount) {
+        this.imageLoader = imageLoader;
+        this.slideMemoryCache = slideMemoryCache;
+        this.bitmapPool = bitmapPool;
+        this.aheadCount = aheadCount;
+        this.behindCount = behindCount;
+    }
+
+    /**
+     * Change how many slides are kept ready, this takes effect on the next call to
+     * {@link #prefetch(List)}.
+     */
+    public synchronized void setDepth(int aheadCount, int behindCount) {
+        LOGGER.d("Prefetching %d ahead and %d behind", aheadCount, behindCount);
+        this.aheadCount = aheadCount;
+        this.behindCount = behindCount;
+    }
+
+    public synchronized int getAheadCount() {
+        return aheadCount;
+    }
+
+    public synchronized int getBehindCount() {
+        return behindCount;
+    }
+
+    /**
+     * Make sure the given photos are being loaded, and forget about any others.
+     *
+     * @param window
+     *          The photos that should be ready, most important first.
+     */
+    public synchronized void prefetch(List<CatalogPhoto> window) {
+        Set<String> wanted = new HashSet<>();
+        for (CatalogPhoto photo : window) {
+            wanted.add(photo.getId());
+        }
+
+        Iterator<Map.Entry<String, Future<Bitmap>>> it = prefetched.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Future<Bitmap>> entry = it.next();
+            if (!wanted.contains(entry.getKey())) {
+                release(entry.getValue());
+                it.remove();
+            }
+        }
+
+        for (final CatalogPhoto photo : window) {
+            if (!prefetched.containsKey(photo.getId()) && !slideMemoryCache.contains(photo.getId())) {
+                LoadTask task = new LoadTask(photo);
+                prefetched.put(photo.getId(), task);
+                EXECUTOR.execute(task);
+            }
+        }
+    }
+
+    /**
+     * Get the image for a photo that is about to be displayed.  If it was prefetched it is
+     * returned right away (or as soon as the download in progress finishes), otherwise it is
+     * loaded on the calling thread.
+     *
+     * @param photo
+     *          The photo that is about to be displayed.
+     * @return
+     *          The decoded image.
+     * @throws IOException
+     *          If the image can't be loaded.
+     * @throws CancellationException
+     *          If {@link #cancelTake()} was called while waiting for the image.
+     */
+    public Bitmap take(CatalogPhoto photo) throws IOException {
+        Bitmap recent = slideMemoryCache.take(photo.getId());
+        Future<Bitmap> future;
+        synchronized (this) {
+            future = prefetched.remove(photo.getId());
+            if (recent != null) {
+                hits++;
+                if (future != null) {
+                    release(future);
+                }
+                return recent;
+            }
+            if (future != null && future.isDone() && !future.isCancelled()) {
+                hits++;
+            } else {
+                misses++;
+            }
+            waitingFor = future;
+        }
+
+        if (future != null) {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for " + photo.getUrl(), e);
+            } catch (ExecutionException e) {
+                LOGGER.w("Prefetch of " + photo.getUrl() + " failed, trying again", e.getCause());
+            } finally {
+                synchronized (this) {
+                    waitingFor = null;
+                }
+            }
+        }
+        return imageLoader.load(photo);
+    }
+
+    /**
+     * Stop loading the image {@link #take} is waiting for, because the slide isn't going to be
+     * shown after all.  Does nothing if take isn't waiting.
+     */
+    public synchronized void cancelTake() {
+        if (waitingFor != null) {
+            waitingFor.cancel(true);
+        }
+    }
+
+    /**
+     * Loads one photo.  Cancelling it with mayInterruptIfRunning closes the connection it is
+     * downloading on (an interrupt alone doesn't stop a socket read), so the thread is free
+     * for the next slide right away.  A bitmap that still finishes after the cancel goes to
+     * the pool rather than being lost.
+     */
+    private class LoadTask extends FutureTask<Bitmap> {
+
+        private volatile Thread runner;
+
+        LoadTask(final CatalogPhoto photo) {
+            super(new Callable<Bitmap>() {
+                @Override
+                public Bitmap call() throws Exception {
+                    return imageLoader.load(photo);
+                }
+            });
+        }
+
+        @Override
+        public void run() {
+            runner = Thread.currentThread();
+            try {
+                super.run();
+            } finally {
+                runner = null;
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean rc = super.cancel(mayInterruptIfRunning);
+            Thread thread = runner;
+            if (rc && mayInterruptIfRunning && thread != null) {
+                imageLoader.abort(thread);
+            }
+            return rc;
+        }
+
+        @Override
+        protected void set(Bitmap bitmap) {
+            super.set(bitmap);
+            if (isCancelled() && bitmap != null) {
+                // nobody is going to get() this
+                bitmapPool.put(bitmap);
+            }
+        }
+    }
+
+    /**
+     * Stop a prefetch that is no longer needed, giving its bitmap to the pool if it finished.
+     */
+    private void release(Future<Bitmap> future) {
+        if (future.cancel(true)) {
+            // the task gives its bitmap to the pool if it still finishes
+            return;
+        }
+        try {
+            bitmapPool.put(future.get());
+        } catch (InterruptedException | ExecutionException | CancellationException e) {
+            // nothing was loaded so there is nothing to give back
+        }
+    }
+
+    /**
+     * @return the fraction of slides that were already loaded when they were needed.
+     */
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
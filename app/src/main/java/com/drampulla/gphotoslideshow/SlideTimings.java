@@ -0,0 +1,179 @@
+package com.drampulla.gphotoslideshow;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long each stage of getting a slide onto the screen takes.  Every stage has its own
+ * {@link LatencyHistogram}, and recording a time doesn't allocate anything so it is safe to
+ * do on every slide.  The percentiles can be shown on the screen ({@link #describe}) and are
+ * appended to a file every few minutes.
+ *
+ * Usage: <code>long start = System.nanoTime(); ... SlideTimings.record(SlideTimings.DECODE, start);</code>
+ */
+public class SlideTimings {
+
+    /**
+     * Default logger.
+     */
+    private static final Logger LOGGER = new Logger(SlideTimings.class);
+
+    /**
+     * Moving the slideshow iterator to the next/previous photo.
+     */
+    public static final int ADVANCE = 0;
+    /**
+     * Loading the details of an album's photos from the photo source (once per album, not per slide).
+     */
+    public static final int ALBUM_LOAD = 1;
+    /**
+     * Reading an image from the disk cache.
+     */
+    public static final int CACHE_READ = 2;
+    /**
+     * Downloading an image (or reading it from a local file).
+     */
+    public static final int DOWNLOAD = 3;
+    /**
+     * Decoding an image into a bitmap.
+     */
+    public static final int DECODE = 4;
+    /**
+     * From posting the slide to the UI thread until it runs.
+     */
+    public static final int UI_POST = 5;
+    /**
+     * From setting the image until the transition animation starts.
+     */
+    public static final int TRANSITION = 6;
+    /**
+     * From asking for the slide until the transition starts.
+     */
+    public static final int TOTAL = 7;
+    /**
+     * From asking to go back a slide until the transition starts.
+     */
+    public static final int BACK = 8;
+
+    private static final String[] STAGE_NAMES = {"advance", "albumLoad", "cacheRead", "download", "decode", "uiPost", "transition", "total", "back"};
+
+    private static final LatencyHistogram[] HISTOGRAMS = new LatencyHistogram[STAGE_NAMES.length];
+    static {
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            HISTOGRAMS[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Start a new dump file once the old one gets this big.
+     */
+    private static final long MAX_DUMP_FILE_BYTES = 1024 * 1024;
+
+    /**
+     * Scheduling executor.
+     */
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor();
+    private static ScheduledFuture<?> dumpFuture;
+
+    private SlideTimings() {
+    }
+
+    /**
+     * Record how long a stage took.
+     *
+     * @param stage
+     *          One of the stage constants.
+     * @param startNanos
+     *          The {@link System#nanoTime()} when the stage started.
+     */
+    public static void record(int stage, long startNanos) {
+        HISTOGRAMS[stage].record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    /**
+     * @return the histogram of one of the stages.
+     */
+    public static LatencyHistogram get(int stage) {
+        return HISTOGRAMS[stage];
+    }
+
+    /**
+     * Write the percentiles of every stage that has been recorded, one stage per line in
+     * milliseconds, e.g. for the on screen overlay.
+     *
+     * @param out
+     *          Where to write them, cleared first.
+     */
+    public static void describe(StringBuilder out) {
+        out.setLength(0);
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            LatencyHistogram histogram = HISTOGRAMS[i];
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            out.append(STAGE_NAMES[i]).append(' ')
+                    .append(histogram.getPercentile(50) / 1000).append('/')
+                    .append(histogram.getPercentile(95) / 1000).append('/')
+                    .append(histogram.getPercentile(99) / 1000).append("ms n=")
+                    .append(histogram.getCount()).append('\n');
+        }
+    }
+
+    /**
+     * Append the stats of every stage to a file every so often.  Calling this again replaces
+     * the previous schedule.
+     *
+     * @param file
+     *          The file to append to.
+     * @param intervalMinutes
+     *          How often to write.
+     */
+    public static synchronized void startDumping(final File file, long intervalMinutes) {
+        if (dumpFuture != null) {
+            dumpFuture.cancel(false);
+        }
+        dumpFuture = EXECUTOR.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    dump(file);
+                } catch (IOException e) {
+                    LOGGER.w("Unable to write slide timings to " + file, e);
+                }
+            }
+        }, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Append the stats of every stage to a file as CSV lines of
+     * time,stage,count,mean,p50,p95,p99,max (in microseconds).
+     *
+     * @param file
+     *          The file to append to.
+     */
+    public static void dump(File file) throws IOException {
+        if (file.length() > MAX_DUMP_FILE_BYTES) {
+            File old = new File(file.getPath() + ".old");
+            if (!file.renameTo(old)) {
+                LOGGER.w("Unable to roll over " + file);
+            }
+        }
+        long now = System.currentTimeMillis();
+        try (Writer out = new FileWriter(file, true)) {
+            for (int i = 0; i < HISTOGRAMS.length; i++) {
+                LatencyHistogram histogram = HISTOGRAMS[i];
+                out.write(String.format(Locale.US, "%d,%s,%d,%d,%d,%d,%d,%d%n", now, STAGE_NAMES[i],
+                        histogram.getCount(), histogram.getMean(), histogram.getPercentile(50),
+                        histogram.getPercentile(95), histogram.getPercentile(99), histogram.getMax()));
+            }
+        }
+        LOGGER.d("Wrote slide timings to %s", file);
+    }
+}
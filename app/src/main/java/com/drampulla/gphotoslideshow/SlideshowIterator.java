@@ -2,22 +2,31 @@ package com.drampulla.gphotoslideshow;
 
 import android.content.SharedPreferences;
 
-import com.google.gdata.data.photos.AlbumEntry;
-import com.google.gdata.data.photos.GphotoEntry;
-import com.google.gdata.data.photos.PhotoEntry;
-import com.google.gdata.data.photos.UserFeed;
-import com.google.gdata.util.ServiceException;
-
-import java.io.IOException;
-import java.util.Iterator;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
 import java.util.ListIterator;
-import java.util.regex.Pattern;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TimeZone;
 
 /**
  * Iterator to walk through the photos in various Google Photo albums.  As we reach
  * the end of one photo album we automatically move to the next album.
+ *
+ * The albums and photos come from the local {@link PhotoCatalog}, so walking the
+ * slideshow never has to go back to the server.  Every photo has a global index
+ * (see {@link AlbumPositionIndex}) so jumping to any point in the slideshow is cheap.
+ *
+ * In shuffle mode the position in the slideshow is run through a {@link ShufflePermutation}
+ * to get the global index of the photo, so the shuffled order is never stored anywhere.
+ * The seed is saved with the position so a restart picks up the same order where it left off.
+ *
+ * Instead of every photo the slideshow can also play just the photos taken on today's date
+ * in past years, or in a date range.  Those playlists come from a {@link TimestampIndex}.
  */
-public class SlideshowIterator implements ListIterator<PhotoEntry> {
+public class SlideshowIterator implements ListIterator<CatalogPhoto> {
 
     /**
      * Default logger.
@@ -25,165 +34,478 @@ public class SlideshowIterator implements ListIterator<PhotoEntry> {
     private static final Logger LOGGER = new Logger(SlideshowIterator.class);
 
     /**
-     * Feed of all albums the in the user's account
+     * Values of the playlist preference.
      */
-    private UserFeed albumFeed;
+    public static final String PLAYLIST_ALL = "all";
+    public static final String PLAYLIST_ON_THIS_DAY = "onThisDay";
+    public static final String PLAYLIST_DATE_RANGE = "dateRange";
+
     /**
-     * Iterator that keeps track of the current album we are working on.
+     * Format of the start/end dates of a date range playlist.
      */
-    private ListIterator<GphotoEntry> albumIterator;
+    private static final String PLAYLIST_DATE_FORMAT = "yyyy-MM-dd";
+
+    /**
+     * All of the albums in the user's account.
+     */
+    private PhotoCatalog catalog;
+
     /**
-     * The current album we are working on.
+     * Decides which albums are part of the slideshow.
      */
-    private AlbumEntry currentAlbum;
+    private AlbumFilter albumFilter;
+
+    /**
+     * The albums (that pass the include/exclude expressions) and where each one starts.
+     */
+    private AlbumPositionIndex positionIndex;
+
     /**
-     * The iterator that keeps track of the current photo within the album
-     * that we are working on.
+     * The global indexes of the photos to play, in order, or null to play every photo.
      */
-    private ListIterator<GphotoEntry> photoIterator;
+    private int[] playlist;
+
+    /**
+     * When the playlist has to be built again ("on this day" changes at midnight).
+     */
+    private long playlistExpires = Long.MAX_VALUE;
+
+    /**
+     * The shuffled order of the photos, null when the slideshow isn't shuffled.
+     */
+    private ShufflePermutation shuffle;
 
     /**
      * Counter to keep track of how many pictures into the slideshow we are.
+     * The photo being displayed is at position listIndex - 1 in the slideshow order
+     * (which is also its global index unless the slideshow is shuffled).
      * The intent is to store this value somewhere and restart a slideshow
      * from where it left off.
      */
     private int listIndex;
 
     /**
-     * preferences for storing "listIndex" so we can remember where we left off in the iterator.
+     * Where "listIndex" is stored so we can remember where we left off in the iterator.
      */
-    private SharedPreferences sharedPreferences;
+    private PositionStore positionStore;
+
+    private final SharedPreferences sharedPreferences;
+
+    /**
+     * Rebuilds the list of albums when the include/exclude expressions change.
+     */
+    private SharedPreferences.OnSharedPreferenceChangeListener preferenceChangeListener;
 
 
     /**
      * Default constructor.
      *
-     * @param albumFeed
-     *          The album feed to iterate on.
-     * @throws IOException
-     * @throws ServiceException
+     * @param sharedPreferences
+     *          Where the position in the slideshow is remembered.
+     * @param catalog
+     *          The catalog of albums to iterate on.
+     * @throws EmptySlideshowException
+     *          If none of the albums that match the include/exclude expressions have photos.
      */
-    public SlideshowIterator(SharedPreferences sharedPreferences, UserFeed albumFeed) throws IOException, ServiceException {
+    public SlideshowIterator(SharedPreferences sharedPreferences, PhotoCatalog catalog) {
         this.sharedPreferences = sharedPreferences;
-        this.albumFeed = albumFeed;
-        this.albumIterator = this.albumFeed.getEntries().listIterator();
-        if (!this.albumIterator.hasNext()) {
-            throw new RuntimeException("There are no albums available.");
+        this.positionStore = new PositionStore(sharedPreferences);
+        this.catalog = catalog;
+        this.albumFilter = createAlbumFilter(sharedPreferences);
+        applyOrder(new AlbumPositionIndex(albumFilter.apply(catalog)), getShuffleSeed(sharedPreferences, false));
+        this.listIndex = locate(positionStore.getPosition(), positionStore.getListIndex());
+
+        LOGGER.d("Starting at index %d of %d", listIndex, sequenceSize());
+
+        // Keeping this as a member variable because the SharedPreferences only keep this listener
+        // as a weak reference.
+        preferenceChangeListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+            @Override
+            public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String s) {
+                if (PreferenceConstants.INCLUDE_REGEX.equals(s) || PreferenceConstants.EXCLUDE_REGEX.equals(s)) {
+                    LOGGER.d("Album expressions changed, so rebuild the album list");
+                    try {
+                        rebuild(SlideshowIterator.this.catalog, createAlbumFilter(sharedPreferences), currentShuffleSeed());
+                    } catch (RuntimeException e) {
+                        LOGGER.w("Keeping the current albums because the new expressions can't be used", e);
+                    }
+                } else if (PreferenceConstants.SHUFFLE.equals(s)) {
+                    // a fresh shuffle every time it's turned on
+                    LOGGER.d("Shuffle changed, so rebuild the slideshow order");
+                    rebuild(SlideshowIterator.this.catalog, albumFilter, getShuffleSeed(sharedPreferences, true));
+                } else if (PreferenceConstants.PLAYLIST.equals(s) || PreferenceConstants.PLAYLIST_START_DATE.equals(s)
+                        || PreferenceConstants.PLAYLIST_END_DATE.equals(s)) {
+                    LOGGER.d("Playlist changed, so rebuild the slideshow order");
+                    rebuild(SlideshowIterator.this.catalog, albumFilter, currentShuffleSeed());
+                }
+            }
+        };
+        sharedPreferences.registerOnSharedPreferenceChangeListener(preferenceChangeListener);
+    }
+
+    /**
+     * @return a filter for the include/exclude expressions currently in the preferences.
+     */
+    static AlbumFilter createAlbumFilter(SharedPreferences sharedPreferences) {
+        return new AlbumFilter(sharedPreferences.getString(PreferenceConstants.INCLUDE_REGEX, ".*"),
+                sharedPreferences.getString(PreferenceConstants.EXCLUDE_REGEX, ""));
+    }
+
+    /**
+     * @param sharedPreferences
+     *          Where shuffle is turned on or off.
+     * @param reshuffle
+     *          true to pick a new seed instead of using the saved one.
+     * @return the seed to shuffle with, or null if shuffle is turned off.  A new seed is
+     *         picked (and saved) if there isn't one yet.
+     */
+    private Long getShuffleSeed(SharedPreferences sharedPreferences, boolean reshuffle) {
+        if (!sharedPreferences.getBoolean(PreferenceConstants.SHUFFLE, false)) {
+            return null;
+        }
+        Long seed = reshuffle ? null : positionStore.getShuffleSeed();
+        if (seed == null) {
+            seed = new Random().nextLong();
+            positionStore.setShuffleSeed(seed);
         }
-        this.listIndex = 0;
-        this.currentAlbum = new AlbumEntry(this.albumIterator.next());
-        this.photoIterator = this.currentAlbum.getFeed().getEntries().listIterator();
+        return seed;
+    }
 
-        LOGGER.d("Starting with album " + this.currentAlbum.getTitle().getPlainText());
+    /**
+     * @return the seed currently being shuffled with, null if not shuffled.
+     */
+    private synchronized Long currentShuffleSeed() {
+        return shuffle == null ? null : shuffle.getSeed();
+    }
 
-        advanceToListIndex(sharedPreferences.getInt(PreferenceConstants.SLIDESHOW_INDEX, 0));
+    /**
+     * Switch to a new set of albums, building the playlist and shuffle to go with them.
+     *
+     * @param updatedIndex
+     *          The albums in the slideshow.
+     * @param shuffleSeed
+     *          The seed to shuffle with, null to not shuffle.
+     */
+    private void applyOrder(AlbumPositionIndex updatedIndex, Long shuffleSeed) {
+        positionIndex = updatedIndex;
+        playlist = createPlaylist(updatedIndex);
+        shuffle = shuffleSeed == null ? null : new ShufflePermutation(sequenceSize(), shuffleSeed);
     }
 
     /**
-     * Advance forward to the specified listIndex.
+     * Build the playlist picked in the preferences.
      *
-     * @param targetIndex
-     *          The index of the photo to display.
+     * @param index
+     *          The albums in the slideshow.
+     * @return
+     *          The global indexes of the photos in the playlist, null to play every photo.
      */
-    private void advanceToListIndex(int targetIndex) {
-        while (listIndex < targetIndex) {
-            next();
+    private int[] createPlaylist(AlbumPositionIndex index) {
+        String type = sharedPreferences.getString(PreferenceConstants.PLAYLIST, PLAYLIST_ALL);
+        playlistExpires = Long.MAX_VALUE;
+        if (PLAYLIST_ALL.equals(type)) {
+            return null;
         }
-    }
 
-    @Override
-    public boolean hasNext() {
+        long start = System.currentTimeMillis();
+        TimestampIndex timestampIndex = new TimestampIndex(index, TimeZone.getDefault());
+        long built = System.currentTimeMillis();
+        int[] rc;
+        if (PLAYLIST_ON_THIS_DAY.equals(type)) {
+            rc = timestampIndex.onThisDay(built);
+            playlistExpires = startOfDay(built, 1);
+        } else if (PLAYLIST_DATE_RANGE.equals(type)) {
+            SimpleDateFormat format = new SimpleDateFormat(PLAYLIST_DATE_FORMAT, Locale.US);
+            try {
+                long from = format.parse(sharedPreferences.getString(PreferenceConstants.PLAYLIST_START_DATE, "")).getTime();
+                // the end date is part of the range
+                long to = startOfDay(format.parse(sharedPreferences.getString(PreferenceConstants.PLAYLIST_END_DATE, "")).getTime(), 1);
+                rc = timestampIndex.range(from, to);
+            } catch (ParseException e) {
+                LOGGER.w("Date range isn't in " + PLAYLIST_DATE_FORMAT + " format, showing every photo", e);
+                return null;
+            }
+        } else {
+            LOGGER.w("Unknown playlist %s, showing every photo", type);
+            return null;
+        }
+        if (Logger.isLoggable(Logger.DEBUG)) {
+            LOGGER.d(String.format("Indexed %d photo timestamps in %dms, %s playlist has %d photos (query took %dms).",
+                    timestampIndex.size(), built - start, type, rc.length, System.currentTimeMillis() - built));
+        }
 
-        boolean rc = this.photoIterator.hasNext();
-        if (!rc) {
-            rc = this.albumIterator.hasNext();
+        if (rc.length == 0) {
+            LOGGER.w("Nothing in the %s playlist, showing every photo", type);
+            return null;
         }
         return rc;
     }
 
-    @Override
-    public PhotoEntry next() {
-        PhotoEntry rc = null;
-        try {
-            if (this.photoIterator.hasNext()) {
-                rc = new PhotoEntry(this.photoIterator.next());
-            } else {
-                this.currentAlbum = nextAlbumEntry();
-                LOGGER.d("Using album " + this.currentAlbum.getTitle().getPlainText());
-                this.photoIterator = this.currentAlbum.getFeed().getEntries().listIterator();
-                rc =  next();
+    /**
+     * @return the time of local midnight, days after the day that time falls on.
+     */
+    private static long startOfDay(long time, int days) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(Calendar.DAY_OF_MONTH, days);
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * @return the number of photos in the slideshow order.
+     */
+    private int sequenceSize() {
+        return playlist == null ? positionIndex.size() : playlist.length;
+    }
+
+    /**
+     * @param sequenceIndex
+     *          A position in the slideshow order.
+     * @return
+     *          The global index of the photo at that position.
+     */
+    private int photoIndex(int sequenceIndex) {
+        int index = shuffle == null ? sequenceIndex : shuffle.apply(sequenceIndex);
+        return playlist == null ? index : playlist[index];
+    }
+
+    /**
+     * @param globalIndex
+     *          The global index of a photo.
+     * @return
+     *          The position of that photo in the slideshow order, -1 if it isn't in the playlist.
+     */
+    private int sequenceIndexOf(int globalIndex) {
+        int index = globalIndex;
+        if (playlist != null) {
+            // only done when the slideshow is (re)started, so not worth keeping a reverse lookup
+            index = -1;
+            for (int i = 0; i < playlist.length && index < 0; i++) {
+                if (playlist[i] == globalIndex) {
+                    index = i;
+                }
+            }
+            if (index < 0) {
+                return -1;
             }
+        }
+        return shuffle == null ? index : shuffle.inverse(index);
+    }
+
+    /**
+     * Work out where to (re)start the slideshow.
+     *
+     * @param position
+     *          The saved album/photo position, may be null.
+     * @param fallbackListIndex
+     *          The listIndex to use if the saved album no longer exists.
+     * @return
+     *          The listIndex that will make the saved photo the one currently displayed.
+     */
+    private int locate(SlideshowPosition position, int fallbackListIndex) {
+        int globalIndex = position == null ? -1 : positionIndex.indexOf(position);
+        int sequenceIndex = globalIndex < 0 ? -1 : sequenceIndexOf(globalIndex);
+        if (sequenceIndex < 0) {
+            return Math.max(0, Math.min(fallbackListIndex, sequenceSize()));
+        }
+        return sequenceIndex + 1;
+    }
 
-            listIndex++;
-            sharedPreferences.edit().putInt(PreferenceConstants.SLIDESHOW_INDEX, listIndex).commit();
-            LOGGER.d("Next index=" + listIndex);
-        } catch (IOException | ServiceException e) {
-            throw new RuntimeException("Unable to get next photo", e);
+    /**
+     * Switch to a new catalog, album filter and/or order while staying on the same album and
+     * photo if they are still part of the slideshow.
+     *
+     * @param updatedCatalog
+     *          The catalog to use.
+     * @param updatedFilter
+     *          The filter to use.
+     * @param shuffleSeed
+     *          The seed to shuffle with, null to not shuffle.
+     * @throws EmptySlideshowException
+     *          If the new catalog and filter would leave nothing to show, in which case
+     *          nothing is changed.
+     */
+    private synchronized void rebuild(PhotoCatalog updatedCatalog, AlbumFilter updatedFilter, Long shuffleSeed) {
+        AlbumPositionIndex updatedIndex = new AlbumPositionIndex(updatedFilter.apply(updatedCatalog));
+        SlideshowPosition current = listIndex > 0 ? positionIndex.positionOf(photoIndex(listIndex - 1)) : null;
+
+        catalog = updatedCatalog;
+        albumFilter = updatedFilter;
+        applyOrder(updatedIndex, shuffleSeed);
+        listIndex = locate(current, listIndex);
+        if (Logger.isLoggable(Logger.DEBUG)) {
+            LOGGER.d(String.format("Now at index %d of %d in %d albums", listIndex, sequenceSize(), positionIndex.getAlbumCount()));
         }
+    }
 
-        return rc;
+    /**
+     * Switch over to a newer copy of the catalog (after a sync) while staying on the
+     * same album and photo if they still exist.
+     *
+     * @param updatedCatalog
+     *          The new catalog.
+     */
+    public synchronized void updateCatalog(PhotoCatalog updatedCatalog) {
+        try {
+            rebuild(updatedCatalog, albumFilter, currentShuffleSeed());
+        } catch (EmptySlideshowException e) {
+            LOGGER.w("Ignoring updated catalog", e);
+        }
     }
 
     /**
-     * Skip over any album entries that don't match the include pattern or do match the exclude pattern
+     * @return the catalog the slideshow is currently using.
+     */
+    public synchronized PhotoCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Jump to any point in the slideshow.  Nothing is saved until the next photo is
+     * actually displayed.
+     *
+     * @param sequenceIndex
+     *          The position in the slideshow order (the global index unless shuffled or
+     *          playing a date playlist) of the
+     *          photo that the next call to {@link #next()} should return.
+     */
+    public synchronized void seek(int sequenceIndex) {
+        int size = sequenceSize();
+        listIndex = ((sequenceIndex % size) + size) % size;
+    }
+
+    /**
+     * Look at a photo near the current one without moving.
+     *
+     * @param delta
+     *          How far from the photo currently displayed, 1 being the photo the next call to
+     *          {@link #next()} will return and -1 the photo {@link #previous()} will return.
      * @return
-     *          The next album entry to use.
+     *          The photo at that point in the slideshow (wrapping around at either end).
      */
-    private AlbumEntry nextAlbumEntry() {
+    public synchronized CatalogPhoto peek(int delta) {
+        int size = sequenceSize();
+        int sequenceIndex = (((listIndex - 1 + delta) % size) + size) % size;
+        return positionIndex.photoAt(photoIndex(sequenceIndex));
+    }
 
-        // I want to make sure empty string is the same as include everything
-        String includeRegex = sharedPreferences.getString(PreferenceConstants.INCLUDE_REGEX, ".*");
-        includeRegex = includeRegex.equals("") ? ".*" : includeRegex;
+    /**
+     * @return the number of photos in the slideshow.
+     */
+    public synchronized int size() {
+        return sequenceSize();
+    }
 
-        Pattern excludePattern = Pattern.compile(sharedPreferences.getString(PreferenceConstants.EXCLUDE_REGEX, ""));
-        Pattern includePattern = Pattern.compile(includeRegex);
+    @Override
+    public synchronized boolean hasNext() {
+        // the slideshow starts over once it reaches the end
+        return sequenceSize() > 0;
+    }
 
-        if (!this.albumIterator.hasNext()) {
+    @Override
+    public synchronized CatalogPhoto next() {
+        rebuildExpiredPlaylist();
+        if (listIndex >= sequenceSize()) {
             // we ran over all albums, so rotate back to start
-            this.albumIterator = this.albumFeed.getEntries().listIterator();
             listIndex = 0;
         }
+        CatalogPhoto rc = positionIndex.photoAt(photoIndex(listIndex));
 
+        listIndex++;
+        savePosition();
+        LOGGER.d("Next index=%d", listIndex);
 
-        AlbumEntry ae = new AlbumEntry(this.albumIterator.next());
-        while (!includePattern.matcher(ae.getTitle().getPlainText()).matches()
-                || excludePattern.matcher(ae.getTitle().getPlainText()).matches()) {
-            LOGGER.d("Skipping over album " + ae.getTitle().getPlainText());
-            ae = new AlbumEntry(this.albumIterator.next());
+        return rc;
+    }
+
+    /**
+     * Move any number of slides from the one currently displayed, without going through the
+     * ones in between.  skip(1) is the same as {@link #next()} and skip(-1) the same as
+     * {@link #previous()}.
+     *
+     * @param delta
+     *          How many slides to move, negative to go back (wrapping around at either end).
+     * @return
+     *          The photo to display.
+     */
+    public synchronized CatalogPhoto skip(int delta) {
+        if (delta > 0) {
+            rebuildExpiredPlaylist();
         }
+        int size = sequenceSize();
+        if (size == 0) {
+            throw new NoSuchElementException("There are no photos in the slideshow.");
+        }
+        // listIndex is one past the photo currently displayed
+        int target = (int) ((((long) listIndex - 1 + delta) % size + size) % size);
+        listIndex = target + 1;
+        CatalogPhoto rc = positionIndex.photoAt(photoIndex(target));
+        savePosition();
+        LOGGER.d("Skipped to index=%d", listIndex);
 
-        return ae;
+        return rc;
     }
 
-    @Override
-    public boolean hasPrevious() {
-        boolean rc = this.photoIterator.hasPrevious();
-        if (!rc) {
-            rc = this.albumIterator.hasPrevious();
+    /**
+     * Playlists like "on this day" change at midnight.
+     */
+    private void rebuildExpiredPlaylist() {
+        if (System.currentTimeMillis() >= playlistExpires) {
+            LOGGER.d("The day changed, so rebuild the playlist");
+            rebuild(catalog, albumFilter, currentShuffleSeed());
         }
-        return rc;
     }
 
     @Override
-    public PhotoEntry previous() {
-        PhotoEntry rc = null;
-        try {
-            if (this.photoIterator.hasPrevious()) {
-                rc = new PhotoEntry(this.photoIterator.previous());
-            } else {
-                this.currentAlbum = new AlbumEntry(this.albumIterator.previous());
-                this.photoIterator = this.currentAlbum.getFeed().getEntries().listIterator();
-                rc = new PhotoEntry(this.photoIterator.previous());
-            }
+    public synchronized boolean hasPrevious() {
+        // going back from the first photo wraps around to the last one
+        return sequenceSize() > 0;
+    }
 
-            listIndex--;
-            sharedPreferences.edit().putInt(PreferenceConstants.SLIDESHOW_INDEX, listIndex).commit();
-        } catch (IOException | ServiceException e) {
-            throw new RuntimeException("Unable to get next photo", e);
+    @Override
+    public synchronized CatalogPhoto previous() {
+        if (sequenceSize() == 0) {
+            throw new NoSuchElementException("There are no photos in the slideshow.");
         }
+        if (listIndex <= 1) {
+            listIndex = sequenceSize() + 1;
+        }
+
+        listIndex--;
+        CatalogPhoto rc = positionIndex.photoAt(photoIndex(listIndex - 1));
+        savePosition();
+
         return rc;
     }
 
+    /**
+     * Remember the photo currently displayed.  This only updates memory, the position is
+     * written out later by the {@link PositionStore}.
+     */
+    private void savePosition() {
+        positionStore.update(listIndex, positionIndex.positionOf(photoIndex(listIndex - 1)));
+    }
+
+    /**
+     * Write the current position out now, e.g. because the app is going into the background.
+     */
+    public void flushPosition() {
+        positionStore.flush();
+    }
+
+    /**
+     * Write the current position out, stop saving it and stop following the preferences, e.g.
+     * because this iterator is being replaced by a new one.
+     */
+    public void close() {
+        sharedPreferences.unregisterOnSharedPreferenceChangeListener(preferenceChangeListener);
+        positionStore.close();
+    }
+
     @Override
     public int nextIndex() {
         return this.listIndex + 1;
@@ -195,12 +517,12 @@ public class SlideshowIterator implements ListIterator<PhotoEntry> {
     }
 
     @Override
-    public void set(PhotoEntry photoEntry) {
+    public void set(CatalogPhoto photo) {
         throw new UnsupportedOperationException("set is not supported.");
     }
 
     @Override
-    public void add(PhotoEntry photoEntry) {
+    public void add(CatalogPhoto photo) {
         throw new UnsupportedOperationException("add is not supported.");
     }
 
@@ -209,4 +531,3 @@ public class SlideshowIterator implements ListIterator<PhotoEntry> {
         throw new UnsupportedOperationException("Remove it not supported.");
     }
 }
-
@@ -0,0 +1,72 @@
+package com.drampulla.gphotoslideshow;
+
+/**
+ * A place in the slideshow that is remembered across restarts.  Rather than just a number, the
+ * position records which photo in which album was showing so that it still points at the same
+ * photo after albums are added to or removed from the catalog.
+ */
+public class SlideshowPosition {
+
+    /**
+     * Separator used when the position is saved as a single preference string.  Ids never
+     * contain a newline.
+     */
+    private static final char SEPARATOR = '\n';
+
+    private final String albumId;
+    private final String photoId;
+    /**
+     * The offset of the photo within the album, used when the photo itself is gone.
+     */
+    private final int offset;
+
+    public SlideshowPosition(String albumId, String photoId, int offset) {
+        this.albumId = albumId;
+        this.photoId = photoId;
+        this.offset = offset;
+    }
+
+    public String getAlbumId() {
+        return albumId;
+    }
+
+    public String getPhotoId() {
+        return photoId;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the position as a single string suitable for storing in the preferences.
+     */
+    public String encode() {
+        return albumId + SEPARATOR + photoId + SEPARATOR + offset;
+    }
+
+    /**
+     *
+     * @param value
+     *          A string created by {@link #encode()}
+     * @return
+     *          The position, or null if the value is missing or not understood.
+     */
+    public static SlideshowPosition decode(String value) {
+        if (value == null) {
+            return null;
+        }
+        int first = value.indexOf(SEPARATOR);
+        int second = value.indexOf(SEPARATOR, first + 1);
+        if (first < 0 || second < 0) {
+            return null;
+        }
+        try {
+            return new SlideshowPosition(value.substring(0, first),
+                    value.substring(first + 1, second),
+                    Integer.parseInt(value.substring(second + 1)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.drampulla.gphotoslideshow;
+
+import android.app.Activity;
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.PowerManager;
+import android.preference.PreferenceManager;
+
+import java.util.TimeZone;
+
+/**
+ * Decides how much work the slideshow should be doing.  Nothing at all (no slides, no
+ * prefetching, no clock) while the activity is stopped, the screen is off or it is within the
+ * quiet hours from the preferences.  Less work while running on battery if that is turned on
+ * in the preferences.  Otherwise everything runs as normal.
+ *
+ * The screen is allowed to go off during the quiet hours, which stops the activity, so an
+ * alarm is set for the end of the quiet hours that starts the activity again with
+ * {@link #EXTRA_QUIET_HOURS_ENDED} (the activity then turns the screen back on).
+ *
+ * Everything here happens on the UI thread.
+ */
+public class SlideshowScheduler {
+
+    /**
+     * Default logger.
+     */
+    private static final Logger LOGGER = new Logger(SlideshowScheduler.class);
+
+    /**
+     * Everything runs as normal.
+     */
+    public static final int RUNNING = 0;
+    /**
+     * Running on battery: slides change less often and fewer are prefetched.
+     */
+    public static final int REDUCED = 1;
+    /**
+     * Nothing runs.
+     */
+    public static final int SUSPENDED = 2;
+
+    /**
+     * Set on the intent that starts the activity when the quiet hours end.
+     */
+    public static final String EXTRA_QUIET_HOURS_ENDED = "quietHoursEnded";
+
+    /**
+     * Told whenever the state changes, on the UI thread.
+     */
+    public static interface StateCallback {
+        void stateChanged(int state);
+    }
+
+    private final Activity mainActivity;
+    private final Handler handler;
+    private final StateCallback callback;
+    private final SharedPreferences sharedPreferences;
+
+    private boolean started;
+    private boolean screenOn = true;
+    private boolean pluggedIn = true;
+    private boolean quiet;
+    private int state = SUSPENDED;
+
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            String action = intent.getAction();
+            if (Intent.ACTION_SCREEN_ON.equals(action)) {
+                screenOn = true;
+            } else if (Intent.ACTION_SCREEN_OFF.equals(action)) {
+                screenOn = false;
+            } else if (Intent.ACTION_POWER_CONNECTED.equals(action)) {
+                pluggedIn = true;
+            } else if (Intent.ACTION_POWER_DISCONNECTED.equals(action)) {
+                pluggedIn = false;
+            }
+            LOGGER.d("Got %s", action);
+            update();
+        }
+    };
+
+    /**
+     * Checks the quiet hours when they start or end.
+     */
+    private final Runnable quietHoursCheck = new Runnable() {
+        @Override
+        public void run() {
+            update();
+        }
+    };
+
+    /**
+     * Keeping this as a member variable because the SharedPreferences only keep this listener
+     * as a weak reference.
+     */
+    private final SharedPreferences.OnSharedPreferenceChangeListener preferenceChangeListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+            if (PreferenceConstants.QUIET_HOURS_START.equals(key) || PreferenceConstants.QUIET_HOURS_END.equals(key)
+                    || PreferenceConstants.REDUCE_ON_BATTERY.equals(key)) {
+                LOGGER.d("Preference changed, so check the schedule");
+                update();
+            }
+        }
+    };
+
+    /**
+     *
+     * @param mainActivity
+     *          The activity showing the slideshow.
+     * @param handler
+     *          Handler on the UI thread.
+     * @param callback
+     *          Told when the state changes.
+     */
+    public SlideshowScheduler(Activity mainActivity, Handler handler, StateCallback callback) {
+        this.mainActivity = mainActivity;
+        this.handler = handler;
+        this.callback = callback;
+        this.sharedPreferences = PreferenceManager.getDefaultSharedPreferences(mainActivity.getApplicationContext());
+    }
+
+    /**
+     * The activity started, call from onStart.
+     */
+    @SuppressWarnings("deprecation")
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_SCREEN_ON);
+        filter.addAction(Intent.ACTION_SCREEN_OFF);
+        filter.addAction(Intent.ACTION_POWER_CONNECTED);
+        filter.addAction(Intent.ACTION_POWER_DISCONNECTED);
+        mainActivity.registerReceiver(receiver, filter);
+
+        // the receiver only hears about changes, so find out where things are now
+        PowerManager powerManager = (PowerManager) mainActivity.getSystemService(Context.POWER_SERVICE);
+        screenOn = powerManager == null || powerManager.isScreenOn();
+        Intent battery = mainActivity.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        pluggedIn = battery == null || battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+
+        sharedPreferences.registerOnSharedPreferenceChangeListener(preferenceChangeListener);
+        update();
+    }
+
+    /**
+     * The activity stopped, call from onStop.
+     */
+    public void stop() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        mainActivity.unregisterReceiver(receiver);
+        sharedPreferences.unregisterOnSharedPreferenceChangeListener(preferenceChangeListener);
+        update();
+    }
+
+    /**
+     * @return one of {@link #RUNNING}, {@link #REDUCED} or {@link #SUSPENDED}.
+     */
+    public int getState() {
+        return state;
+    }
+
+    /**
+     * @return true if it is currently within the quiet hours.
+     */
+    public boolean isQuietHours() {
+        return quiet;
+    }
+
+    /**
+     * Work out the state and let the callback know if it changed.
+     */
+    private void update() {
+        handler.removeCallbacks(quietHoursCheck);
+        quiet = false;
+        QuietHours quietHours = getQuietHours();
+        // this has to outlive the activity being stopped, that is when it is needed
+        scheduleWakeUp(quietHours);
+        if (started) {
+            if (quietHours != null) {
+                long now = System.currentTimeMillis();
+                TimeZone zone = TimeZone.getDefault();
+                quiet = quietHours.isQuiet(now, zone);
+                handler.postDelayed(quietHoursCheck, quietHours.nextChange(now, zone) - now);
+            }
+        }
+
+        int newState;
+        if (!started || !screenOn || quiet) {
+            newState = SUSPENDED;
+        } else if (!pluggedIn && sharedPreferences.getBoolean(PreferenceConstants.REDUCE_ON_BATTERY, false)) {
+            newState = REDUCED;
+        } else {
+            newState = RUNNING;
+        }
+        if (newState != state) {
+            if (Logger.isLoggable(Logger.INFO)) {
+                LOGGER.i(String.format("Slideshow %s (started=%b, screenOn=%b, quiet=%b, pluggedIn=%b)",
+                        newState == RUNNING ? "running" : newState == REDUCED ? "reduced" : "suspended",
+                        started, screenOn, quiet, pluggedIn));
+            }
+            state = newState;
+            callback.stateChanged(newState);
+        }
+    }
+
+    /**
+     * Set the alarm that wakes the slideshow up at the end of the quiet hours, or cancel it if
+     * there aren't any quiet hours.
+     */
+    private void scheduleWakeUp(QuietHours quietHours) {
+        AlarmManager alarmManager = (AlarmManager) mainActivity.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager == null) {
+            return;
+        }
+        Intent intent = new Intent(mainActivity, mainActivity.getClass())
+                .putExtra(EXTRA_QUIET_HOURS_ENDED, true)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_SINGLE_TOP | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        PendingIntent wakeUp = PendingIntent.getActivity(mainActivity.getApplicationContext(), 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT);
+        if (quietHours == null || quietHours.getMinutes() == 0) {
+            alarmManager.cancel(wakeUp);
+            return;
+        }
+        long at = quietHours.nextEnd(System.currentTimeMillis(), TimeZone.getDefault());
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            alarmManager.setExact(AlarmManager.RTC_WAKEUP, at, wakeUp);
+        } else {
+            alarmManager.set(AlarmManager.RTC_WAKEUP, at, wakeUp);
+        }
+    }
+
+    /**
+     * @return the quiet hours from the preferences, null if there aren't any (or they can't
+     *          be understood).
+     */
+    private QuietHours getQuietHours() {
+        try {
+            return QuietHours.parse(sharedPreferences.getString(PreferenceConstants.QUIET_HOURS_START, ""),
+                    sharedPreferences.getString(PreferenceConstants.QUIET_HOURS_END, ""));
+        } catch (IllegalArgumentException e) {
+            LOGGER.w("Ignoring the quiet hours", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.drampulla.gphotoslideshow;
+
+/**
+ * An album as listed by a {@link PhotoSource}, before its photos have been loaded.  This is
+ * just enough to decide whether the copy in the {@link PhotoCatalog} is still up to date.
+ */
+public class SourceAlbum {
+
+    /**
+     * The photo count of an album whose source doesn't say how many photos it has.
+     */
+    public static final int UNKNOWN_PHOTO_COUNT = -1;
+
+    /**
+     * The unique id of the album within its source.
+     */
+    private final String id;
+    /**
+     * The title shown to the user (and matched by the include/exclude expressions).
+     */
+    private final String title;
+    /**
+     * When the album last changed in milliseconds since the epoch.
+     */
+    private final long updated;
+    /**
+     * How many photos the album has, or {@link #UNKNOWN_PHOTO_COUNT}.
+     */
+    private final int photoCount;
+
+    public SourceAlbum(String id, String title, long updated) {
+        this(id, title, updated, UNKNOWN_PHOTO_COUNT);
+    }
+
+    public SourceAlbum(String id, String title, long updated, int photoCount) {
+        this.id = id;
+        this.title = title;
+        this.updated = updated;
+        this.photoCount = photoCount;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public long getUpdated() {
+        return updated;
+    }
+
+    public int getPhotoCount() {
+        return photoCount;
+    }
+}
@@ -0,0 +1,48 @@
+package com.drampulla.gphotoslideshow;
+
+import java.util.List;
+
+/**
+ * The albums listed by a {@link PhotoSource} along with the version of the list, or just a
+ * note that the list hasn't changed since the version the catalog already has.
+ */
+public class SourceAlbumList {
+
+    /**
+     * The albums in the order they should be shown, null if they haven't changed.
+     */
+    private final List<SourceAlbum> albums;
+    /**
+     * Identifies this list (e.g. the ETag of the feed), empty if the source doesn't have one.
+     */
+    private final String version;
+
+    public SourceAlbumList(List<SourceAlbum> albums, String version) {
+        this.albums = albums;
+        this.version = version == null ? "" : version;
+    }
+
+    /**
+     * @param version
+     *          The version the caller already has.
+     * @return a list saying nothing has changed since that version.
+     */
+    public static SourceAlbumList unchanged(String version) {
+        return new SourceAlbumList(null, version);
+    }
+
+    /**
+     * @return true if the albums are the same as the version the caller already has.
+     */
+    public boolean isUnchanged() {
+        return albums == null;
+    }
+
+    public List<SourceAlbum> getAlbums() {
+        return albums;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+}
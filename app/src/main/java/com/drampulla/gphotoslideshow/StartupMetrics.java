@@ -0,0 +1,86 @@
+package com.drampulla.gphotoslideshow;
+
+import android.os.SystemClock;
+
+/**
+ * Keeps track of how long it takes from the app starting until the first slide is
+ * actually on the screen.  The times are measured with {@link SystemClock#elapsedRealtime()}
+ * so they aren't thrown off by the wall clock changing.
+ */
+public class StartupMetrics {
+
+    /**
+     * Default logger.
+     */
+    private static final Logger LOGGER = new Logger(StartupMetrics.class);
+
+    /**
+     * When the activity was created, or -1 if it hasn't been yet.
+     */
+    private static long startTime = -1;
+
+    /**
+     * How long until the slideshow iterator could be used, or -1 if it isn't ready yet.
+     */
+    private static long timeToSlideshowReady = -1;
+
+    /**
+     * How long until the first slide was displayed, or -1 if it hasn't been yet.
+     */
+    private static long timeToFirstSlide = -1;
+
+    private StartupMetrics() {
+    }
+
+    /**
+     * Start the clock.  Called when the activity is created.
+     */
+    public static synchronized void markStart() {
+        startTime = SystemClock.elapsedRealtime();
+        timeToSlideshowReady = -1;
+        timeToFirstSlide = -1;
+    }
+
+    /**
+     * The slideshow has something to show.
+     *
+     * @param photoCount
+     *          How many photos the slideshow started with.
+     * @param partial
+     *          true if the rest of the catalog is still being loaded.
+     */
+    public static synchronized void markSlideshowReady(int photoCount, boolean partial) {
+        if (startTime < 0 || timeToSlideshowReady >= 0) {
+            return;
+        }
+        timeToSlideshowReady = SystemClock.elapsedRealtime() - startTime;
+        LOGGER.i(String.format("Slideshow ready with %d photos%s after %dms.",
+                photoCount, partial ? " (catalog still loading)" : "", timeToSlideshowReady));
+    }
+
+    /**
+     * A slide is on the screen.  Only the first one after {@link #markStart()} counts.
+     */
+    public static synchronized void markSlideDisplayed() {
+        if (startTime < 0 || timeToFirstSlide >= 0) {
+            return;
+        }
+        timeToFirstSlide = SystemClock.elapsedRealtime() - startTime;
+        LOGGER.i(String.format("Time to first slide: %dms (slideshow ready after %dms).",
+                timeToFirstSlide, timeToSlideshowReady));
+    }
+
+    /**
+     * @return how long the slideshow took to become usable, or -1 if it isn't yet.
+     */
+    public static synchronized long getTimeToSlideshowReady() {
+        return timeToSlideshowReady;
+    }
+
+    /**
+     * @return how long the first slide took to get on the screen, or -1 if it hasn't yet.
+     */
+    public static synchronized long getTimeToFirstSlide() {
+        return timeToFirstSlide;
+    }
+}
@@ -0,0 +1,228 @@
+package com.drampulla.gphotoslideshow;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+
+/**
+ * Index of when the photos in the slideshow were taken, so that "on this day" and date range
+ * playlists don't have to look at every photo.
+ *
+ * The timestamps are kept sorted in a plain long[] (with the global index of each photo, see
+ * {@link AlbumPositionIndex}, in a matching int[]) so a date range is two binary searches.
+ * The photos are also grouped into month-day buckets (in the given time zone) so "on this day"
+ * in every year is a single lookup.  Photos without a timestamp aren't put in any bucket.
+ *
+ * Queries return global indexes in the order the photos were taken.
+ */
+public class TimestampIndex {
+
+    /**
+     * Number of month-day buckets, every month gets 31 days to keep the math simple.
+     */
+    private static final int DAY_KEYS = 12 * 31;
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private final TimeZone timeZone;
+
+    /**
+     * Capture times, oldest first.
+     */
+    private final long[] timestamps;
+    /**
+     * photoIndexes[i] is the global index of the photo taken at timestamps[i].
+     */
+    private final int[] photoIndexes;
+    /**
+     * The global indexes grouped by month-day, oldest first within each day.  The photos for
+     * day key k are dayPhotoIndexes[dayStarts[k]] up to dayPhotoIndexes[dayStarts[k + 1]].
+     */
+    private final int[] dayStarts;
+    private final int[] dayPhotoIndexes;
+
+    /**
+     *
+     * @param positionIndex
+     *          The photos in the slideshow.
+     * @param timeZone
+     *          The time zone used to work out which day a photo was taken on.
+     */
+    public TimestampIndex(AlbumPositionIndex positionIndex, TimeZone timeZone) {
+        this.timeZone = timeZone;
+        int size = positionIndex.size();
+        this.timestamps = new long[size];
+        this.photoIndexes = new int[size];
+        int n = 0;
+        for (int a = 0; a < positionIndex.getAlbumCount(); a++) {
+            CatalogAlbum album = positionIndex.getAlbum(a);
+            for (int i = 0; i < album.getPhotoCount(); i++) {
+                timestamps[n] = album.getPhotoTimestamp(i);
+                photoIndexes[n] = n;
+                n++;
+            }
+        }
+        sort(timestamps, photoIndexes);
+
+        // counting sort into the day buckets, which keeps each bucket oldest first
+        int[] dayKeys = new int[size];
+        this.dayStarts = new int[DAY_KEYS + 1];
+        for (int i = 0; i < size; i++) {
+            dayKeys[i] = timestamps[i] > 0 ? dayKey(timestamps[i], timeZone) : -1;
+            if (dayKeys[i] >= 0) {
+                dayStarts[dayKeys[i] + 1]++;
+            }
+        }
+        for (int k = 0; k < DAY_KEYS; k++) {
+            dayStarts[k + 1] += dayStarts[k];
+        }
+        this.dayPhotoIndexes = new int[dayStarts[DAY_KEYS]];
+        int[] next = Arrays.copyOf(dayStarts, DAY_KEYS);
+        for (int i = 0; i < size; i++) {
+            if (dayKeys[i] >= 0) {
+                dayPhotoIndexes[next[dayKeys[i]]++] = photoIndexes[i];
+            }
+        }
+    }
+
+    /**
+     * @return the number of photos in the index.
+     */
+    public int size() {
+        return timestamps.length;
+    }
+
+    /**
+     * @param fromInclusive
+     *          Start of the range in milliseconds since the epoch.
+     * @param toExclusive
+     *          End of the range in milliseconds since the epoch.
+     * @return
+     *          The global indexes of the photos taken in the range, oldest first.
+     */
+    public int[] range(long fromInclusive, long toExclusive) {
+        int from = lowerBound(fromInclusive);
+        int to = Math.max(from, lowerBound(toExclusive));
+        return Arrays.copyOfRange(photoIndexes, from, to);
+    }
+
+    /**
+     * @param month
+     *          1 to 12.
+     * @param dayOfMonth
+     *          1 to 31.
+     * @return
+     *          The global indexes of the photos taken on that day in any year, oldest first.
+     */
+    public int[] onThisDay(int month, int dayOfMonth) {
+        if (month < 1 || month > 12 || dayOfMonth < 1 || dayOfMonth > 31) {
+            throw new IllegalArgumentException("Not a valid day: " + month + "/" + dayOfMonth);
+        }
+        int key = (month - 1) * 31 + dayOfMonth - 1;
+        return Arrays.copyOfRange(dayPhotoIndexes, dayStarts[key], dayStarts[key + 1]);
+    }
+
+    /**
+     * @param now
+     *          The current time in milliseconds since the epoch.
+     * @return
+     *          The global indexes of the photos taken on today's month and day in any year,
+     *          oldest first.
+     */
+    public int[] onThisDay(long now) {
+        int key = dayKey(now, timeZone);
+        return onThisDay(key / 31 + 1, key % 31 + 1);
+    }
+
+    /**
+     * @return the index of the first timestamp that is not before the given time.
+     */
+    private int lowerBound(long timestamp) {
+        int low = 0;
+        int high = timestamps.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the month-day bucket ((month - 1) * 31 + day - 1) a time falls on in the time zone.
+     */
+    static int dayKey(long timestamp, TimeZone timeZone) {
+        long localMillis = timestamp + timeZone.getOffset(timestamp);
+        long days = floorDiv(localMillis, MILLIS_PER_DAY);
+
+        // civil date from days since 1970-01-01 (Howard Hinnant's algorithm), without
+        // creating a Calendar for every photo
+        long z = days + 719468;
+        long era = floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        return (month - 1) * 31 + day - 1;
+    }
+
+    /**
+     * Division that rounds toward negative infinity (Math.floorDiv isn't available on older
+     * versions of Android).
+     */
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        return (x % y != 0 && (x < 0) != (y < 0)) ? q - 1 : q;
+    }
+
+    /**
+     * Sort the timestamps (and the matching indexes with them).  This is a merge sort since
+     * the photos in an album usually arrive mostly in order already.
+     */
+    private static void sort(long[] keys, int[] values) {
+        int n = keys.length;
+        long[] keyBuffer = new long[n];
+        int[] valueBuffer = new int[n];
+        long[] fromKeys = keys;
+        int[] fromValues = values;
+        long[] toKeys = keyBuffer;
+        int[] toValues = valueBuffer;
+        for (int width = 1; width < n; width *= 2) {
+            for (int low = 0; low < n; low += 2 * width) {
+                int mid = Math.min(low + width, n);
+                int high = Math.min(low + 2 * width, n);
+                if (mid == high || fromKeys[mid - 1] <= fromKeys[mid]) {
+                    // already in order
+                    System.arraycopy(fromKeys, low, toKeys, low, high - low);
+                    System.arraycopy(fromValues, low, toValues, low, high - low);
+                    continue;
+                }
+                int i = low;
+                int j = mid;
+                for (int k = low; k < high; k++) {
+                    if (j >= high || (i < mid && fromKeys[i] <= fromKeys[j])) {
+                        toKeys[k] = fromKeys[i];
+                        toValues[k] = fromValues[i++];
+                    } else {
+                        toKeys[k] = fromKeys[j];
+                        toValues[k] = fromValues[j++];
+                    }
+                }
+            }
+            long[] swapKeys = fromKeys;
+            fromKeys = toKeys;
+            toKeys = swapKeys;
+            int[] swapValues = fromValues;
+            fromValues = toValues;
+            toValues = swapValues;
+        }
+        if (fromKeys != keys) {
+            System.arraycopy(fromKeys, 0, keys, 0, n);
+            System.arraycopy(fromValues, 0, values, 0, n);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.drampulla.gphotoslideshow;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how fast bytes are read, shared by everything that downloads images so that all of
+ * them together stay under the limit.  Tokens (bytes) build up at the rate up to a burst size;
+ * a read that takes more than what is there goes into debt and the reader waits until the
+ * debt is paid off, so big reads are allowed but the average rate is kept.
+ */
+public class TokenBucket {
+
+    /**
+     * Bytes per second, 0 for no limit.
+     */
+    private long rate;
+    /**
+     * The most tokens that can build up while nothing is being read.
+     */
+    private long burst;
+    /**
+     * Tokens available, negative when in debt.
+     */
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     *
+     * @param bytesPerSecond
+     *          The limit, 0 for no limit.
+     */
+    public TokenBucket(long bytesPerSecond) {
+        setRate(bytesPerSecond, System.nanoTime());
+    }
+
+    /**
+     * Change the limit.
+     *
+     * @param bytesPerSecond
+     *          The new limit, 0 for no limit.
+     */
+    public void setRate(long bytesPerSecond) {
+        setRate(bytesPerSecond, System.nanoTime());
+    }
+
+    synchronized void setRate(long bytesPerSecond, long nowNanos) {
+        rate = Math.max(0, bytesPerSecond);
+        // allow a quarter of a second worth of bytes in one go
+        burst = Math.max(16 * 1024, rate / 4);
+        tokens = burst;
+        lastRefillNanos = nowNanos;
+    }
+
+    public synchronized long getRate() {
+        return rate;
+    }
+
+    /**
+     * Take tokens for bytes that have just been read.
+     *
+     * @param bytes
+     *          How many bytes were read.
+     * @param nowNanos
+     *          The current {@link System#nanoTime()}.
+     * @return
+     *          How long the reader should wait (in nanoseconds) before reading any more.
+     */
+    synchronized long reserve(long bytes, long nowNanos) {
+        if (rate == 0) {
+            return 0;
+        }
+        tokens = Math.min(burst, tokens + (nowNanos - lastRefillNanos) * rate / 1e9);
+        lastRefillNanos = nowNanos;
+        tokens -= bytes;
+        return tokens >= 0 ? 0 : (long) (-tokens * 1e9 / rate);
+    }
+
+    /**
+     * Take tokens for bytes that have just been read, waiting if it went over the limit.
+     *
+     * @param bytes
+     *          How many bytes were read.
+     * @throws InterruptedIOException
+     *          If the thread is interrupted while waiting.
+     */
+    public void acquire(long bytes) throws InterruptedIOException {
+        long wait = reserve(bytes, System.nanoTime());
+        if (wait <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for bandwidth");
+        }
+    }
+}
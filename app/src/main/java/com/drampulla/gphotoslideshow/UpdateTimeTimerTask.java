@@ -1,62 +1,167 @@
 package com.drampulla.gphotoslideshow;
 
 import android.app.Activity;
+import android.content.SharedPreferences;
 import android.os.Handler;
 import android.preference.PreferenceManager;
 import android.widget.TextView;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.TimerTask;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.TimeZone;
 
 /**
  * This class is just meant to update the time on the screen.
+ *
+ * It only wakes up when the text can change: on the boundaries of the smallest unit the
+ * time format shows ({@link ClockTicks}), so once a minute for "HH:mm".  The formatter is kept
+ * until the preference changes, the text is only set when it is different, and nothing runs
+ * at all while the time isn't shown or the slideshow is stopped.
  */
 public class UpdateTimeTimerTask {
 
     private static final Logger LOGGER = new Logger(UpdateTimeTimerTask.class);
 
-    private static final ScheduledExecutorService EXECUTOR = Executors.newScheduledThreadPool(1);
+    /**
+     * Used when the time format in the preferences can't be parsed.
+     */
+    private static final String DEFAULT_TIME_FORMAT = "HH:mm:ss";
 
     private final Activity mainActivity;
     private final Handler handler;
+    private final SharedPreferences sharedPreferences;
+
+    /**
+     * Keeping this as a member variable because the SharedPreferences only keep this listener
+     * as a weak reference.
+     */
+    private final SharedPreferences.OnSharedPreferenceChangeListener preferenceChangeListener;
+
+    /**
+     * Only touched on the UI thread.
+     */
+    private SimpleDateFormat formatter;
+    private TimeZone formatterTimeZone;
+    private long unit;
+    private boolean showTime;
+    private boolean running;
+    private String lastText;
+    private final Date date = new Date();
+
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            updateTime();
+        }
+    };
 
     public UpdateTimeTimerTask(Activity mainActivity, Handler handler) {
         this.mainActivity = mainActivity;
         this.handler = handler;
-        EXECUTOR.scheduleAtFixedRate(new Runnable() {
-                                                  @Override
-                                                  public void run() { updateTime(); }
-                                              },
-                1,
-                1,
-                TimeUnit.SECONDS);
+        this.sharedPreferences = PreferenceManager.getDefaultSharedPreferences(mainActivity.getApplicationContext());
+        this.preferenceChangeListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+            @Override
+            public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                if (PreferenceConstants.SHOW_TIME.equals(key) || PreferenceConstants.TIME_FORMAT.equals(key)) {
+                    LOGGER.d("Preference changed, so update the time format");
+                    UpdateTimeTimerTask.this.handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (running) {
+                                readPreferences();
+                                reschedule();
+                            }
+                        }
+                    });
+                }
+            }
+        };
     }
 
-    private void updateTime() {
+    /**
+     * Start showing the time (if it is turned on in the preferences).
+     */
+    public void start() {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (running) {
+                    return;
+                }
+                running = true;
+                sharedPreferences.registerOnSharedPreferenceChangeListener(preferenceChangeListener);
+                readPreferences();
+                reschedule();
+            }
+        });
+    }
+
+    /**
+     * Stop waking up to update the time, e.g. while the screen is off.
+     */
+    public void stop() {
         handler.post(new Runnable() {
             @Override
             public void run() {
-                TextView textView = (TextView) mainActivity.findViewById(R.id.image_display_time_text);
-                if (PreferenceManager.getDefaultSharedPreferences(mainActivity.getApplicationContext()).getBoolean(PreferenceConstants.SHOW_TIME, false)) {
-                    String dateFormat = PreferenceManager.getDefaultSharedPreferences(mainActivity.getApplicationContext()).getString(PreferenceConstants.TIME_FORMAT, "HH:mm:ss");
-                    try {
-                        SimpleDateFormat dateTimeFormatter = new SimpleDateFormat(dateFormat);
-                        String dateText = dateTimeFormatter.format(new Date());
-                        textView.setText(dateText);
-                    } catch (Exception e) {
-                        LOGGER.w("Failed to parse date " + dateFormat, e);
-                        dateFormat = "HH:mm:ss";
-                        SimpleDateFormat dateTimeFormatter = new SimpleDateFormat(dateFormat);
-                        textView.setText(dateTimeFormatter.format(new Date()));
-                    }
-                } else {
-                    textView.setText("");
+                if (!running) {
+                    return;
                 }
+                running = false;
+                sharedPreferences.unregisterOnSharedPreferenceChangeListener(preferenceChangeListener);
+                handler.removeCallbacks(tick);
             }
         });
     }
+
+    private void readPreferences() {
+        showTime = sharedPreferences.getBoolean(PreferenceConstants.SHOW_TIME, false);
+        String dateFormat = sharedPreferences.getString(PreferenceConstants.TIME_FORMAT, DEFAULT_TIME_FORMAT);
+        try {
+            formatter = new SimpleDateFormat(dateFormat);
+        } catch (Exception e) {
+            LOGGER.w("Failed to parse date " + dateFormat, e);
+            dateFormat = DEFAULT_TIME_FORMAT;
+            formatter = new SimpleDateFormat(dateFormat);
+        }
+        formatterTimeZone = formatter.getTimeZone();
+        unit = ClockTicks.smallestUnit(dateFormat);
+        lastText = null;
+    }
+
+    private void reschedule() {
+        handler.removeCallbacks(tick);
+        if (showTime) {
+            updateTime();
+        } else {
+            setText("");
+        }
+    }
+
+    /**
+     * Show the time and wait until the next time it can change.
+     */
+    private void updateTime() {
+        if (!running || !showTime) {
+            return;
+        }
+        TimeZone zone = TimeZone.getDefault();
+        if (!zone.equals(formatterTimeZone)) {
+            // the device moved to another time zone
+            formatter.setTimeZone(zone);
+            formatterTimeZone = zone;
+        }
+        long now = System.currentTimeMillis();
+        date.setTime(now);
+        setText(formatter.format(date));
+        handler.postDelayed(tick, ClockTicks.nextTick(now, unit, zone) - now);
+    }
+
+    private void setText(String text) {
+        if (text.equals(lastText)) {
+            return;
+        }
+        lastText = text;
+        TextView textView = (TextView) mainActivity.findViewById(R.id.image_display_time_text);
+        textView.setText(text);
+    }
 }
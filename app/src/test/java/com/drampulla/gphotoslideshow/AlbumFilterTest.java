@@ -0,0 +1,43 @@
+package com.drampulla.gphotoslideshow;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the include/exclude album filter.
+ */
+public class AlbumFilterTest {
+
+    private static PhotoCatalog catalog(String... titles) {
+        CatalogAlbum[] albums = new CatalogAlbum[titles.length];
+        for (int i = 0; i < titles.length; i++) {
+            albums[i] = new CatalogAlbum("id" + i, titles[i], 0,
+                    Collections.singletonList(new CatalogPhoto("id" + i, "p" + i, "http://example.com/" + i, "p", 0, 1, 1)));
+        }
+        return new PhotoCatalog(Arrays.asList(albums));
+    }
+
+    @Test
+    public void apply_emptyIncludeMeansEverything() throws Exception {
+        List<CatalogAlbum> albums = new AlbumFilter("", "").apply(catalog("Vacation", "Family"));
+        assertEquals(2, albums.size());
+    }
+
+    @Test
+    public void apply_keepsCatalogOrder() throws Exception {
+        List<CatalogAlbum> albums = new AlbumFilter("20.*", ".*Work.*").apply(catalog("2016 Beach", "2017 Work Party", "Misc", "2017 Hike"));
+        assertEquals(2, albums.size());
+        assertEquals("2016 Beach", albums.get(0).getTitle());
+        assertEquals("2017 Hike", albums.get(1).getTitle());
+    }
+
+    @Test(expected = EmptySlideshowException.class)
+    public void apply_reportsWhenNothingMatches() throws Exception {
+        new AlbumFilter("Nothing.*", "").apply(catalog("Vacation", "Family"));
+    }
+}
@@ -0,0 +1,52 @@
+package com.drampulla.gphotoslideshow;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the mapping between global slideshow indexes and album positions.
+ */
+public class AlbumPositionIndexTest {
+
+    private static CatalogAlbum album(String id, int photoCount) {
+        List<CatalogPhoto> photos = new ArrayList<>();
+        for (int i = 0; i < photoCount; i++) {
+            photos.add(new CatalogPhoto(id, id + "-" + i, "http://example.com/" + id + "/" + i, "photo" + i, i, 10, 10));
+        }
+        return new CatalogAlbum(id, "Album " + id, 0, photos);
+    }
+
+    @Test
+    public void photoAt_walksAcrossAlbums() throws Exception {
+        AlbumPositionIndex index = new AlbumPositionIndex(Arrays.asList(album("a", 3), album("b", 0), album("c", 2)));
+
+        assertEquals(5, index.size());
+        assertEquals("a-0", index.photoAt(0).getId());
+        assertEquals("a-2", index.photoAt(2).getId());
+        assertEquals("c-0", index.photoAt(3).getId());
+        assertEquals("c-1", index.photoAt(4).getId());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void photoAt_rejectsIndexPastTheEnd() throws Exception {
+        new AlbumPositionIndex(Arrays.asList(album("a", 3))).photoAt(3);
+    }
+
+    @Test
+    public void indexOf_survivesAlbumsBeingAddedAndRemoved() throws Exception {
+        AlbumPositionIndex before = new AlbumPositionIndex(Arrays.asList(album("a", 3), album("b", 4), album("c", 2)));
+        SlideshowPosition position = before.positionOf(5);
+        assertEquals("b-2", position.getPhotoId());
+
+        AlbumPositionIndex after = new AlbumPositionIndex(Arrays.asList(album("new", 7), album("b", 4), album("c", 2)));
+        assertEquals(9, after.indexOf(SlideshowPosition.decode(position.encode())));
+
+        AlbumPositionIndex removed = new AlbumPositionIndex(Arrays.asList(album("a", 3), album("c", 2)));
+        assertEquals(-1, removed.indexOf(position));
+    }
+}
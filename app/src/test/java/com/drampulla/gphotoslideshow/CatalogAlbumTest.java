@@ -0,0 +1,72 @@
+package com.drampulla.gphotoslideshow;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for applying the photos that changed to an album that is already in the catalog.
+ */
+public class CatalogAlbumTest {
+
+    private static CatalogPhoto photo(String id, String title) {
+        return new CatalogPhoto("a", id, "http://example.com/" + id, title, 0, 1, 1);
+    }
+
+    private static CatalogAlbum album(CatalogPhoto... photos) {
+        return new CatalogAlbum("a", "Album", 100, Arrays.asList(photos));
+    }
+
+    private static Set<String> idSet(String... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+
+    private static List<String> ids(CatalogAlbum album) {
+        List<String> rc = new ArrayList<>();
+        for (CatalogPhoto photo : album.getPhotos()) {
+            rc.add(photo.getId());
+        }
+        return rc;
+    }
+
+    @Test
+    public void withChanges_replacesInPlaceAndAppendsNew() throws Exception {
+        CatalogAlbum album = album(photo("1", "one"), photo("2", "two"), photo("3", "three"));
+        CatalogAlbum merged = album.withChanges("Renamed", 200,
+                Arrays.asList(photo("4", "four"), photo("2", "two again")), idSet("1", "2", "3", "4"));
+        assertNotNull(merged);
+        assertEquals(Arrays.asList("1", "2", "3", "4"), ids(merged));
+        assertEquals("two again", merged.getPhoto(1).getTitle());
+        assertEquals("Renamed", merged.getTitle());
+        assertEquals(200, merged.getUpdated());
+    }
+
+    @Test
+    public void withChanges_nothingChanged() throws Exception {
+        CatalogAlbum album = album(photo("1", "one"), photo("2", "two"));
+        CatalogAlbum merged = album.withChanges("Album", 200, Collections.<CatalogPhoto>emptyList(), idSet("1", "2"));
+        assertEquals(Arrays.asList("1", "2"), ids(merged));
+    }
+
+    @Test
+    public void withChanges_dropsDeletedPhotos() throws Exception {
+        // one deleted and one added, so the count alone looks the same
+        CatalogAlbum album = album(photo("1", "one"), photo("2", "two"));
+        CatalogAlbum merged = album.withChanges("Album", 200, Collections.singletonList(photo("3", "three")),
+                idSet("1", "3"));
+        assertEquals(Arrays.asList("1", "3"), ids(merged));
+    }
+
+    @Test
+    public void withChanges_missingPhotosNeedAFullLoad() throws Exception {
+        CatalogAlbum album = album(photo("1", "one"), photo("2", "two"));
+        assertNull(album.withChanges("Album", 200, Collections.<CatalogPhoto>emptyList(), idSet("1", "2", "3")));
+    }
+}
@@ -0,0 +1,72 @@
+package com.drampulla.gphotoslideshow;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for working out when the clock text can change.
+ */
+public class ClockTicksTest {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    @Test
+    public void smallestUnit() throws Exception {
+        assertEquals(ClockTicks.SECOND, ClockTicks.smallestUnit("HH:mm:ss"));
+        assertEquals(ClockTicks.MINUTE, ClockTicks.smallestUnit("yyyy-MM-dd HH:mm"));
+        assertEquals(ClockTicks.HOUR, ClockTicks.smallestUnit("h a"));
+        assertEquals(ClockTicks.DAY, ClockTicks.smallestUnit("EEE, MMM d"));
+        assertEquals(ClockTicks.MIN_TICK, ClockTicks.smallestUnit("HH:mm:ss.SSS"));
+    }
+
+    @Test
+    public void smallestUnit_ignoresQuotedText() throws Exception {
+        assertEquals(ClockTicks.MINUTE, ClockTicks.smallestUnit("HH:mm 'so far this session'"));
+        assertEquals(ClockTicks.DAY, ClockTicks.smallestUnit("'It''s' EEEE"));
+    }
+
+    @Test
+    public void nextTick_alignsToUnit() throws Exception {
+        long now = 1500000012345L;
+        assertEquals(1500000013000L, ClockTicks.nextTick(now, ClockTicks.SECOND, UTC));
+        assertEquals(1500000060000L, ClockTicks.nextTick(now, ClockTicks.MINUTE, UTC));
+        // exactly on a boundary waits for the next one
+        assertEquals(1500000060000L + ClockTicks.MINUTE, ClockTicks.nextTick(1500000060000L, ClockTicks.MINUTE, UTC));
+    }
+
+    @Test
+    public void nextTick_localMidnightAndHalfHourZones() throws Exception {
+        TimeZone kolkata = TimeZone.getTimeZone("Asia/Kolkata");
+        Calendar calendar = Calendar.getInstance(kolkata);
+        calendar.clear();
+        calendar.set(2017, Calendar.MARCH, 20, 14, 10, 0);
+        long now = calendar.getTimeInMillis();
+
+        calendar.set(2017, Calendar.MARCH, 20, 15, 0, 0);
+        assertEquals(calendar.getTimeInMillis(), ClockTicks.nextTick(now, ClockTicks.HOUR, kolkata));
+        calendar.set(2017, Calendar.MARCH, 21, 0, 0, 0);
+        assertEquals(calendar.getTimeInMillis(), ClockTicks.nextTick(now, ClockTicks.DAY, kolkata));
+    }
+
+    @Test
+    public void nextTick_acrossDaylightSaving() throws Exception {
+        TimeZone newYork = TimeZone.getTimeZone("America/New_York");
+        Calendar calendar = Calendar.getInstance(newYork);
+        calendar.clear();
+        // clocks went forward at 2am on March 12 2017 (the day is an hour short)
+        calendar.set(2017, Calendar.MARCH, 12, 0, 30, 0);
+        long now = calendar.getTimeInMillis();
+        calendar.set(2017, Calendar.MARCH, 13, 0, 0, 0);
+        assertEquals(calendar.getTimeInMillis(), ClockTicks.nextTick(now, ClockTicks.DAY, newYork));
+
+        // and back at 2am on November 5
+        calendar.set(2017, Calendar.NOVEMBER, 5, 0, 30, 0);
+        now = calendar.getTimeInMillis();
+        calendar.set(2017, Calendar.NOVEMBER, 6, 0, 0, 0);
+        assertEquals(calendar.getTimeInMillis(), ClockTicks.nextTick(now, ClockTicks.DAY, newYork));
+    }
+}
@@ -0,0 +1,72 @@
+package com.drampulla.gphotoslideshow;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the on-disk image cache.
+ */
+public class ImageDiskCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void get_returnsWhatWasPut() throws Exception {
+        ImageDiskCache cache = new ImageDiskCache(folder.getRoot(), 1024);
+        cache.put("http://example.com/a.jpg", new byte[]{1, 2, 3});
+
+        assertArrayEquals(new byte[]{1, 2, 3}, cache.get("http://example.com/a.jpg"));
+        assertNull(cache.get("http://example.com/b.jpg"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(3, cache.getBytesSaved());
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() throws Exception {
+        // each entry is 100 bytes of data plus the header
+        ImageDiskCache cache = new ImageDiskCache(folder.getRoot(), 250);
+        cache.put("a", new byte[100]);
+        cache.put("b", new byte[100]);
+        cache.get("a");
+        cache.put("c", new byte[100]);
+
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+        assertTrue(cache.getTotalBytes() <= 250);
+    }
+
+    @Test
+    public void get_dropsDamagedEntries() throws Exception {
+        ImageDiskCache cache = new ImageDiskCache(folder.getRoot(), 1024);
+        cache.put("a", new byte[]{1, 2, 3, 4});
+        File[] files = folder.getRoot().listFiles();
+        assertEquals(1, files.length);
+        try (RandomAccessFile raf = new RandomAccessFile(files[0], "rw")) {
+            raf.seek(raf.length() - 1);
+            raf.write(99);
+        }
+
+        assertNull(cache.get("a"));
+        assertFalse(cache.contains("a"));
+        assertEquals(0, folder.getRoot().listFiles().length);
+    }
+
+    @Test
+    public void constructor_reloadsEntriesAndRemovesUnfinishedWrites() throws Exception {
+        new ImageDiskCache(folder.getRoot(), 1024).put("a", new byte[]{5});
+        assertTrue(new File(folder.getRoot(), "leftover.123.tmp").createNewFile());
+
+        ImageDiskCache cache = new ImageDiskCache(folder.getRoot(), 1024);
+        assertArrayEquals(new byte[]{5}, cache.get("a"));
+        assertFalse(new File(folder.getRoot(), "leftover.123.tmp").exists());
+    }
+}
@@ -0,0 +1,138 @@
+package com.drampulla.gphotoslideshow;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Calendar;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for reading image sizes and dates without decoding.
+ */
+public class ImageHeaderTest {
+
+    private static final String DATE = "2014:07:04 18:30:05";
+
+    /**
+     * A big endian EXIF segment with an orientation in IFD0 and DateTimeOriginal in the EXIF IFD.
+     */
+    private static byte[] exif(int orientation) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeBytes("Exif\0\0");
+        out.writeBytes("MM");
+        out.writeShort(42);
+        out.writeInt(8);
+        // IFD0 at 8: two entries
+        out.writeShort(2);
+        out.writeShort(0x0112);
+        out.writeShort(3);
+        out.writeInt(1);
+        out.writeShort(orientation);
+        out.writeShort(0);
+        out.writeShort(0x8769);
+        out.writeShort(4);
+        out.writeInt(1);
+        out.writeInt(38);
+        out.writeInt(0);
+        // EXIF IFD at 38: one entry pointing at the date at 56
+        out.writeShort(1);
+        out.writeShort(0x9003);
+        out.writeShort(2);
+        out.writeInt(DATE.length() + 1);
+        out.writeInt(56);
+        out.writeInt(0);
+        out.writeBytes(DATE);
+        out.writeByte(0);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] jpeg(byte[] app1, int width, int height) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeShort(0xFFD8);
+        // an APP0 segment to skip over
+        out.writeShort(0xFFE0);
+        out.writeShort(2 + 5);
+        out.writeBytes("JFIF\0");
+        if (app1 != null) {
+            out.writeShort(0xFFE1);
+            out.writeShort(2 + app1.length);
+            out.write(app1);
+        }
+        out.writeShort(0xFFC0);
+        out.writeShort(2 + 6);
+        out.writeByte(8);
+        out.writeShort(height);
+        out.writeShort(width);
+        out.writeByte(3);
+        out.writeShort(0xFFDA);
+        return bytes.toByteArray();
+    }
+
+    private static ImageHeader read(byte[] data) throws IOException {
+        return ImageHeader.read(new ByteArrayInputStream(data));
+    }
+
+    @Test
+    public void read_jpegWithExif() throws Exception {
+        ImageHeader header = read(jpeg(exif(1), 4032, 3024));
+        assertEquals(4032, header.getWidth());
+        assertEquals(3024, header.getHeight());
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(header.getTimestamp());
+        assertEquals(2014, calendar.get(Calendar.YEAR));
+        assertEquals(Calendar.JULY, calendar.get(Calendar.MONTH));
+        assertEquals(4, calendar.get(Calendar.DAY_OF_MONTH));
+        assertEquals(18, calendar.get(Calendar.HOUR_OF_DAY));
+    }
+
+    @Test
+    public void read_jpegRotatedSwapsDimensions() throws Exception {
+        ImageHeader header = read(jpeg(exif(6), 4032, 3024));
+        assertEquals(3024, header.getWidth());
+        assertEquals(4032, header.getHeight());
+    }
+
+    @Test
+    public void read_jpegWithoutExif() throws Exception {
+        ImageHeader header = read(jpeg(null, 640, 480));
+        assertEquals(640, header.getWidth());
+        assertEquals(480, header.getHeight());
+        assertEquals(-1, header.getTimestamp());
+    }
+
+    @Test
+    public void read_png() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+        out.writeInt(13);
+        out.writeBytes("IHDR");
+        out.writeInt(1920);
+        out.writeInt(1080);
+        ImageHeader header = read(bytes.toByteArray());
+        assertEquals(1920, header.getWidth());
+        assertEquals(1080, header.getHeight());
+    }
+
+    @Test
+    public void read_unknownOrTruncated() throws Exception {
+        assertNull(read("GIF89a....".getBytes("US-ASCII")));
+        byte[] jpeg = jpeg(exif(1), 10, 10);
+        assertNull(read(Arrays.copyOf(jpeg, 30)));
+    }
+
+    @Test
+    public void parseExifDate_rejectsUnsetClock() throws Exception {
+        assertEquals(-1, ImageHeader.parseExifDate("0000:00:00 00:00:00"));
+        assertEquals(-1, ImageHeader.parseExifDate("garbage"));
+        assertTrue(ImageHeader.parseExifDate(DATE) > 0);
+    }
+}
@@ -0,0 +1,26 @@
+package com.drampulla.gphotoslideshow;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the wait between image download retries.
+ */
+public class ImageHttpClientTest {
+
+    @Test
+    public void backoff_growsWithJitterAndIsCapped() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 100; i++) {
+            long first = ImageHttpClient.backoffMillis(0, random);
+            assertTrue(first >= 250 && first <= 500);
+            long third = ImageHttpClient.backoffMillis(2, random);
+            assertTrue(third >= 1000 && third <= 2000);
+            long late = ImageHttpClient.backoffMillis(30, random);
+            assertTrue(late >= 4000 && late <= 8000);
+        }
+    }
+}
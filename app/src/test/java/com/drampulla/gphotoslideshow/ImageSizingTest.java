@@ -0,0 +1,57 @@
+package com.drampulla.gphotoslideshow;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the sized image URLs and the decode sample size.
+ */
+public class ImageSizingTest {
+
+    @Test
+    public void sizedUrl_addsSizeSegment() throws Exception {
+        assertEquals("https://lh3.googleusercontent.com/abc/def/s1600/IMG_1.jpg",
+                ImageSizing.sizedUrl("https://lh3.googleusercontent.com/abc/def/IMG_1.jpg", 1600));
+        assertEquals("https://lh4.ggpht.com/abc/s800/IMG_1.jpg?imgmax=d",
+                ImageSizing.sizedUrl("https://lh4.ggpht.com/abc/IMG_1.jpg?imgmax=d", 800));
+    }
+
+    @Test
+    public void sizedUrl_replacesExistingSizeSegment() throws Exception {
+        assertEquals("https://lh3.googleusercontent.com/abc/s1600/IMG_1.jpg",
+                ImageSizing.sizedUrl("https://lh3.googleusercontent.com/abc/s400/IMG_1.jpg", 1600));
+        assertEquals("https://lh3.googleusercontent.com/abc/s1600/IMG_1.jpg",
+                ImageSizing.sizedUrl("https://lh3.googleusercontent.com/abc/w800-h600-no/IMG_1.jpg", 1600));
+        assertEquals("https://lh3.googleusercontent.com/abc/s1600/IMG_1.jpg",
+                ImageSizing.sizedUrl("https://lh3.googleusercontent.com/abc/d/IMG_1.jpg", 1600));
+    }
+
+    @Test
+    public void sizedUrl_leavesOtherUrlsAlone() throws Exception {
+        assertEquals("https://example.com/abc/IMG_1.jpg", ImageSizing.sizedUrl("https://example.com/abc/IMG_1.jpg", 1600));
+        assertEquals("file:///sdcard/Pictures/IMG_1.jpg", ImageSizing.sizedUrl("file:///sdcard/Pictures/IMG_1.jpg", 1600));
+        assertEquals("https://lh3.googleusercontent.com/abc/IMG_1.jpg",
+                ImageSizing.sizedUrl("https://lh3.googleusercontent.com/abc/IMG_1.jpg", 0));
+    }
+
+    @Test
+    public void calculateInSampleSize_powerOfTwoBoundaries() throws Exception {
+        // exactly 4 times the screen can be sampled down by 4 and still fill it
+        assertEquals(4, ImageSizing.calculateInSampleSize(4000, 3000, 1000, 750));
+        // one pixel short and sampling by 4 would leave it smaller than the screen
+        assertEquals(2, ImageSizing.calculateInSampleSize(3999, 2999, 1000, 750));
+        assertEquals(2, ImageSizing.calculateInSampleSize(2000, 1500, 1000, 750));
+        assertEquals(1, ImageSizing.calculateInSampleSize(1999, 1499, 1000, 750));
+        // the image is fit inside the screen, so the edge that has to shrink the most decides
+        assertEquals(4, ImageSizing.calculateInSampleSize(4000, 1500, 1000, 750));
+        assertEquals(2, ImageSizing.calculateInSampleSize(3999, 1500, 1000, 750));
+    }
+
+    @Test
+    public void calculateInSampleSize_smallOrUnknownImages() throws Exception {
+        assertEquals(1, ImageSizing.calculateInSampleSize(800, 600, 1000, 750));
+        assertEquals(1, ImageSizing.calculateInSampleSize(0, 0, 1000, 750));
+        assertEquals(1, ImageSizing.calculateInSampleSize(4000, 3000, 0, 0));
+    }
+}
@@ -0,0 +1,40 @@
+package com.drampulla.gphotoslideshow;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * The screen is kept on by the window flag MainActivity sets outside of the quiet hours.  A
+ * view with keepScreenOn holds the screen on no matter what that flag says, so the quiet
+ * hours would never let the screen go off.
+ */
+public class KeepScreenOnTest {
+
+    private static File layoutDirectory() {
+        // unit tests run in the module directory, but allow for the project directory too
+        for (String path : new String[]{"src/main/res/layout", "app/src/main/res/layout"}) {
+            File directory = new File(path);
+            if (directory.isDirectory()) {
+                return directory;
+            }
+        }
+        fail("Can't find the layouts from " + new File("").getAbsolutePath());
+        return null;
+    }
+
+    @Test
+    public void layouts_leaveTheScreenToTheQuietHours() throws Exception {
+        File[] layouts = layoutDirectory().listFiles();
+        assertNotNull(layouts);
+        assertTrue(layouts.length > 0);
+        for (File layout : layouts) {
+            String xml = new String(Files.readAllBytes(layout.toPath()), Charset.forName("UTF-8"));
+            assertFalse(layout.getName() + " keeps the screen on", xml.contains("keepScreenOn"));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.drampulla.gphotoslideshow;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the allocation free latency histogram.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void getPercentile_withinBucketAccuracy() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i * 100L);
+        }
+        assertEquals(10000, histogram.getCount());
+        assertEquals(1000000, histogram.getMax());
+        assertEquals(500000, histogram.getPercentile(50), 500000 * 0.04);
+        assertEquals(950000, histogram.getPercentile(95), 950000 * 0.04);
+        assertEquals(990000, histogram.getPercentile(99), 990000 * 0.04);
+        assertEquals(1000000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void getPercentile_smallValuesAreExact() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3);
+        histogram.record(7);
+        histogram.record(-5);
+        assertEquals(0, histogram.getPercentile(1));
+        assertEquals(3, histogram.getPercentile(50));
+        assertEquals(7, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void bucketOf_isMonotonic() throws Exception {
+        int previous = -1;
+        for (long value = 0; value < (1L << 40); value = value * 5 / 4 + 1) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(bucket >= previous);
+            long middle = LatencyHistogram.valueOf(bucket);
+            assertTrue("value " + value + " middle " + middle, Math.abs(middle - value) <= Math.max(1, value / 32));
+            previous = bucket;
+        }
+    }
+
+    @Test
+    public void reset_clearsEverything() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(12345);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(0, histogram.getMax());
+    }
+}
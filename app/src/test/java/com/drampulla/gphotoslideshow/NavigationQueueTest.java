@@ -0,0 +1,154 @@
+package com.drampulla.gphotoslideshow;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for combining slideshow moves.
+ */
+public class NavigationQueueTest {
+
+    /**
+     * Holds on to what it is given until the test runs it, like a busy navigation thread.
+     */
+    private final List<Runnable> queued = new ArrayList<>();
+    private final Executor executor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            queued.add(command);
+        }
+    };
+
+    /**
+     * The moves that were made, as "seek,delta,manual".
+     */
+    private final List<String> moves = new ArrayList<>();
+    private int superseded;
+    private NavigationQueue queue;
+
+    /**
+     * Run while a move is being made, e.g. the user swiping while the slide loads.
+     */
+    private Runnable duringMove;
+
+    @Before
+    public void setUp() {
+        queue = new NavigationQueue(executor, new NavigationQueue.Navigator() {
+            @Override
+            public void navigate(int seekIndex, int delta, boolean manual) {
+                moves.add(seekIndex + "," + delta + "," + manual);
+                if (duringMove != null) {
+                    Runnable r = duringMove;
+                    duringMove = null;
+                    r.run();
+                }
+            }
+
+            @Override
+            public void superseded() {
+                superseded++;
+            }
+        });
+    }
+
+    private void runQueued() {
+        while (!queued.isEmpty()) {
+            queued.remove(0).run();
+        }
+    }
+
+    @Test
+    public void move_burstIsCombined() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            queue.move(1);
+        }
+        queue.move(-1);
+        assertEquals(1, queued.size());
+        assertTrue(queue.hasPendingMove());
+        runQueued();
+        assertEquals(1, moves.size());
+        assertEquals("-1,4,true", moves.get(0));
+        assertFalse(queue.hasPendingMove());
+    }
+
+    @Test
+    public void move_cancellingOutDoesNothing() throws Exception {
+        queue.move(1);
+        queue.move(-1);
+        runQueued();
+        assertTrue(moves.isEmpty());
+    }
+
+    @Test
+    public void move_whileBusySupersedesAndRunsAfter() throws Exception {
+        duringMove = new Runnable() {
+            @Override
+            public void run() {
+                queue.move(1);
+                queue.move(1);
+            }
+        };
+        queue.move(1);
+        runQueued();
+        assertEquals(2, superseded);
+        assertEquals(2, moves.size());
+        assertEquals("-1,1,true", moves.get(0));
+        assertEquals("-1,2,true", moves.get(1));
+    }
+
+    @Test
+    public void move_cancellingOutWhileBusyReloadsTheSlide() throws Exception {
+        duringMove = new Runnable() {
+            @Override
+            public void run() {
+                queue.move(1);
+                queue.move(-1);
+            }
+        };
+        queue.move(1);
+        runQueued();
+        assertEquals(1, superseded);
+        assertEquals(2, moves.size());
+        assertEquals("-1,0,true", moves.get(1));
+    }
+
+    @Test
+    public void seek_replacesPendingMoves() throws Exception {
+        queue.move(3);
+        queue.seek(42);
+        queue.move(-1);
+        runQueued();
+        assertEquals(1, moves.size());
+        assertEquals("42,0,true", moves.get(0));
+    }
+
+    @Test
+    public void advance_droppedWhileAnythingElseIsGoingOn() throws Exception {
+        queue.move(1);
+        assertFalse(queue.advance());
+        runQueued();
+        assertEquals("-1,1,true", moves.get(0));
+
+        assertTrue(queue.advance());
+        assertFalse(queue.hasPendingMove());
+        runQueued();
+        assertEquals("-1,1,false", moves.get(1));
+
+        duringMove = new Runnable() {
+            @Override
+            public void run() {
+                assertFalse(queue.advance());
+            }
+        };
+        queue.move(1);
+        runQueued();
+        assertEquals(3, moves.size());
+        assertEquals(0, superseded);
+    }
+}
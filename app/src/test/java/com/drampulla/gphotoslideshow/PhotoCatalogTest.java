@@ -0,0 +1,42 @@
+package com.drampulla.gphotoslideshow;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for looking albums up in the catalog.
+ */
+public class PhotoCatalogTest {
+
+    private static CatalogAlbum album(String id, String title) {
+        return new CatalogAlbum(id, title, 0, Collections.<CatalogPhoto>emptyList());
+    }
+
+    @Test
+    public void findAlbum() throws Exception {
+        List<CatalogAlbum> albums = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            albums.add(album("album" + i, "Album " + i));
+        }
+        PhotoCatalog catalog = new PhotoCatalog(albums);
+        assertEquals(0, catalog.indexOfAlbum("album0"));
+        assertEquals(999, catalog.indexOfAlbum("album999"));
+        assertEquals("Album 512", catalog.findAlbum("album512").getTitle());
+        assertEquals(-1, catalog.indexOfAlbum("album1000"));
+        assertNull(catalog.findAlbum("missing"));
+        assertNull(PhotoCatalog.empty().findAlbum("album0"));
+    }
+
+    @Test
+    public void findAlbum_firstOfTheSameIdWins() throws Exception {
+        PhotoCatalog catalog = new PhotoCatalog(Arrays.asList(album("a", "First"), album("b", "B"), album("a", "Second")));
+        assertEquals(0, catalog.indexOfAlbum("a"));
+        assertEquals("First", catalog.findAlbum("a").getTitle());
+    }
+}
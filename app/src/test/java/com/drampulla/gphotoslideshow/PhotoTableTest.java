@@ -0,0 +1,117 @@
+package com.drampulla.gphotoslideshow;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the packed photo table and the catalog file it is saved in.
+ */
+public class PhotoTableTest {
+
+    private static List<CatalogPhoto> photos(int count) {
+        List<CatalogPhoto> rc = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rc.add(new CatalogPhoto("a", "5" + i, "https://lh3.example.com/photo/" + i + ".jpg",
+                    "IMG_" + i + ".jpg", 1400000000000L + i * 1000L, 4000 + i, 3000 - i));
+        }
+        return rc;
+    }
+
+    @Test
+    public void of_keepsEveryDetail() throws Exception {
+        List<CatalogPhoto> photos = new ArrayList<>(photos(3));
+        photos.add(new CatalogPhoto("a", "7", "https://example.com/\u00fc.jpg", "Gr\u00fc\u00dfe \u65e5\u672c", -1, 0, 0));
+        PhotoTable table = PhotoTable.of(photos);
+        assertEquals(4, table.size());
+        for (int i = 0; i < photos.size(); i++) {
+            CatalogPhoto expected = photos.get(i);
+            CatalogPhoto actual = table.getPhoto("a", i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getUrl(), actual.getUrl());
+            assertEquals(expected.getTitle(), actual.getTitle());
+            assertEquals(expected.getTimestamp(), actual.getTimestamp());
+            assertEquals(expected.getWidth(), actual.getWidth());
+            assertEquals(expected.getHeight(), actual.getHeight());
+        }
+    }
+
+    @Test
+    public void indexOfId() throws Exception {
+        PhotoTable table = PhotoTable.of(photos(20));
+        assertEquals(0, table.indexOfId("50"));
+        assertEquals(13, table.indexOfId("513"));
+        assertEquals(-1, table.indexOfId("5"));
+        assertEquals(-1, table.indexOfId("520"));
+        assertEquals(-1, table.indexOfId(""));
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i, table.indexOfId("5" + i));
+        }
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void catalogFile_staysWithinFixedBytesPerPhoto() throws Exception {
+        int count = 5000;
+        File file = folder.newFile("catalog");
+        new PhotoCatalogStore(file).save(new PhotoCatalog(Arrays.asList(
+                new CatalogAlbum("a", "A", 1, photos(count)), new CatalogAlbum("b", "B", 2, photos(count)))));
+
+        PhotoCatalog catalog = new PhotoCatalogStore(file).load();
+        assertEquals(2 * count, catalog.getPhotoCount());
+        for (CatalogAlbum album : catalog.getAlbums()) {
+            PhotoTable table = album.getPhotoTable();
+            assertTrue(table.isMapped());
+            long fixedBytes = table.getMemoryBytes() - table.getStringBytes();
+            // everything but the strings, with a little room for the table object itself
+            assertTrue("Used " + fixedBytes + " bytes for " + count + " photos",
+                    fixedBytes <= (long) PhotoTable.FIXED_BYTES_PER_PHOTO * count + 128);
+        }
+        // what the tables report is what they map of the file, no more
+        assertTrue(catalog.getMemoryBytes() <= file.length() + 2 * 128);
+    }
+
+    @Test
+    public void catalogStore_roundTrip() throws Exception {
+        PhotoCatalog catalog = new PhotoCatalog(Arrays.asList(
+                new CatalogAlbum("a", "Album \u00e4", 100, photos(50)),
+                new CatalogAlbum("b", "Empty", 200, Collections.<CatalogPhoto>emptyList())), "etag");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        PhotoCatalogStore.write(catalog, out);
+        out.flush();
+
+        PhotoCatalog read = PhotoCatalogStore.read(ByteBuffer.wrap(bytes.toByteArray()));
+        assertEquals("etag", read.getVersion());
+        assertEquals(2, read.getAlbumCount());
+        assertEquals("Album \u00e4", read.getAlbum(0).getTitle());
+        assertEquals(100, read.getAlbum(0).getUpdated());
+        assertEquals(catalog.getAlbum(0).getPhotoTable(), read.getAlbum(0).getPhotoTable());
+        assertEquals(37, read.getAlbum(0).indexOfPhoto("537"));
+        assertEquals("IMG_37.jpg", read.getAlbum(0).getPhoto(37).getTitle());
+        assertEquals(0, read.getAlbum(1).getPhotoCount());
+    }
+
+    @Test(expected = java.io.IOException.class)
+    public void catalogStore_cutShort() throws Exception {
+        PhotoCatalog catalog = new PhotoCatalog(Collections.singletonList(new CatalogAlbum("a", "A", 1, photos(10))));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        PhotoCatalogStore.write(catalog, out);
+        out.flush();
+        PhotoCatalogStore.read(ByteBuffer.wrap(Arrays.copyOf(bytes.toByteArray(), bytes.size() - 20)));
+    }
+}
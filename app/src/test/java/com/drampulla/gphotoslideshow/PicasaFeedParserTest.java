@@ -0,0 +1,103 @@
+package com.drampulla.gphotoslideshow;
+
+import org.junit.Test;
+import org.kxml2.io.KXmlParser;
+import org.xmlpull.v1.XmlPullParser;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for reading Picasa feeds with the pull parser.
+ */
+public class PicasaFeedParserTest {
+
+    private static final String FEED_START = "<?xml version='1.0' encoding='UTF-8'?>"
+            + "<feed xmlns='http://www.w3.org/2005/Atom' xmlns:openSearch='http://a9.com/-/spec/opensearch/1.1/'"
+            + " xmlns:gphoto='http://schemas.google.com/photos/2007' xmlns:media='http://search.yahoo.com/mrss/'>"
+            + "<id>https://picasaweb.google.com/data/feed/user/me</id><title type='text'>The feed</title>"
+            + "<updated>2017-01-01T00:00:00.000Z</updated><openSearch:totalResults>3</openSearch:totalResults>";
+
+    private static final String ALBUM_FEED = FEED_START
+            + "<entry><id>https://picasaweb.google.com/data/entry/user/me/albumid/a/photoid/1</id>"
+            + "<title type='text'>beach.jpg</title><gphoto:id>1</gphoto:id>"
+            + "<gphoto:width>4000</gphoto:width><gphoto:height>3000</gphoto:height>"
+            + "<gphoto:timestamp>1483228800000</gphoto:timestamp>"
+            + "<media:group><media:title type='plain'>not the title</media:title>"
+            + "<media:content url='https://lh3.example.com/1.jpg' height='3000' width='4000' type='image/jpeg' medium='image'/>"
+            + "<media:content url='https://lh3.example.com/1.mp4' type='video/mpeg4' medium='video'/></media:group></entry>"
+            + "<entry><title type='text'>no id</title>"
+            + "<media:group><media:content url='https://lh3.example.com/x.jpg'/></media:group></entry>"
+            + "<entry><title type='text'>dog.png</title><gphoto:id>2</gphoto:id>"
+            + "<media:group><media:content url='https://lh3.example.com/2.png'/></media:group></entry>"
+            + "</feed>";
+
+    private static final String USER_FEED = FEED_START
+            + "<entry><title type='text'>Vacation</title><updated>2017-03-05T19:20:31.250Z</updated>"
+            + "<gphoto:id>100</gphoto:id><gphoto:numphotos>42</gphoto:numphotos></entry>"
+            + "<entry><title type='text'>Empty</title><updated>2017-03-05T14:20:31-05:00</updated>"
+            + "<gphoto:id>101</gphoto:id></entry>"
+            + "</feed>";
+
+    private static XmlPullParser parser(String xml) throws Exception {
+        XmlPullParser rc = new KXmlParser();
+        rc.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+        rc.setInput(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), null);
+        return rc;
+    }
+
+    @Test
+    public void parseAlbumFeed() throws Exception {
+        List<CatalogPhoto> photos = new ArrayList<>();
+        assertEquals(3, PicasaFeedParser.parseAlbumFeed(parser(ALBUM_FEED), "a", photos));
+        assertEquals(2, photos.size());
+
+        CatalogPhoto beach = photos.get(0);
+        assertEquals("a", beach.getAlbumId());
+        assertEquals("1", beach.getId());
+        assertEquals("beach.jpg", beach.getTitle());
+        assertEquals("https://lh3.example.com/1.jpg", beach.getUrl());
+        assertEquals(1483228800000L, beach.getTimestamp());
+        assertEquals(4000, beach.getWidth());
+        assertEquals(3000, beach.getHeight());
+
+        CatalogPhoto dog = photos.get(1);
+        assertEquals("2", dog.getId());
+        assertEquals(-1, dog.getTimestamp());
+        assertEquals(0, dog.getWidth());
+    }
+
+    @Test
+    public void parsePhotoIds() throws Exception {
+        List<String> ids = new ArrayList<>();
+        assertEquals(2, PicasaFeedParser.parsePhotoIds(parser(FEED_START
+                + "<entry><gphoto:id>1</gphoto:id></entry><entry><gphoto:id> 2 </gphoto:id></entry></feed>"), ids));
+        assertEquals(Arrays.asList("1", "2"), ids);
+    }
+
+    @Test
+    public void parseUserFeed() throws Exception {
+        List<SourceAlbum> albums = new ArrayList<>();
+        assertEquals(2, PicasaFeedParser.parseUserFeed(parser(USER_FEED), albums));
+        assertEquals("100", albums.get(0).getId());
+        assertEquals("Vacation", albums.get(0).getTitle());
+        assertEquals(42, albums.get(0).getPhotoCount());
+        assertEquals(SourceAlbum.UNKNOWN_PHOTO_COUNT, albums.get(1).getPhotoCount());
+        // the same instant written two ways
+        assertEquals(albums.get(0).getUpdated() - 250, albums.get(1).getUpdated());
+    }
+
+    @Test
+    public void parseTime_roundTrips() throws Exception {
+        long time = PicasaFeedParser.parseTime("2017-03-05T19:20:31.250Z");
+        assertEquals(1488741631250L, time);
+        assertEquals("2017-03-05T19:20:31.250Z", PicasaFeedParser.formatTime(time));
+        assertEquals(1488741631000L, PicasaFeedParser.parseTime("2017-03-05T19:20:31Z"));
+        assertEquals(1488741631123L, PicasaFeedParser.parseTime("2017-03-05T19:20:31.123456Z"));
+    }
+}
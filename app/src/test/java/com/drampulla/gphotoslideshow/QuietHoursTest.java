@@ -0,0 +1,82 @@
+package com.drampulla.gphotoslideshow;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the time of day the slideshow stops.
+ */
+public class QuietHoursTest {
+
+    private static final TimeZone ZONE = TimeZone.getTimeZone("America/New_York");
+
+    private static long time(int day, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance(ZONE);
+        calendar.clear();
+        calendar.set(2017, Calendar.JUNE, day, hour, minute, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    @Test
+    public void parse() throws Exception {
+        assertNull(QuietHours.parse("", "07:00"));
+        assertNull(QuietHours.parse("22:00", " "));
+        assertEquals(22 * 60 + 30, QuietHours.parseTime("22:30"));
+        assertEquals(7 * 60, QuietHours.parseTime("7"));
+        assertEquals(0, QuietHours.parseTime("24:00"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_rejectsGarbage() throws Exception {
+        QuietHours.parse("10pm", "07:00");
+    }
+
+    @Test
+    public void isQuiet_overMidnight() throws Exception {
+        QuietHours quietHours = QuietHours.parse("22:00", "07:00");
+        assertTrue(quietHours.isQuiet(time(10, 23, 0), ZONE));
+        assertTrue(quietHours.isQuiet(time(10, 22, 0), ZONE));
+        assertTrue(quietHours.isQuiet(time(10, 3, 0), ZONE));
+        assertFalse(quietHours.isQuiet(time(10, 7, 0), ZONE));
+        assertFalse(quietHours.isQuiet(time(10, 12, 0), ZONE));
+    }
+
+    @Test
+    public void getMinutes() throws Exception {
+        assertEquals(9 * 60, QuietHours.parse("22:00", "07:00").getMinutes());
+        assertEquals(8 * 60 + 30, QuietHours.parse("09:00", "17:30").getMinutes());
+        assertEquals(0, QuietHours.parse("09:00", "09:00").getMinutes());
+    }
+
+    @Test
+    public void isQuiet_sameDayAndEmpty() throws Exception {
+        QuietHours quietHours = QuietHours.parse("09:00", "17:30");
+        assertTrue(quietHours.isQuiet(time(10, 12, 0), ZONE));
+        assertFalse(quietHours.isQuiet(time(10, 17, 30), ZONE));
+        assertFalse(QuietHours.parse("09:00", "09:00").isQuiet(time(10, 9, 0), ZONE));
+    }
+
+    @Test
+    public void nextChange() throws Exception {
+        QuietHours quietHours = QuietHours.parse("22:00", "07:00");
+        assertEquals(time(10, 22, 0), quietHours.nextChange(time(10, 12, 0), ZONE));
+        assertEquals(time(11, 7, 0), quietHours.nextChange(time(10, 23, 15), ZONE));
+        assertEquals(time(11, 7, 0), quietHours.nextChange(time(11, 1, 0), ZONE));
+    }
+
+    @Test
+    public void nextEnd_wakesWhenQuietHoursAreOver() throws Exception {
+        QuietHours quietHours = QuietHours.parse("22:00", "07:00");
+        // the screen goes off when the quiet hours start, the wake up is the next morning
+        long wake = quietHours.nextEnd(time(10, 22, 0), ZONE);
+        assertEquals(time(11, 7, 0), wake);
+        assertTrue(quietHours.isQuiet(wake - 1, ZONE));
+        assertFalse(quietHours.isQuiet(wake, ZONE));
+        assertEquals(time(11, 7, 0), quietHours.nextEnd(time(10, 12, 0), ZONE));
+        assertEquals(time(12, 7, 0), quietHours.nextEnd(time(11, 7, 0), ZONE));
+    }
+}
@@ -0,0 +1,51 @@
+package com.drampulla.gphotoslideshow;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the seeded shuffle.
+ */
+public class ShufflePermutationTest {
+
+    @Test
+    public void apply_isABijection() throws Exception {
+        for (int size : new int[] {1, 2, 3, 7, 16, 17, 1000, 4097}) {
+            ShufflePermutation shuffle = new ShufflePermutation(size, 42);
+            boolean[] seen = new boolean[size];
+            for (int i = 0; i < size; i++) {
+                int value = shuffle.apply(i);
+                assertTrue(value >= 0 && value < size);
+                assertFalse("duplicate " + value + " for size " + size, seen[value]);
+                seen[value] = true;
+            }
+        }
+    }
+
+    @Test
+    public void inverse_undoesApply() throws Exception {
+        ShufflePermutation shuffle = new ShufflePermutation(12345, -7);
+        for (int i = 0; i < shuffle.size(); i++) {
+            assertEquals(i, shuffle.inverse(shuffle.apply(i)));
+        }
+    }
+
+    @Test
+    public void apply_sameSeedSameOrder() throws Exception {
+        ShufflePermutation a = new ShufflePermutation(500, 99);
+        ShufflePermutation b = new ShufflePermutation(500, 99);
+        ShufflePermutation c = new ShufflePermutation(500, 100);
+        boolean differs = false;
+        for (int i = 0; i < 500; i++) {
+            assertEquals(a.apply(i), b.apply(i));
+            differs |= a.apply(i) != c.apply(i);
+        }
+        assertTrue(differs);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void apply_outOfRange() throws Exception {
+        new ShufflePermutation(10, 1).apply(10);
+    }
+}
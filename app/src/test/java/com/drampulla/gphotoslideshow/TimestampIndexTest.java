@@ -0,0 +1,89 @@
+package com.drampulla.gphotoslideshow;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the photo timestamp index.
+ */
+public class TimestampIndexTest {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private static long time(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance(UTC);
+        calendar.clear();
+        calendar.set(year, month - 1, day, 12, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    private static AlbumPositionIndex albums(long[]... timestamps) {
+        List<CatalogAlbum> albums = new ArrayList<>();
+        for (int a = 0; a < timestamps.length; a++) {
+            List<CatalogPhoto> photos = new ArrayList<>();
+            for (int p = 0; p < timestamps[a].length; p++) {
+                photos.add(new CatalogPhoto("a" + a, "a" + a + "p" + p, "http://example.com/" + p, "p", timestamps[a][p], 1, 1));
+            }
+            albums.add(new CatalogAlbum("a" + a, "Album " + a, 0, photos));
+        }
+        return new AlbumPositionIndex(albums);
+    }
+
+    @Test
+    public void range_returnsPhotosInTimeOrder() throws Exception {
+        TimestampIndex index = new TimestampIndex(albums(
+                new long[] {time(2015, 6, 1), time(2012, 1, 1)},
+                new long[] {time(2014, 3, 3), time(2016, 1, 1)}), UTC);
+        assertArrayEquals(new int[] {1, 2, 0}, index.range(time(2012, 1, 1), time(2015, 6, 2)));
+        assertArrayEquals(new int[] {2}, index.range(time(2013, 1, 1), time(2015, 1, 1)));
+        assertEquals(0, index.range(time(2020, 1, 1), time(2021, 1, 1)).length);
+    }
+
+    @Test
+    public void onThisDay_matchesEveryYear() throws Exception {
+        TimestampIndex index = new TimestampIndex(albums(
+                new long[] {time(2015, 2, 28), time(2012, 2, 29), time(2010, 2, 28)},
+                new long[] {time(2016, 2, 29), 0}), UTC);
+        assertArrayEquals(new int[] {2, 0}, index.onThisDay(2, 28));
+        assertArrayEquals(new int[] {1, 3}, index.onThisDay(2, 29));
+        assertArrayEquals(new int[] {1, 3}, index.onThisDay(time(2024, 2, 29)));
+        assertEquals(0, index.onThisDay(1, 1).length);
+    }
+
+    @Test
+    public void dayKey_matchesCalendar() throws Exception {
+        TimeZone zone = TimeZone.getTimeZone("America/New_York");
+        Calendar calendar = Calendar.getInstance(zone);
+        for (long t = -5000L * 86400000; t < 20000L * 86400000; t += 86400000L * 7 + 3600000) {
+            calendar.setTimeInMillis(t);
+            int expected = calendar.get(Calendar.MONTH) * 31 + calendar.get(Calendar.DAY_OF_MONTH) - 1;
+            assertEquals("at " + t, expected, TimestampIndex.dayKey(t, zone));
+        }
+    }
+
+    @Test
+    public void range_largeUnsortedInput() throws Exception {
+        long[] times = new long[1000];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = (i * 7919L) % 1000;
+        }
+        TimestampIndex index = new TimestampIndex(albums(times), UTC);
+        int[] all = index.range(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(1000, all.length);
+        for (int i = 1; i < all.length; i++) {
+            assertTrue(times[all[i - 1]] <= times[all[i]]);
+        }
+        int[] sorted = all.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < sorted.length; i++) {
+            assertEquals(i, sorted[i]);
+        }
+    }
+}
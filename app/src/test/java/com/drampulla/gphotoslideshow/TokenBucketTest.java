@@ -0,0 +1,40 @@
+package com.drampulla.gphotoslideshow;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the download bandwidth limit.
+ */
+public class TokenBucketTest {
+
+    private static final long SECOND = 1000000000L;
+
+    @Test
+    public void reserve_noLimitNeverWaits() throws Exception {
+        TokenBucket bucket = new TokenBucket(0);
+        assertEquals(0, bucket.reserve(100 * 1024 * 1024, System.nanoTime()));
+    }
+
+    @Test
+    public void reserve_burstThenWaitsForTheRest() throws Exception {
+        TokenBucket bucket = new TokenBucket(0);
+        // 400KB/s allows a 100KB burst
+        bucket.setRate(400 * 1024, 0);
+        assertEquals(0, bucket.reserve(100 * 1024, 0));
+        // another 200KB is half a second of debt
+        assertEquals(SECOND / 2, bucket.reserve(200 * 1024, 0));
+        // after waiting it out the bucket is empty, not full
+        assertEquals(SECOND / 4, bucket.reserve(100 * 1024, SECOND / 2));
+    }
+
+    @Test
+    public void reserve_refillIsCappedAtBurst() throws Exception {
+        TokenBucket bucket = new TokenBucket(0);
+        bucket.setRate(400 * 1024, 0);
+        // idle for a minute still only allows the burst
+        assertEquals(0, bucket.reserve(100 * 1024, 60 * SECOND));
+        assertTrue(bucket.reserve(1024, 60 * SECOND) > 0);
+    }
+}
@@ -0,0 +1,50 @@
+package com.drampulla.gphotoslideshow;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applying the include/exclude expressions to the catalog and building the position index
+ * for the albums that are left, which is what happens whenever the expressions or the
+ * catalog change.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AlbumFilterBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int photoCount;
+
+    private PhotoCatalog catalog;
+    private AlbumFilter filter;
+
+    @Setup
+    public void setup() {
+        catalog = SyntheticCatalogs.create(photoCount);
+        filter = new AlbumFilter("(Vacation|Family|Beach|Hike).*", ".*(Private|Screenshots).*");
+    }
+
+    @Benchmark
+    public int apply() {
+        return filter.apply(catalog).size();
+    }
+
+    @Benchmark
+    public int compileAndApply() {
+        return new AlbumFilter("(Vacation|Family|Beach|Hike).*", ".*(Private|Screenshots).*").apply(catalog).size();
+    }
+
+    @Benchmark
+    public int applyAndIndex() {
+        return new AlbumPositionIndex(filter.apply(catalog)).size();
+    }
+}
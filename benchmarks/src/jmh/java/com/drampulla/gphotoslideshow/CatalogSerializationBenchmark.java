@@ -0,0 +1,53 @@
+package com.drampulla.gphotoslideshow;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving and loading the catalog, which is what startup waits on before the first slide.
+ * Everything is in memory so only the encoding is measured, not the disk (reading a
+ * wrapped array is what reading the memory mapped file does once the pages are in).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CatalogSerializationBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int photoCount;
+
+    private PhotoCatalog catalog;
+    private byte[] serialized;
+
+    @Setup
+    public void setup() throws IOException {
+        catalog = SyntheticCatalogs.create(photoCount);
+        serialized = write();
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(serialized == null ? 1024 : serialized.length);
+        DataOutputStream out = new DataOutputStream(bytes);
+        PhotoCatalogStore.write(catalog, out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public PhotoCatalog read() throws IOException {
+        return PhotoCatalogStore.read(ByteBuffer.wrap(serialized));
+    }
+}
@@ -0,0 +1,80 @@
+package com.drampulla.gphotoslideshow;
+
+import com.google.gdata.data.ExtensionProfile;
+import com.google.gdata.data.photos.AlbumFeed;
+import com.google.gdata.data.photos.GphotoEntry;
+import com.google.gdata.data.photos.PhotoEntry;
+
+import org.kxml2.io.KXmlParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.xmlpull.v1.XmlPullParser;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a page of an album feed into {@link CatalogPhoto}s, the streaming
+ * {@link PicasaFeedParser} against the gdata client (parse the whole feed, wrap every entry
+ * in a PhotoEntry, then copy out the few fields the slideshow keeps).  The feed is in memory
+ * so only the parsing is measured.  Divide the feed size by the time per operation for the
+ * throughput in bytes: a page of 100 photos is about 267 KB and a page of 500 about 1.33 MB
+ * ({@link SyntheticFeeds} writes about 2.7 KB per photo).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FeedParseBenchmark {
+
+    @Param({"100", "500"})
+    public int photosPerPage;
+
+    private byte[] feed;
+    private ExtensionProfile extensionProfile;
+
+    @Setup
+    public void setup() {
+        feed = SyntheticFeeds.albumFeed(photosPerPage).getBytes(StandardCharsets.UTF_8);
+
+        extensionProfile = new ExtensionProfile();
+        new AlbumFeed().declareExtensions(extensionProfile);
+        extensionProfile.setAutoExtending(true);
+    }
+
+    @Benchmark
+    public List<CatalogPhoto> pullParser() throws Exception {
+        XmlPullParser parser = new KXmlParser();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+        parser.setInput(new ByteArrayInputStream(feed), null);
+        List<CatalogPhoto> rc = new ArrayList<>(photosPerPage);
+        PicasaFeedParser.parseAlbumFeed(parser, SyntheticFeeds.ALBUM_ID, rc);
+        return rc;
+    }
+
+    @Benchmark
+    public List<CatalogPhoto> gdata() throws Exception {
+        AlbumFeed albumFeed = new AlbumFeed();
+        albumFeed.parseAtom(extensionProfile, new ByteArrayInputStream(feed));
+        List<CatalogPhoto> rc = new ArrayList<>(photosPerPage);
+        for (GphotoEntry ge : albumFeed.getEntries()) {
+            PhotoEntry pe = new PhotoEntry(ge);
+            rc.add(new CatalogPhoto(SyntheticFeeds.ALBUM_ID,
+                    pe.getGphotoId(),
+                    pe.getMediaContents().get(0).getUrl(),
+                    pe.getTitle().getPlainText(),
+                    pe.getTimestamp().getTime(),
+                    pe.getWidth().intValue(),
+                    pe.getHeight().intValue()));
+        }
+        return rc;
+    }
+}
@@ -0,0 +1,50 @@
+package com.drampulla.gphotoslideshow;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping positions through the shuffle and back.  The sizes just past a power of two are
+ * the worst case for cycle walking.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ShuffleBenchmark {
+
+    @Param({"1000", "100000", "1000000", "1048577"})
+    public int photoCount;
+
+    private ShufflePermutation shuffle;
+    private int index;
+
+    @Setup
+    public void setup() {
+        shuffle = new ShufflePermutation(photoCount, 42);
+    }
+
+    @Benchmark
+    public int apply() {
+        index = index + 1 == photoCount ? 0 : index + 1;
+        return shuffle.apply(index);
+    }
+
+    @Benchmark
+    public int inverse() {
+        index = index + 1 == photoCount ? 0 : index + 1;
+        return shuffle.inverse(index);
+    }
+
+    @Benchmark
+    public ShufflePermutation create() {
+        return new ShufflePermutation(photoCount, index++);
+    }
+}
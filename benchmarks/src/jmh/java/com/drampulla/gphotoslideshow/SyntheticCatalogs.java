@@ -0,0 +1,54 @@
+package com.drampulla.gphotoslideshow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds made up catalogs that look roughly like a real account: albums of a few hundred
+ * photos, each album covering a few days, and a mix of album titles for the filter to chew on.
+ */
+public class SyntheticCatalogs {
+
+    /**
+     * Photos per album.
+     */
+    public static final int ALBUM_SIZE = 250;
+
+    private static final String[] TITLE_WORDS = {"Vacation", "Family", "Birthday", "Hike", "Screenshots", "Beach", "Wedding", "Private"};
+
+    private static final long START_TIME = 946684800000L; // 2000-01-01
+    private static final long HOUR = 60L * 60 * 1000;
+
+    private SyntheticCatalogs() {
+    }
+
+    /**
+     * @param photoCount
+     *          Total number of photos.
+     * @return
+     *          The same catalog every time for the same photoCount.
+     */
+    public static PhotoCatalog create(int photoCount) {
+        Random random = new Random(photoCount);
+        List<CatalogAlbum> albums = new ArrayList<>(photoCount / ALBUM_SIZE + 1);
+        long time = START_TIME;
+        for (int a = 0; a * ALBUM_SIZE < photoCount; a++) {
+            String albumId = Long.toString(6000000000000000000L + a);
+            int count = Math.min(ALBUM_SIZE, photoCount - a * ALBUM_SIZE);
+            List<CatalogPhoto> photos = new ArrayList<>(count);
+            for (int p = 0; p < count; p++) {
+                // mostly in order, with the odd photo out of place like a real album
+                long timestamp = time + p * HOUR / 4 + (random.nextInt(20) == 0 ? -random.nextInt(1000) * HOUR : 0);
+                String photoId = albumId + "_" + p;
+                photos.add(new CatalogPhoto(albumId, photoId,
+                        "https://lh3.googleusercontent.com/-abcdefghijk/AAAAAAAAAAA/AAAAAAAAAAA/" + photoId + "/s0/IMG_" + p + ".jpg",
+                        "IMG_" + p + ".jpg", timestamp, 4032, 3024));
+            }
+            time += (2 + random.nextInt(30)) * 24 * HOUR;
+            String title = TITLE_WORDS[random.nextInt(TITLE_WORDS.length)] + " " + (2000 + a / 50) + " #" + a;
+            albums.add(new CatalogAlbum(albumId, title, time, photos));
+        }
+        return new PhotoCatalog(albums);
+    }
+}
@@ -0,0 +1,79 @@
+package com.drampulla.gphotoslideshow;
+
+/**
+ * Builds made up Picasa album feeds with everything a real one has in each entry (links,
+ * EXIF, thumbnails, ...) even though the slideshow only needs a handful of fields.
+ */
+public class SyntheticFeeds {
+
+    public static final String ALBUM_ID = "6000000000000000000";
+
+    private static final long START_TIME = 946684800000L; // 2000-01-01
+
+    private SyntheticFeeds() {
+    }
+
+    /**
+     * @param photoCount
+     *          Number of photo entries.
+     * @return
+     *          The XML of the feed.
+     */
+    public static String albumFeed(int photoCount) {
+        String base = "https://picasaweb.google.com/data/entry/user/someone%40gmail.com/albumid/" + ALBUM_ID;
+        StringBuilder out = new StringBuilder(photoCount * 4096);
+        out.append("<?xml version='1.0' encoding='UTF-8'?>")
+                .append("<feed xmlns='http://www.w3.org/2005/Atom' xmlns:openSearch='http://a9.com/-/spec/opensearch/1.1/'")
+                .append(" xmlns:exif='http://schemas.google.com/photos/exif/2007' xmlns:gphoto='http://schemas.google.com/photos/2007'")
+                .append(" xmlns:media='http://search.yahoo.com/mrss/' xmlns:gd='http://schemas.google.com/g/2005'")
+                .append(" gd:etag='W/&quot;DUcGQn47eCp7ImA9WhFWF0U.&quot;'>")
+                .append("<id>").append(base).append("</id>")
+                .append("<updated>2017-03-05T19:20:31.000Z</updated>")
+                .append("<category scheme='http://schemas.google.com/g/2005#kind' term='http://schemas.google.com/photos/2007#album'/>")
+                .append("<title type='text'>Vacation 2017</title><subtitle type='text'/>")
+                .append("<author><name>Someone</name><uri>https://picasaweb.google.com/someone</uri></author>")
+                .append("<openSearch:totalResults>").append(photoCount).append("</openSearch:totalResults>")
+                .append("<openSearch:startIndex>1</openSearch:startIndex>")
+                .append("<openSearch:itemsPerPage>").append(photoCount).append("</openSearch:itemsPerPage>")
+                .append("<gphoto:id>").append(ALBUM_ID).append("</gphoto:id>")
+                .append("<gphoto:numphotos>").append(photoCount).append("</gphoto:numphotos>");
+        for (int i = 0; i < photoCount; i++) {
+            String id = Long.toString(6100000000000000000L + i);
+            String url = "https://lh3.googleusercontent.com/-abcdefghijk/AAAAAAAAAAA/AAAAAAAAAAA/" + id;
+            long timestamp = START_TIME + i * 60000L;
+            out.append("<entry gd:etag='&quot;YD0qeyI.&quot;'>")
+                    .append("<id>").append(base).append("/photoid/").append(id).append("</id>")
+                    .append("<published>2017-03-05T19:20:31.000Z</published><updated>2017-03-05T19:20:31.000Z</updated>")
+                    .append("<category scheme='http://schemas.google.com/g/2005#kind' term='http://schemas.google.com/photos/2007#photo'/>")
+                    .append("<title type='text'>IMG_").append(i).append(".jpg</title><summary type='text'/>")
+                    .append("<content type='image/jpeg' src='").append(url).append("/IMG_").append(i).append(".jpg'/>")
+                    .append("<link rel='http://schemas.google.com/g/2005#feed' type='application/atom+xml' href='").append(base).append("/photoid/").append(id).append("'/>")
+                    .append("<link rel='alternate' type='text/html' href='https://picasaweb.google.com/someone/Vacation2017#").append(id).append("'/>")
+                    .append("<link rel='self' type='application/atom+xml' href='").append(base).append("/photoid/").append(id).append("'/>")
+                    .append("<gphoto:id>").append(id).append("</gphoto:id>")
+                    .append("<gphoto:albumid>").append(ALBUM_ID).append("</gphoto:albumid>")
+                    .append("<gphoto:access>private</gphoto:access>")
+                    .append("<gphoto:width>4032</gphoto:width><gphoto:height>3024</gphoto:height>")
+                    .append("<gphoto:size>2718281</gphoto:size><gphoto:checksum/>")
+                    .append("<gphoto:timestamp>").append(timestamp).append("</gphoto:timestamp>")
+                    .append("<gphoto:imageVersion>").append(i).append("</gphoto:imageVersion>")
+                    .append("<gphoto:commentingEnabled>true</gphoto:commentingEnabled><gphoto:commentCount>0</gphoto:commentCount>")
+                    .append("<exif:tags><exif:fstop>1.7</exif:fstop><exif:make>Google</exif:make><exif:model>Pixel</exif:model>")
+                    .append("<exif:exposure>0.008</exif:exposure><exif:flash>false</exif:flash><exif:focallength>4.67</exif:focallength>")
+                    .append("<exif:iso>50</exif:iso><exif:time>").append(timestamp).append("</exif:time>")
+                    .append("<exif:imageUniqueID>").append(id).append("</exif:imageUniqueID></exif:tags>")
+                    .append("<media:group>")
+                    .append("<media:content url='").append(url).append("/IMG_").append(i).append(".jpg' height='3024' width='4032' type='image/jpeg' medium='image'/>")
+                    .append("<media:credit>Someone</media:credit><media:description type='plain'/>")
+                    .append("<media:keywords/>")
+                    .append("<media:thumbnail url='").append(url).append("/s72/IMG_").append(i).append(".jpg' height='54' width='72'/>")
+                    .append("<media:thumbnail url='").append(url).append("/s144/IMG_").append(i).append(".jpg' height='108' width='144'/>")
+                    .append("<media:thumbnail url='").append(url).append("/s288/IMG_").append(i).append(".jpg' height='216' width='288'/>")
+                    .append("<media:title type='plain'>IMG_").append(i).append(".jpg</media:title>")
+                    .append("</media:group>")
+                    .append("</entry>");
+        }
+        out.append("</feed>");
+        return out.toString();
+    }
+}
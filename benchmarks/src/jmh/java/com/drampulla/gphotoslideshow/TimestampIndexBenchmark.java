@@ -0,0 +1,59 @@
+package com.drampulla.gphotoslideshow;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the timestamp index and running the "on this day" and date range queries the
+ * playlists use.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TimestampIndexBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int photoCount;
+
+    private static final TimeZone TIME_ZONE = TimeZone.getTimeZone("America/New_York");
+    private static final long YEAR = 365L * 24 * 60 * 60 * 1000;
+
+    private AlbumPositionIndex positionIndex;
+    private TimestampIndex timestampIndex;
+    private long from;
+    private long to;
+    private int day;
+
+    @Setup
+    public void setup() {
+        positionIndex = new AlbumPositionIndex(SyntheticCatalogs.create(photoCount).getAlbums());
+        timestampIndex = new TimestampIndex(positionIndex, TIME_ZONE);
+        from = positionIndex.photoAt(positionIndex.size() / 2).getTimestamp();
+        to = from + YEAR;
+    }
+
+    @Benchmark
+    public TimestampIndex build() {
+        return new TimestampIndex(positionIndex, TIME_ZONE);
+    }
+
+    @Benchmark
+    public int[] onThisDay() {
+        day = day == 27 ? 0 : day + 1;
+        return timestampIndex.onThisDay(day % 12 + 1, day + 1);
+    }
+
+    @Benchmark
+    public int[] range() {
+        return timestampIndex.range(from, to);
+    }
+}
@@ -0,0 +1,75 @@
+package com.drampulla.gphotoslideshow;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Walking the slideshow the way {@link SlideshowIterator} does: map the position to a photo,
+ * move on, and work out the position to save.  Also covers resuming (saved position back to
+ * an index) and jumping to any point.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TraversalBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int photoCount;
+
+    private AlbumPositionIndex positionIndex;
+    private ShufflePermutation shuffle;
+    private SlideshowPosition[] savedPositions;
+    private int listIndex;
+    private int seekIndex;
+
+    @Setup
+    public void setup() {
+        positionIndex = new AlbumPositionIndex(SyntheticCatalogs.create(photoCount).getAlbums());
+        shuffle = new ShufflePermutation(positionIndex.size(), 42);
+        savedPositions = new SlideshowPosition[1024];
+        for (int i = 0; i < savedPositions.length; i++) {
+            savedPositions[i] = positionIndex.positionOf((int) ((long) i * 7919 % positionIndex.size()));
+        }
+    }
+
+    @Benchmark
+    public SlideshowPosition next() {
+        if (listIndex >= positionIndex.size()) {
+            listIndex = 0;
+        }
+        CatalogPhoto photo = positionIndex.photoAt(listIndex);
+        listIndex++;
+        return photo == null ? null : positionIndex.positionOf(listIndex - 1);
+    }
+
+    @Benchmark
+    public SlideshowPosition nextShuffled() {
+        if (listIndex >= positionIndex.size()) {
+            listIndex = 0;
+        }
+        int globalIndex = shuffle.apply(listIndex);
+        CatalogPhoto photo = positionIndex.photoAt(globalIndex);
+        listIndex++;
+        return photo == null ? null : positionIndex.positionOf(globalIndex);
+    }
+
+    @Benchmark
+    public int resume() {
+        seekIndex = (seekIndex + 1) & (savedPositions.length - 1);
+        return positionIndex.indexOf(savedPositions[seekIndex]);
+    }
+
+    @Benchmark
+    public CatalogPhoto seek() {
+        seekIndex = (seekIndex + 7919) % positionIndex.size();
+        return positionIndex.photoAt(seekIndex);
+    }
+}